@@ -15,4 +15,14 @@ import java.lang.annotation.Target;
 public @interface CacheObservable {
 
     int value() default CacheStrategy.READ_CACHE_ONLY;
+
+    /**
+     * 读缓存的调度器在{@code CacheSchedulers}中注册的名称，默认为{@code CacheSchedulers.CACHE}。
+     */
+    String cacheScheduler() default "";
+
+    /**
+     * 调用原方法的调度器在{@code CacheSchedulers}中注册的名称，默认为{@code CacheSchedulers.ORIGIN}。
+     */
+    String originScheduler() default "";
 }
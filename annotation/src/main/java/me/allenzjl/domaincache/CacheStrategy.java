@@ -8,4 +8,10 @@ public class CacheStrategy {
     public static final int READ_CACHE_ONLY = 0;
 
     public static final int PUSH_CACHE_FIRST = 1;
+
+    /**
+     * 缓存变旧后立即返回旧的结果，同时在后台调用原方法刷新缓存，需要{@link Cacheable#expire()}和{@link Cacheable#maxStale()}
+     * 都大于0。缓存过期后与{@link #READ_CACHE_ONLY}相同。
+     */
+    public static final int STALE_WHILE_REVALIDATE = 2;
 }
@@ -18,4 +18,26 @@ public @interface Cacheable {
 
     int expire() default 0;
 
+    /**
+     * 缓存在{@link #expire()}秒后变旧，再过多少秒过期，只用于{@link CacheStrategy#STALE_WHILE_REVALIDATE}。
+     */
+    int maxStale() default 0;
+
+    /**
+     * 提前刷新的百分比，0到99。读到剩余时间不足{@link #expire()}的这个百分比的缓存时仍然返回它，同时在后台调用原方法刷新，
+     * 热点缓存不会同时过期。0表示不提前刷新。
+     */
+    int refreshAhead() default 0;
+
+    /**
+     * 原方法返回null、空列表或者空数组时缓存的秒数，通常比{@link #expire()}短。大于0时返回null的结果也从缓存中读取，
+     * 不再调用原方法；0表示空结果与其他结果使用相同的过期时间，返回null时每次都调用原方法。
+     */
+    int negativeExpire() default 0;
+
+    /**
+     * 编解码器的名称，默认使用缓存仓库配置的编解码器。
+     */
+    String codec() default "";
+
 }
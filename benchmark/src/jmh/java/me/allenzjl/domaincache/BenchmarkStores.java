@@ -0,0 +1,75 @@
+package me.allenzjl.domaincache;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * 基准测试使用的后端和临时目录。
+ */
+public class BenchmarkStores {
+
+    public static final String JDBC = "jdbc";
+
+    public static final String LOG = "log";
+
+    private BenchmarkStores() {
+    }
+
+    /**
+     * 在directory中创建后端。
+     *
+     * @param backend {@link #JDBC}或{@link #LOG}
+     */
+    public static CacheStore create(String backend, File directory) {
+        if (JDBC.equals(backend)) {
+            return new JdbcCacheStore("jdbc:sqlite:" + new File(directory, "cache.db").getAbsolutePath(),
+                    new File(directory, SegmentStore.DIR_NAME));
+        } else if (LOG.equals(backend)) {
+            return new LogCacheStore(new File(directory, LogCacheStore.DIR_NAME));
+        }
+        throw new IllegalArgumentException("Unknown backend: " + backend);
+    }
+
+    /**
+     * 只使用后端的缓存仓库，不使用内存缓存、堆外缓存和后台任务。
+     */
+    public static CacheConfig storeOnlyConfig(CacheStore store) {
+        return new CacheConfig().setStore(store).setMemoryCacheSize(0).setOffHeapCacheSize(0).setSweepInterval(0)
+                .setDiskQuota(0);
+    }
+
+    public static File createDirectory() throws IOException {
+        File directory = File.createTempFile("domain-cache-", "");
+        if (!directory.delete() || !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        return directory;
+    }
+
+    public static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        if (!file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+
+    /**
+     * @return 目录中所有文件的总大小
+     */
+    public static long sizeOf(File file) {
+        File[] children = file.listFiles();
+        if (children == null) {
+            return file.length();
+        }
+        long size = 0;
+        for (File child : children) {
+            size += sizeOf(child);
+        }
+        return size;
+    }
+}
@@ -0,0 +1,91 @@
+package me.allenzjl.domaincache;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 在{@link JdbcCacheStore}和{@link LogCacheStore}上运行完整的{@link CacheStorage}，不经过内存缓存，测量写入和读取的吞吐量。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CacheStorageBenchmark {
+
+    public static final int KEY_COUNT = 10000;
+
+    @Param({BenchmarkStores.JDBC, BenchmarkStores.LOG})
+    public String mBackend;
+
+    @Param({"256", "4096"})
+    public int mPayloadSize;
+
+    protected File mDirectory;
+
+    protected CacheStorage mStorage;
+
+    protected List<String> mValue;
+
+    protected final Random mRandom = new Random(42);
+
+    protected int mNext;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        mDirectory = BenchmarkStores.createDirectory();
+        mStorage = new CacheStorage(BenchmarkStores.storeOnlyConfig(BenchmarkStores.create(mBackend, mDirectory)));
+        mValue = payload(mPayloadSize);
+        for (int i = 0; i < KEY_COUNT; i++) {
+            mStorage.put("key" + i, "parameter", mValue, 0, "benchmark", (String) null);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        mStorage.shutdown();
+        BenchmarkStores.deleteRecursively(mDirectory);
+    }
+
+    @Benchmark
+    public void put() {
+        mStorage.put("key" + (mNext++ % KEY_COUNT), "parameter", mValue, 0, "benchmark", (String) null);
+    }
+
+    @Benchmark
+    public List<String> get() {
+        return mStorage.getList("key" + mRandom.nextInt(KEY_COUNT), "parameter", String.class);
+    }
+
+    @Benchmark
+    public List<String> getMissing() {
+        return mStorage.getList("missing" + mRandom.nextInt(KEY_COUNT), "parameter", String.class);
+    }
+
+    /**
+     * 大约size字节的JSON列表，内容有重复，与接口返回的列表相似。
+     */
+    public static List<String> payload(int size) {
+        List<String> value = new ArrayList<>();
+        Random random = new Random(size);
+        int length = 2;
+        while (length < size) {
+            String item = "item-" + random.nextInt(1000) + "-" + Long.toHexString(random.nextLong());
+            value.add(item);
+            length += item.length() + 3;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,71 @@
+package me.allenzjl.domaincache;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 不同大小的结果压缩和不压缩时的读取延迟和占用的磁盘空间，用来确定{@link CacheConfig#DEFAULT_COMPRESSION_THRESHOLD}。
+ * 磁盘空间在写入所有缓存后输出到标准输出。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CompressionBenchmark {
+
+    public static final int KEY_COUNT = 1000;
+
+    @Param({BenchmarkStores.JDBC, BenchmarkStores.LOG})
+    public String mBackend;
+
+    @Param({"1024", "4096", "8192", "16384", "65536"})
+    public int mPayloadSize;
+
+    /**
+     * -1不压缩，0全部压缩。
+     */
+    @Param({"-1", "0"})
+    public int mCompressionThreshold;
+
+    protected File mDirectory;
+
+    protected CacheStorage mStorage;
+
+    protected final Random mRandom = new Random(42);
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        mDirectory = BenchmarkStores.createDirectory();
+        mStorage = new CacheStorage(BenchmarkStores.storeOnlyConfig(BenchmarkStores.create(mBackend, mDirectory))
+                .setCompressionThreshold(mCompressionThreshold));
+        List<String> value = CacheStorageBenchmark.payload(mPayloadSize);
+        for (int i = 0; i < KEY_COUNT; i++) {
+            mStorage.put("key" + i, "parameter", value, 0, "benchmark", (String) null);
+        }
+        System.out.println("backend=" + mBackend + " payload=" + mPayloadSize + " threshold=" + mCompressionThreshold +
+                " disk bytes/entry=" + BenchmarkStores.sizeOf(mDirectory) / KEY_COUNT);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        mStorage.shutdown();
+        BenchmarkStores.deleteRecursively(mDirectory);
+    }
+
+    @Benchmark
+    public List<String> get() {
+        return mStorage.getList("key" + mRandom.nextInt(KEY_COUNT), "parameter", String.class);
+    }
+}
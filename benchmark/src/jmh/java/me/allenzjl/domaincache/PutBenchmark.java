@@ -0,0 +1,72 @@
+package me.allenzjl.domaincache;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 每秒写入的缓存数：先查询再插入或更新、每次重新编译语句的旧写法，对比{@link JdbcCacheStore}使用的单条预编译upsert。
+ * 每次写入一条带两个索引参数的缓存，使用单独的事务，与没有启用异步写时的{@link CacheStorage#put}相同。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class PutBenchmark {
+
+    public static final String QUERY_THEN_WRITE = "queryThenWrite";
+
+    public static final String UPSERT = "upsert";
+
+    public static final int KEY_COUNT = 10000;
+
+    @Param({QUERY_THEN_WRITE, UPSERT})
+    public String mPath;
+
+    protected File mDirectory;
+
+    protected JdbcCacheStore mStore;
+
+    protected byte[] mData;
+
+    protected int mNext;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        mDirectory = BenchmarkStores.createDirectory();
+        String url = "jdbc:sqlite:" + new File(mDirectory, "cache.db").getAbsolutePath();
+        File segmentDirectory = new File(mDirectory, SegmentStore.DIR_NAME);
+        mStore = QUERY_THEN_WRITE.equals(mPath) ? new QueryThenWriteStore(url, segmentDirectory) :
+                new JdbcCacheStore(url, segmentDirectory);
+        mStore.open();
+        mData = JsonCodec.INSTANCE.encode(CacheStorageBenchmark.payload(512));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        mStore.close();
+        BenchmarkStores.deleteRecursively(mDirectory);
+    }
+
+    /**
+     * 第一轮插入，之后覆盖已有的缓存。
+     */
+    @Benchmark
+    public void put() {
+        int i = mNext++ % KEY_COUNT;
+        CacheRow row = new CacheRow(i, "key" + i, "{\"id\":" + i + "}", mData, null, JsonCodec.ID, Compression.NONE, "user", 0, 0)
+                .setUsage(mData.length, System.currentTimeMillis())
+                .setParams(new String[]{"id", "page"}, new Object[]{i, i % 10});
+        mStore.store(Collections.singletonList(row));
+    }
+}
@@ -0,0 +1,113 @@
+package me.allenzjl.domaincache;
+
+import me.allenzjl.domaincache.CacheStorageHelper.CacheTableColumn;
+import me.allenzjl.domaincache.CacheStorageHelper.ParamsTableColumn;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * 按改为单条upsert之前的方式写入的{@link JdbcCacheStore}，只用于{@link PutBenchmark}对比：
+ * 每条缓存先查询是否存在再插入或更新，索引参数同样先查询，每次都重新编译SQL语句。
+ */
+public class QueryThenWriteStore extends JdbcCacheStore {
+
+    protected static final String CACHE_EXISTS_SQL =
+            "SELECT " + CacheTableColumn.ID + " FROM " + CacheStorageHelper.TABLE_CACHE + " WHERE " + CacheTableColumn.ID + " = ?";
+
+    protected static final String CACHE_INSERT_SQL = CacheSql.CACHE_UPSERT_SQL.replace("INSERT OR REPLACE", "INSERT");
+
+    /**
+     * 参数顺序与{@link CacheSql#CACHE_UPSERT_SQL}相同，最后是主键。
+     */
+    protected static final String CACHE_UPDATE_SQL =
+            "UPDATE " + CacheStorageHelper.TABLE_CACHE + " SET " + CacheTableColumn.ID + " = ?, " + CacheTableColumn.KEY + " = ?, " +
+                    CacheTableColumn.PARAMETER + " = ?, " + CacheTableColumn.RESULT + " = ?, " + CacheTableColumn.ALIAS + " = ?, " +
+                    CacheTableColumn.EXPIRED + " = ?, " + CacheTableColumn.CODEC + " = ?, " + CacheTableColumn.COMPRESSION +
+                    " = ?, " + CacheTableColumn.SEGMENT + " = ?, " + CacheTableColumn.SEGMENT_OFFSET + " = ?, " +
+                    CacheTableColumn.SEGMENT_LENGTH + " = ?, " + CacheTableColumn.SIZE + " = ?, " + CacheTableColumn.ACCESSED +
+                    " = ?, " + CacheTableColumn.SOFT_EXPIRED + " = ? WHERE " + CacheTableColumn.ID + " = ?";
+
+    protected static final String PARAMS_COUNT_SQL =
+            "SELECT COUNT(*) FROM " + CacheStorageHelper.TABLE_PARAMS + " WHERE " + ParamsTableColumn.CACHE_ID + " = ?";
+
+    public QueryThenWriteStore(String url, File segmentDirectory) {
+        super(url, segmentDirectory);
+    }
+
+    @Override
+    public synchronized void store(List<CacheRow> rows) {
+        try {
+            Connection connection = begin();
+            try {
+                for (CacheRow row : rows) {
+                    boolean exists;
+                    PreparedStatement query = connection.prepareStatement(CACHE_EXISTS_SQL);
+                    try {
+                        query.setLong(1, row.getId());
+                        ResultSet resultSet = query.executeQuery();
+                        exists = resultSet.next();
+                    } finally {
+                        query.close();
+                    }
+                    PreparedStatement write = connection.prepareStatement(exists ? CACHE_UPDATE_SQL : CACHE_INSERT_SQL);
+                    try {
+                        bindRow(write, row);
+                        if (exists) {
+                            write.setLong(15, row.getId());
+                        }
+                        write.executeUpdate();
+                    } finally {
+                        write.close();
+                    }
+                    storeParams(connection, row);
+                }
+                connection.commit();
+            } finally {
+                end(connection);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    protected void storeParams(Connection connection, CacheRow row) throws SQLException {
+        int count;
+        PreparedStatement query = connection.prepareStatement(PARAMS_COUNT_SQL);
+        try {
+            query.setLong(1, row.getId());
+            ResultSet resultSet = query.executeQuery();
+            count = resultSet.next() ? resultSet.getInt(1) : 0;
+        } finally {
+            query.close();
+        }
+        if (count > 0) {
+            PreparedStatement delete = connection.prepareStatement(CacheSql.PARAMS_DELETE_SQL);
+            try {
+                delete.setLong(1, row.getId());
+                delete.executeUpdate();
+            } finally {
+                delete.close();
+            }
+        }
+        if (row.getAlias() == null || row.getParamNames() == null) {
+            return;
+        }
+        for (int i = 0; i < row.getParamNames().length; i++) {
+            PreparedStatement insert = connection.prepareStatement(CacheSql.PARAMS_INSERT_SQL);
+            try {
+                insert.setLong(1, row.getId());
+                insert.setString(2, row.getAlias());
+                insert.setString(3, row.getParamNames()[i]);
+                insert.setString(4, String.valueOf(row.getParams()[i]));
+                insert.executeUpdate();
+            } finally {
+                insert.close();
+            }
+        }
+    }
+}
@@ -2,10 +2,12 @@ package me.allenzjl.domaincache;
 
 import com.squareup.javapoet.ArrayTypeName;
 import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
 import com.squareup.javapoet.MethodSpec;
 import com.squareup.javapoet.ParameterSpec;
 import com.squareup.javapoet.ParameterizedTypeName;
 import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
 import com.squareup.javapoet.TypeVariableName;
 
 import java.util.ArrayList;
@@ -14,11 +16,16 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 
 import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.Modifier;
 import javax.lang.model.element.TypeParameterElement;
 import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
 import javax.lang.model.type.TypeVariable;
 
 /**
@@ -30,6 +37,18 @@ public class CacheMethod extends CacheEvictMethod {
 
     public static final String METHOD_PART_B_SUFFIX = "_B";
 
+    public static final String METHOD_PART_C_SUFFIX = "_C";
+
+    public static final ClassName CACHE_KEY_TYPE = ClassName.get("me.allenzjl.domaincache", "CacheKey");
+
+    public static final ClassName CACHE_KEY_BUILDER_TYPE = ClassName.get("me.allenzjl.domaincache", "CacheKeyBuilder");
+
+    public static final ClassName CODECS_TYPE = ClassName.get("me.allenzjl.domaincache", "Codecs");
+
+    public static final ClassName FLIGHT_TYPE = ClassName.get("me.allenzjl.domaincache", "SingleFlight", "Flight");
+
+    public static final ClassName CACHE_RESULT_TYPE = ClassName.get("me.allenzjl.domaincache", "CacheResult");
+
     public static final int RETURN_TYPE_FORM_OBJECT = 0;
 
     public static final int RETURN_TYPE_FORM_LIST = 1;
@@ -42,6 +61,16 @@ public class CacheMethod extends CacheEvictMethod {
 
     protected int mExpire;
 
+    protected int mMaxStale;
+
+    protected int mRefreshAhead;
+
+    protected int mNegativeExpire;
+
+    protected String mCodecName;
+
+    protected SerializerClass mSerializer;
+
     protected List<AdditionalParameter> mAdditionalParameters;
 
     protected int mReturnTypeForm;
@@ -52,10 +81,12 @@ public class CacheMethod extends CacheEvictMethod {
 
     protected String mKeyName;
 
-    protected String mJsonObjectName;
-
     protected String mResultName;
 
+    protected String mFlightName;
+
+    protected String mCacheResultName;
+
     protected CacheObservable mCacheObservable;
 
     protected int mCacheStrategy;
@@ -63,8 +94,9 @@ public class CacheMethod extends CacheEvictMethod {
     public CacheMethod(String packageName, String className, ExecutableElement methodElement) {
         super(packageName, className, methodElement);
         mKeyName = mMethodName + "_k";
-        mJsonObjectName = mMethodName + "_p";
         mResultName = mMethodName + "_r";
+        mFlightName = mMethodName + "_f";
+        mCacheResultName = mMethodName + "_c";
         processCacheableAnnotation();
         processCacheObservableAnnotation();
     }
@@ -80,6 +112,24 @@ public class CacheMethod extends CacheEvictMethod {
             ProcessUtils.printError("Value of attribute 'expire' should not below zero", mMethodElement);
         }
         mExpire = expire;
+        int maxStale = mCacheable.maxStale();
+        if (maxStale < 0) {
+            ProcessUtils.printError("Value of attribute 'maxStale' should not below zero", mMethodElement);
+        }
+        mMaxStale = maxStale;
+        int refreshAhead = mCacheable.refreshAhead();
+        if (refreshAhead < 0 || refreshAhead >= 100) {
+            ProcessUtils.printError("Value of attribute 'refreshAhead' should be between 0 and 99", mMethodElement);
+        } else if (refreshAhead > 0 && expire == 0) {
+            ProcessUtils.printError("Attribute 'refreshAhead' requires 'expire' to be above zero", mMethodElement);
+        }
+        mRefreshAhead = refreshAhead;
+        int negativeExpire = mCacheable.negativeExpire();
+        if (negativeExpire < 0) {
+            ProcessUtils.printError("Value of attribute 'negativeExpire' should not below zero", mMethodElement);
+        }
+        mNegativeExpire = negativeExpire;
+        mCodecName = mCacheable.codec();
     }
 
     protected void processCacheObservableAnnotation() {
@@ -87,12 +137,43 @@ public class CacheMethod extends CacheEvictMethod {
         mCacheObservable = mMethodElement.getAnnotation(CacheObservable.class);
         if (mCacheObservable != null) {
             int strategy = mCacheObservable.value();
-            if (strategy != CacheStrategy.READ_CACHE_ONLY & strategy != CacheStrategy.PUSH_CACHE_FIRST) {
-                ProcessUtils
-                        .printError("Value of attribute 'value' should be READ_CACHE_ONLY or PUSH_CACHE_FIRST", mMethodElement);
+            if (strategy != CacheStrategy.READ_CACHE_ONLY & strategy != CacheStrategy.PUSH_CACHE_FIRST &
+                    strategy != CacheStrategy.STALE_WHILE_REVALIDATE) {
+                ProcessUtils.printError(
+                        "Value of attribute 'value' should be READ_CACHE_ONLY, PUSH_CACHE_FIRST or STALE_WHILE_REVALIDATE",
+                        mMethodElement);
             }
             mCacheStrategy = strategy;
         }
+        if (mCacheStrategy == CacheStrategy.STALE_WHILE_REVALIDATE) {
+            if (mExpire == 0 || mMaxStale == 0) {
+                ProcessUtils.printError("Attributes 'expire' and 'maxStale' should be above zero for STALE_WHILE_REVALIDATE",
+                        mMethodElement);
+            }
+        } else if (mMaxStale != 0) {
+            ProcessUtils.printError("Attribute 'maxStale' is only used by STALE_WHILE_REVALIDATE", mMethodElement);
+        }
+    }
+
+    public String getCodecName() {
+        return mCodecName;
+    }
+
+    /**
+     * 返回结果的类型，返回值为列表或数组时是元素的类型。
+     */
+    public TypeMirror getResultTypeMirror() {
+        TypeMirror returnType = mMethodElement.getReturnType();
+        if (returnType.getKind() == TypeKind.ARRAY) {
+            return ((ArrayType) returnType).getComponentType();
+        } else if (returnType.getKind() == TypeKind.DECLARED && !((DeclaredType) returnType).getTypeArguments().isEmpty()) {
+            return ((DeclaredType) returnType).getTypeArguments().get(0);
+        }
+        return returnType;
+    }
+
+    public void setSerializer(SerializerClass serializer) {
+        mSerializer = serializer;
     }
 
     public void setCacheParameters(Map<String, Set<AdditionalParameter>> cacheParameters) {
@@ -139,13 +220,47 @@ public class CacheMethod extends CacheEvictMethod {
         initResultType();
         List<MethodSpec> list = new ArrayList<>();
         list.add(generateMethod());
-        if (mCacheStrategy == CacheStrategy.PUSH_CACHE_FIRST) {
+        // 生成的Observable在读缓存的调度器上调用_A，未命中时在调用原方法的调度器上调用_C
+        if (mCacheObservable != null) {
             list.add(generateMethodPartA());
+            if (mCacheStrategy != CacheStrategy.PUSH_CACHE_FIRST) {
+                list.add(generateMethodPartC());
+            }
+        }
+        if (mCacheStrategy == CacheStrategy.PUSH_CACHE_FIRST || isRevalidating()) {
             list.add(generateMethodPartB());
         }
         return list;
     }
 
+    /**
+     * 是否读到变旧的结果时在后台刷新，{@link CacheStrategy#STALE_WHILE_REVALIDATE}或者设置了{@link Cacheable#refreshAhead()}时为true。
+     */
+    protected boolean isRevalidating() {
+        return mCacheStrategy == CacheStrategy.STALE_WHILE_REVALIDATE || (mRefreshAhead > 0 && mExpire > 0);
+    }
+
+    /**
+     * 提前刷新的秒数，至少1秒。
+     */
+    protected int refreshAheadSeconds() {
+        return mRefreshAhead > 0 && mExpire > 0 ? Math.max(1, mExpire * mRefreshAhead / 100) : 0;
+    }
+
+    /**
+     * 写缓存时结果保持新鲜的秒数，提前刷新时在过期前变旧。
+     */
+    protected int freshSeconds() {
+        return mExpire - refreshAheadSeconds();
+    }
+
+    /**
+     * 写缓存时结果变旧后仍然可以读到的秒数。
+     */
+    protected int staleSeconds() {
+        return refreshAheadSeconds() + (mCacheStrategy == CacheStrategy.STALE_WHILE_REVALIDATE ? mMaxStale : 0);
+    }
+
     protected MethodSpec.Builder copyMethodSignatureBuilder(ExecutableElement methodElement, String methodName) {
         MethodSpec.Builder methodBuilder = MethodSpec.methodBuilder(methodName);
 
@@ -174,85 +289,254 @@ public class CacheMethod extends CacheEvictMethod {
     }
 
     protected MethodSpec generateMethod() {
+        if (isRevalidating() || mNegativeExpire > 0) {
+            return generateCacheResultMethod();
+        }
         MethodSpec.Builder methodBuilder = ProcessUtils.overrideMethod(mMethodElement);
         addCacheEvict(methodBuilder);
-        addJsonObjectStatements(methodBuilder);
+        addCacheKeyStatements(methodBuilder);
         addReadCacheStatements(methodBuilder);
         methodBuilder.beginControlFlow("if ($N == null)", mResultName);
-        addStoreCacheAndReturnStatements(methodBuilder);
+        addSingleFlightStatements(methodBuilder);
         methodBuilder.nextControlFlow("else");
         methodBuilder.addStatement("return $N", mResultName);
         methodBuilder.endControlFlow();
         return methodBuilder.build();
     }
 
+    /**
+     * 生成通过{@code CacheResult}读缓存的方法，用于{@link CacheStrategy#STALE_WHILE_REVALIDATE}、提前刷新和否定缓存：
+     * 读到变旧的结果时立即返回，并在后台调用{@code _B}方法刷新缓存；读到否定缓存时直接返回null；
+     * 未命中或者已经过期时与其他策略相同，同步调用源方法。
+     */
+    protected MethodSpec generateCacheResultMethod() {
+        MethodSpec.Builder methodBuilder = ProcessUtils.overrideMethod(mMethodElement, true);
+        addCacheEvict(methodBuilder);
+        addCacheKeyStatements(methodBuilder);
+        methodBuilder.addStatement("$T $N = $L", ParameterizedTypeName.get(CACHE_RESULT_TYPE, mReturnType), mCacheResultName,
+                buildReadCacheCode("Result"));
+        methodBuilder.addStatement("$T $N = $N != null ? $N.getValue() : null", mReturnType, mResultName, mCacheResultName,
+                mCacheResultName);
+        methodBuilder.beginControlFlow("if ($L)", buildMissCondition(true));
+        addSingleFlightStatements(methodBuilder, true);
+        methodBuilder.nextControlFlow("else");
+        if (isRevalidating()) {
+            methodBuilder.beginControlFlow("if ($N.isStale())", mCacheResultName);
+            addRefreshStatement(methodBuilder);
+            methodBuilder.endControlFlow();
+        }
+        methodBuilder.addStatement("return $N", mResultName);
+        methodBuilder.endControlFlow();
+        return methodBuilder.build();
+    }
+
+    /**
+     * 生成在后台调用{@code _B}方法刷新缓存的语句。
+     */
+    protected void addRefreshStatement(MethodSpec.Builder methodBuilder) {
+        TypeSpec refreshTask = TypeSpec.anonymousClassBuilder("").addSuperinterface(Runnable.class)
+                .addMethod(MethodSpec.methodBuilder("run").addAnnotation(Override.class).addModifiers(Modifier.PUBLIC)
+                        .addStatement("$N.this.$N($N)", mClassName, mMethodName + METHOD_PART_B_SUFFIX, buildParamNames())
+                        .build()).build();
+        methodBuilder.addStatement("$T.getInstance().refresh($N, $L)", CACHE_STORAGE_TYPE, mKeyName, refreshTask);
+    }
+
+    /**
+     * 生成判断未命中的条件。设置了{@link Cacheable#negativeExpire()}时否定缓存视为命中。
+     *
+     * @param cacheResult 是否通过{@code CacheResult}读缓存
+     */
+    protected CodeBlock buildMissCondition(boolean cacheResult) {
+        if (cacheResult && mNegativeExpire > 0) {
+            return CodeBlock.builder().add("$N == null && ($N == null || !$N.isNegative())", mResultName, mCacheResultName,
+                    mCacheResultName).build();
+        }
+        return CodeBlock.builder().add("$N == null", mResultName).build();
+    }
+
+    protected void addSingleFlightStatements(MethodSpec.Builder methodBuilder) {
+        addSingleFlightStatements(methodBuilder, false);
+    }
+
+    /**
+     * 生成合并并发源调用的语句：同一个缓存键上已经有源调用时等待它结束并重新读缓存，读不到时再自己调用源方法。
+     *
+     * @param cacheResult 是否通过{@code CacheResult}读缓存
+     */
+    protected void addSingleFlightStatements(MethodSpec.Builder methodBuilder, boolean cacheResult) {
+        methodBuilder.addStatement("$T $N = $T.getInstance().getSingleFlight().join($N)", FLIGHT_TYPE, mFlightName,
+                CACHE_STORAGE_TYPE, mKeyName);
+        methodBuilder.beginControlFlow("try");
+        methodBuilder.beginControlFlow("if ($N.await())", mFlightName);
+        if (cacheResult) {
+            methodBuilder.addStatement("$N = $L", mCacheResultName, buildReadCacheCode("Result"));
+            methodBuilder.addStatement("$N = $N != null ? $N.getValue() : null", mResultName, mCacheResultName,
+                    mCacheResultName);
+        } else {
+            methodBuilder.addStatement("$N = $L", mResultName, buildReadCacheCode());
+        }
+        methodBuilder.endControlFlow();
+        methodBuilder.beginControlFlow("if ($L)", buildMissCondition(cacheResult));
+        addStoreCacheAndReturnStatements(methodBuilder);
+        methodBuilder.nextControlFlow("else");
+        methodBuilder.addStatement("$N.shared()", mFlightName);
+        methodBuilder.addStatement("return $N", mResultName);
+        methodBuilder.endControlFlow();
+        methodBuilder.nextControlFlow("finally");
+        methodBuilder.addStatement("$N.leave()", mFlightName);
+        methodBuilder.endControlFlow();
+    }
+
+    /**
+     * 生成只读缓存的方法，未命中时返回null。读到变旧的结果时返回它，并在后台刷新；{@link CacheStrategy#PUSH_CACHE_FIRST}时
+     * 生成的Observable总会调用原方法，不再刷新。
+     * 设置了{@link Cacheable#negativeExpire()}时返回{@code CacheResult}，否定缓存也视为命中。
+     */
     protected MethodSpec generateMethodPartA() {
         MethodSpec.Builder methodBuilder = copyMethodSignatureBuilder(mMethodElement, mMethodName + METHOD_PART_A_SUFFIX);
         addCacheEvict(methodBuilder);
-        addJsonObjectStatements(methodBuilder);
+        addCacheKeyStatements(methodBuilder);
+        if (isRevalidating() || mNegativeExpire > 0) {
+            TypeName cacheResultType = ParameterizedTypeName.get(CACHE_RESULT_TYPE, mReturnType);
+            methodBuilder.addStatement("$T $N = $L", cacheResultType, mCacheResultName, buildReadCacheCode("Result"));
+            if (isRevalidating()) {
+                methodBuilder.beginControlFlow("if ($N == null)", mCacheResultName);
+                methodBuilder.addStatement("return null");
+                methodBuilder.endControlFlow();
+                // PUSH_CACHE_FIRST同时在调用原方法的调度器上调用_B，不需要再刷新
+                if (mCacheStrategy != CacheStrategy.PUSH_CACHE_FIRST) {
+                    methodBuilder.beginControlFlow("if ($N.isStale())", mCacheResultName);
+                    addRefreshStatement(methodBuilder);
+                    methodBuilder.endControlFlow();
+                }
+            }
+            if (mNegativeExpire > 0) {
+                methodBuilder.returns(cacheResultType);
+                methodBuilder.addStatement("return $N", mCacheResultName);
+            } else {
+                methodBuilder.addStatement("return $N.getValue()", mCacheResultName);
+            }
+            return methodBuilder.build();
+        }
         addReadCacheStatements(methodBuilder);
         methodBuilder.addStatement("return $N", mResultName);
         return methodBuilder.build();
     }
 
+    /**
+     * 生成{@code _A}未命中之后调用的方法，与代理方法未命中时相同，合并同一个缓存键上的源调用，但不再重复读缓存。
+     */
+    protected MethodSpec generateMethodPartC() {
+        MethodSpec.Builder methodBuilder = copyMethodSignatureBuilder(mMethodElement, mMethodName + METHOD_PART_C_SUFFIX);
+        addCacheKeyStatements(methodBuilder);
+        boolean cacheResult = isRevalidating() || mNegativeExpire > 0;
+        if (cacheResult) {
+            methodBuilder.addStatement("$T $N = null", ParameterizedTypeName.get(CACHE_RESULT_TYPE, mReturnType), mCacheResultName);
+        }
+        methodBuilder.addStatement("$T $N = null", mReturnType, mResultName);
+        addSingleFlightStatements(methodBuilder, cacheResult);
+        return methodBuilder.build();
+    }
+
     protected MethodSpec generateMethodPartB() {
         MethodSpec.Builder methodBuilder = copyMethodSignatureBuilder(mMethodElement, mMethodName + METHOD_PART_B_SUFFIX);
-        addJsonObjectStatements(methodBuilder);
+        addCacheKeyStatements(methodBuilder);
         methodBuilder.addStatement("$T $N", mReturnType, mResultName);
         addStoreCacheAndReturnStatements(methodBuilder);
         return methodBuilder.build();
     }
 
-    protected void addJsonObjectStatements(MethodSpec.Builder methodBuilder) {
-        methodBuilder.addStatement("String $N = $S", mKeyName, mQualifiedName);
+    /**
+     * 生成构造缓存键的语句。参数按名称排序后写入，与fastjson序列化{@code JSONObject}得到的文本相同。
+     */
+    protected void addCacheKeyStatements(MethodSpec.Builder methodBuilder) {
         intAdditionalParameters();
         int paramCount = parameterCount();
         if (paramCount == 0) {
-            methodBuilder.addStatement("Object $N = null", mJsonObjectName);
-        } else {
-            ClassName jsonObjectTypeName = ClassName.get("com.alibaba.fastjson", "JSONObject");
-            methodBuilder.addStatement("$T $N = new $T()", jsonObjectTypeName, mJsonObjectName, jsonObjectTypeName);
-            for (VariableElement paramElement : mParameters) {
-                String paramName = paramElement.getSimpleName().toString();
-                methodBuilder.addStatement("$N.put($S, $N)", mJsonObjectName, paramName, paramName);
-            }
-            for (AdditionalParameter parameter : mAdditionalParameters) {
-                String paramName = mClassName + "_" + parameter.getName();
-                String statement = "$N.put($S, $N";
-                if (parameter.isMethod()) {
-                    statement += "())";
-                } else {
-                    statement += ")";
-                }
-                methodBuilder.addStatement(statement, mJsonObjectName, paramName, parameter.getName());
-            }
+            methodBuilder.addStatement("$T $N = $T.of($S)", CACHE_KEY_TYPE, mKeyName, CACHE_KEY_TYPE, mQualifiedName);
+            return;
+        }
+        Map<String, String> entries = new TreeMap<>();
+        for (VariableElement paramElement : mParameters) {
+            String paramName = paramElement.getSimpleName().toString();
+            entries.put(paramName, paramName);
+        }
+        for (AdditionalParameter parameter : mAdditionalParameters) {
+            entries.put(mClassName + "_" + parameter.getName(),
+                    parameter.isMethod() ? parameter.getName() + "()" : parameter.getName());
         }
+        CodeBlock.Builder keyBuilder = CodeBlock.builder().add("$T.obtain($S)", CACHE_KEY_BUILDER_TYPE, mQualifiedName);
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            keyBuilder.add(".put($S, $L)", entry.getKey(), entry.getValue());
+        }
+        keyBuilder.add(".build()");
+        methodBuilder.addStatement("$T $N = $L", CACHE_KEY_TYPE, mKeyName, keyBuilder.build());
     }
 
     protected void addReadCacheStatements(MethodSpec.Builder methodBuilder) {
+        methodBuilder.addStatement("$T $N = $L", mReturnType, mResultName, buildReadCacheCode());
+    }
+
+    protected CodeBlock buildReadCacheCode() {
+        return buildReadCacheCode("");
+    }
+
+    /**
+     * @param suffix 读缓存方法名的后缀，为"Result"时读出{@code CacheResult}
+     */
+    protected CodeBlock buildReadCacheCode(String suffix) {
         String getMethodName;
         if (mReturnTypeForm == RETURN_TYPE_FORM_LIST) {
-            getMethodName = "getList";
+            getMethodName = "getList" + suffix;
         } else if (mReturnTypeForm == RETURN_TYPE_FORM_ARRAY) {
-            getMethodName = "getArray";
+            getMethodName = "getArray" + suffix;
         } else {
-            getMethodName = "getObject";
+            getMethodName = "getObject" + suffix;
+        }
+        if (mSerializer != null) {
+            return CodeBlock.builder().add("$T.getInstance().$N($N, $T.class, $T.$N)", CACHE_STORAGE_TYPE, getMethodName, mKeyName,
+                    mResultType, mSerializer.getSerializerTypeName(), SerializerClass.INSTANCE_FIELD_NAME).build();
+        } else if (!ProcessUtils.isStringEmpty(mCodecName)) {
+            return CodeBlock.builder().add("$T.getInstance().$N($N, $T.class, $T.get($S))", CACHE_STORAGE_TYPE, getMethodName,
+                    mKeyName, mResultType, CODECS_TYPE, mCodecName).build();
+        } else {
+            return CodeBlock.builder()
+                    .add("$T.getInstance().$N($N, $T.class, null)", CACHE_STORAGE_TYPE, getMethodName, mKeyName, mResultType)
+                    .build();
         }
-        methodBuilder.addStatement("$T $N = $T.getInstance().$N($N, $N, $T.class)", mReturnType, mResultName, CACHE_STORAGE_TYPE,
-                getMethodName, mKeyName, mJsonObjectName, mResultType);
     }
 
     private void addStoreCacheAndReturnStatements(MethodSpec.Builder methodBuilder) {
         methodBuilder.addStatement("$N = super.$N($N)", mResultName, mMethodName, buildParamNames());
         String indexableParamNames = buildIndexableParamNames();
+        CodeBlock.Builder putBuilder = CodeBlock.builder();
+        if (mNegativeExpire > 0) {
+            putBuilder.add("$T.getInstance().put($N, $N, $L, $L, $L, ", CACHE_STORAGE_TYPE, mKeyName, mResultName, freshSeconds(),
+                    staleSeconds(), mNegativeExpire);
+        } else if (isRevalidating()) {
+            putBuilder.add("$T.getInstance().put($N, $N, $L, $L, ", CACHE_STORAGE_TYPE, mKeyName, mResultName, freshSeconds(),
+                    staleSeconds());
+        } else {
+            putBuilder.add("$T.getInstance().put($N, $N, $L, ", CACHE_STORAGE_TYPE, mKeyName, mResultName, mExpire);
+        }
+        putBuilder.add("$S, ", mCacheAlias);
+        if (mSerializer != null && ProcessUtils.isStringEmpty(mCodecName)) {
+            // 没有指定编解码器时仍然使用配置的编解码器编码，与序列化器格式相同时才用序列化器代替
+            putBuilder.add("$T.getInstance().getCodec($T.$N), ", CACHE_STORAGE_TYPE, mSerializer.getSerializerTypeName(),
+                    SerializerClass.INSTANCE_FIELD_NAME);
+        } else if (mSerializer != null) {
+            putBuilder.add("$T.$N, ", mSerializer.getSerializerTypeName(), SerializerClass.INSTANCE_FIELD_NAME);
+        } else if (!ProcessUtils.isStringEmpty(mCodecName)) {
+            putBuilder.add("$T.get($S), ", CODECS_TYPE, mCodecName);
+        } else {
+            putBuilder.add("null, ");
+        }
         if (ProcessUtils.isStringEmpty(indexableParamNames)) {
-            methodBuilder
-                    .addStatement("$T.getInstance().put($N, $N, $N, $L, $S, $S)", CACHE_STORAGE_TYPE, mKeyName, mJsonObjectName,
-                            mResultName, mExpire, mCacheAlias, indexableParamNames);
+            putBuilder.add("$S)", indexableParamNames);
         } else {
-            methodBuilder.addStatement("$T.getInstance().put($N, $N, $N, $L, $S, $S, $L)", CACHE_STORAGE_TYPE, mKeyName,
-                    mJsonObjectName, mResultName, mExpire, mCacheAlias, indexableParamNames, indexableParamNames);
+            putBuilder.add("$S, $L)", indexableParamNames, indexableParamNames);
         }
+        methodBuilder.addStatement("$L", putBuilder.build());
         methodBuilder.addStatement("return $N", mResultName);
     }
 
@@ -1,6 +1,7 @@
 package me.allenzjl.domaincache;
 
 import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
 import com.squareup.javapoet.MethodSpec;
 import com.squareup.javapoet.ParameterSpec;
 import com.squareup.javapoet.ParameterizedTypeName;
@@ -31,12 +32,31 @@ public class ObservableMethod extends BasicMethod {
 
     public static final ClassName CACHE_STORAGE_TYPE = ClassName.get("me.allenzjl.domaincache", "CacheStorage");
 
+    public static final ClassName CACHE_SCHEDULERS_TYPE = ClassName.get("me.allenzjl.domaincache", "CacheSchedulers");
+
+    public static final String DEFAULT_CACHE_SCHEDULER = "cache";
+
+    public static final String DEFAULT_ORIGIN_SCHEDULER = "origin";
+
+    public static final ClassName FUNC1_TYPE = ClassName.get("rx.functions", "Func1");
+
+    public static final ClassName CACHE_RESULT_TYPE = ClassName.get("me.allenzjl.domaincache", "CacheResult");
+
     protected CacheObservable mCacheObservable;
 
     protected int mCacheStrategy;
 
     protected boolean mAnnotatedByCacheable;
 
+    /**
+     * 是否设置了{@link Cacheable#negativeExpire()}，这时{@code _A}方法返回{@code CacheResult}。
+     */
+    protected boolean mNegativeCache;
+
+    protected String mCacheScheduler;
+
+    protected String mOriginScheduler;
+
     protected ObservableMethod(String packageName, String className, ExecutableElement methodElement) {
         super(packageName, className, methodElement);
         processCacheObservableAnnotation();
@@ -45,11 +65,24 @@ public class ObservableMethod extends BasicMethod {
     protected void processCacheObservableAnnotation() {
         mCacheObservable = mMethodElement.getAnnotation(CacheObservable.class);
         int strategy = mCacheObservable.value();
-        if (strategy != CacheStrategy.READ_CACHE_ONLY & strategy != CacheStrategy.PUSH_CACHE_FIRST) {
-            ProcessUtils.printError("Value of attribute 'value' should be READ_CACHE_ONLY or PUSH_CACHE_FIRST", mMethodElement);
+        if (strategy != CacheStrategy.READ_CACHE_ONLY & strategy != CacheStrategy.PUSH_CACHE_FIRST &
+                strategy != CacheStrategy.STALE_WHILE_REVALIDATE) {
+            ProcessUtils.printError(
+                    "Value of attribute 'value' should be READ_CACHE_ONLY, PUSH_CACHE_FIRST or STALE_WHILE_REVALIDATE",
+                    mMethodElement);
         }
         mCacheStrategy = strategy;
-        mAnnotatedByCacheable = mMethodElement.getAnnotation(Cacheable.class) != null;
+        Cacheable cacheable = mMethodElement.getAnnotation(Cacheable.class);
+        mAnnotatedByCacheable = cacheable != null;
+        mNegativeCache = cacheable != null && cacheable.negativeExpire() > 0;
+        mCacheScheduler = mCacheObservable.cacheScheduler();
+        if (ProcessUtils.isStringEmpty(mCacheScheduler)) {
+            mCacheScheduler = DEFAULT_CACHE_SCHEDULER;
+        }
+        mOriginScheduler = mCacheObservable.originScheduler();
+        if (ProcessUtils.isStringEmpty(mOriginScheduler)) {
+            mOriginScheduler = DEFAULT_ORIGIN_SCHEDULER;
+        }
     }
 
     protected MethodSpec.Builder observableMethod(ExecutableElement method) {
@@ -94,42 +127,115 @@ public class ObservableMethod extends BasicMethod {
         return methodBuilder;
     }
 
-    protected MethodSpec generateCallMethod(MethodSpec.Builder methodBuilder) {
+    /**
+     * 生成调用代理方法并发送结果的call方法。
+     *
+     * @param proxyMethodName 代理方法的名称
+     * @param skipNull        为true时代理方法返回null不发送结果，直接结束
+     */
+    protected MethodSpec generateCallMethod(MethodSpec.Builder methodBuilder, String proxyMethodName, boolean skipNull) {
         String resultName = mMethodName + "_r";
         String paramNames = buildParamNames();
-        if (mAnnotatedByCacheable && mCacheStrategy == CacheStrategy.PUSH_CACHE_FIRST) {
+        if (!mReturnType.equals(ClassName.get(Void.class))) {
             methodBuilder.addStatement("$T $N = $N.this.$N.$N($N)", mReturnType, resultName, mClassName,
-                    ObservableClass.DOMAIN_PROXY_FIELD_NAME, mMethodName + CacheMethod.METHOD_PART_A_SUFFIX, paramNames);
-            methodBuilder.beginControlFlow("if ($N != null)", resultName);
-            methodBuilder.addStatement("$N.onNext($N)", SUBSCRIBER_NAME, resultName);
-            methodBuilder.endControlFlow();
-            methodBuilder.addStatement("$N = $N.this.$N.$N($N)", resultName, mClassName, ObservableClass.DOMAIN_PROXY_FIELD_NAME,
-                    mMethodName + CacheMethod.METHOD_PART_B_SUFFIX, paramNames);
-            methodBuilder.addStatement("$N.onNext($N)", SUBSCRIBER_NAME, resultName);
-        } else {
-            if (!mReturnType.equals(ClassName.get(Void.class))) {
-                methodBuilder.addStatement("$T $N = $N.this.$N.$N($N)", mReturnType, resultName, mClassName,
-                        ObservableClass.DOMAIN_PROXY_FIELD_NAME, mMethodName, paramNames);
+                    ObservableClass.DOMAIN_PROXY_FIELD_NAME, proxyMethodName, paramNames);
+            if (skipNull) {
+                methodBuilder.beginControlFlow("if ($N != null)", resultName);
                 methodBuilder.addStatement("$N.onNext($N)", SUBSCRIBER_NAME, resultName);
+                methodBuilder.endControlFlow();
             } else {
-                methodBuilder.addStatement("$N.this.$N.$N($N)", mClassName, ObservableClass.DOMAIN_PROXY_FIELD_NAME, mMethodName,
-                        paramNames);
-                methodBuilder.addStatement("$N.onNext(null)", SUBSCRIBER_NAME);
+                methodBuilder.addStatement("$N.onNext($N)", SUBSCRIBER_NAME, resultName);
             }
+        } else {
+            methodBuilder.addStatement("$N.this.$N.$N($N)", mClassName, ObservableClass.DOMAIN_PROXY_FIELD_NAME, proxyMethodName,
+                    paramNames);
+            methodBuilder.addStatement("$N.onNext(null)", SUBSCRIBER_NAME);
         }
         methodBuilder.addStatement("$N.onCompleted()", SUBSCRIBER_NAME);
         return methodBuilder.build();
     }
 
-    @Override
-    public List<MethodSpec> generateMethods() {
-        MethodSpec.Builder methodBuilder = observableMethod(mMethodElement);
+    /**
+     * 生成在调度器上订阅的{@code Observable}，它调用代理方法并发送结果。
+     */
+    protected CodeBlock buildObservable(String proxyMethodName, boolean skipNull, String scheduler) {
+        return buildObservable(generateCallMethod(getCallMethodBuilder(), proxyMethodName, skipNull), scheduler);
+    }
+
+    /**
+     * 生成在调度器上订阅、执行callMethod的{@code Observable}。
+     */
+    protected CodeBlock buildObservable(MethodSpec callMethod, String scheduler) {
         TypeSpec.Builder onSubscribeBuilder = TypeSpec.anonymousClassBuilder("");
         ClassName onSubscribeTypeName = ClassName.get("rx", "Observable.OnSubscribe");
         onSubscribeBuilder.addSuperinterface(ParameterizedTypeName.get(onSubscribeTypeName, mReturnType));
-        MethodSpec callMethod = generateCallMethod(getCallMethodBuilder());
         onSubscribeBuilder.addMethod(callMethod);
-        methodBuilder.addStatement("return $T.create($L)", OBSERVABLE_TYPE, onSubscribeBuilder.build());
+        return CodeBlock.builder().add("$T.create($L).subscribeOn($T.get($S))", OBSERVABLE_TYPE, onSubscribeBuilder.build(),
+                CACHE_SCHEDULERS_TYPE, scheduler).build();
+    }
+
+    /**
+     * 生成在读缓存的调度器上调用{@code _A}方法的{@code Observable}，未命中时不发送结果，直接结束。
+     * {@code _A}返回{@code CacheResult}时，否定缓存发送null。
+     */
+    protected CodeBlock buildCacheObservable() {
+        String proxyMethodName = mMethodName + CacheMethod.METHOD_PART_A_SUFFIX;
+        if (!mNegativeCache) {
+            return buildObservable(proxyMethodName, true, mCacheScheduler);
+        }
+        String cacheResultName = mMethodName + "_c";
+        MethodSpec.Builder methodBuilder = getCallMethodBuilder();
+        methodBuilder.addStatement("$T $N = $N.this.$N.$N($N)", ParameterizedTypeName.get(CACHE_RESULT_TYPE, mReturnType),
+                cacheResultName, mClassName, ObservableClass.DOMAIN_PROXY_FIELD_NAME, proxyMethodName, buildParamNames());
+        methodBuilder.beginControlFlow("if ($N != null)", cacheResultName);
+        methodBuilder.addStatement("$N.onNext($N.getValue())", SUBSCRIBER_NAME, cacheResultName);
+        methodBuilder.endControlFlow();
+        methodBuilder.addStatement("$N.onCompleted()", SUBSCRIBER_NAME);
+        return buildObservable(methodBuilder.build(), mCacheScheduler);
+    }
+
+    /**
+     * 生成{@code publish}的选择函数：原方法的结果只订阅一次，先订阅{@code takeUntil}再订阅{@code merge}，
+     * 原方法的结果到达时先结束读缓存，缓存的结果不会在新的结果之后发送。
+     */
+    protected TypeSpec buildPushCacheFirstSelector(String cacheName) {
+        TypeName observableType = ParameterizedTypeName.get(OBSERVABLE_TYPE, mReturnType);
+        String originName = mMethodName + "_shared";
+        MethodSpec callMethod = MethodSpec.methodBuilder("call").addAnnotation(Override.class).addModifiers(Modifier.PUBLIC)
+                .returns(observableType).addParameter(observableType, originName)
+                .addStatement("return $T.merge($N.takeUntil($N), $N)", OBSERVABLE_TYPE, cacheName, originName, originName)
+                .build();
+        return TypeSpec.anonymousClassBuilder("")
+                .addSuperinterface(ParameterizedTypeName.get(FUNC1_TYPE, observableType, observableType))
+                .addMethod(callMethod).build();
+    }
+
+    /**
+     * 生成的方法在读缓存的调度器上调用代理的{@code _A}方法只读缓存，未命中时再在调用原方法的调度器上调用{@code _C}方法，
+     * 读缓存不会排在慢的原方法调用之后，也不会重复读缓存。{@link CacheStrategy#PUSH_CACHE_FIRST}时同时开始读缓存和在调用原方法的调度器上
+     * 调用{@code _B}方法，先发送缓存的结果，原方法先返回时丢弃缓存的结果。没有{@code @Cacheable}时只在调用原方法的调度器上调用代理方法。
+     */
+    @Override
+    public List<MethodSpec> generateMethods() {
+        MethodSpec.Builder methodBuilder = observableMethod(mMethodElement);
+        if (!mAnnotatedByCacheable) {
+            methodBuilder.addStatement("return $L", buildObservable(mMethodName, false, mOriginScheduler));
+        } else {
+            TypeName observableType = ParameterizedTypeName.get(OBSERVABLE_TYPE, mReturnType);
+            String cacheName = mMethodName + "_cache";
+            String originName = mMethodName + "_origin";
+            methodBuilder.addStatement("final $T $N = $L", observableType, cacheName, buildCacheObservable());
+            if (mCacheStrategy == CacheStrategy.PUSH_CACHE_FIRST) {
+                methodBuilder.addStatement("$T $N = $L", observableType, originName,
+                        buildObservable(mMethodName + CacheMethod.METHOD_PART_B_SUFFIX, false, mOriginScheduler));
+                methodBuilder.addStatement("return $N.publish($L)", originName, buildPushCacheFirstSelector(cacheName));
+            } else {
+                // 未命中时合并同一个缓存键上的原方法调用
+                methodBuilder.addStatement("$T $N = $L", observableType, originName,
+                        buildObservable(mMethodName + CacheMethod.METHOD_PART_C_SUFFIX, false, mOriginScheduler));
+                methodBuilder.addStatement("return $N.switchIfEmpty($N)", cacheName, originName);
+            }
+        }
 
         List<MethodSpec> list = new ArrayList<>(1);
         list.add(methodBuilder.build());
@@ -45,6 +45,17 @@ public class ProcessUtils {
      * @return 方法构建器
      */
     public static MethodSpec.Builder overrideMethod(ExecutableElement method) {
+        return overrideMethod(method, false);
+    }
+
+    /**
+     * 返回一个覆盖了方法的构建器。
+     *
+     * @param method          方法元素
+     * @param finalParameters 为true时所有参数加上final，以便在匿名类中使用
+     * @return 方法构建器
+     */
+    public static MethodSpec.Builder overrideMethod(ExecutableElement method, boolean finalParameters) {
         if (method == null) {
             throw new NullPointerException("method == null");
         }
@@ -75,6 +86,10 @@ public class ProcessUtils {
             TypeName type = TypeName.get(parameter.asType());
             String name = parameter.getSimpleName().toString();
             Set<Modifier> parameterModifiers = parameter.getModifiers();
+            if (finalParameters && !parameterModifiers.contains(Modifier.FINAL)) {
+                parameterModifiers = new LinkedHashSet<>(parameterModifiers);
+                parameterModifiers.add(Modifier.FINAL);
+            }
             ParameterSpec.Builder parameterBuilder = ParameterSpec.builder(type, name)
                     .addModifiers(parameterModifiers.toArray(new Modifier[parameterModifiers.size()]));
             methodBuilder.addParameter(parameterBuilder.build());
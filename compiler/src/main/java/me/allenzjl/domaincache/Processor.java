@@ -10,6 +10,7 @@ import com.squareup.javapoet.WildcardTypeName;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
@@ -39,6 +40,13 @@ public class Processor extends AbstractProcessor {
 
     protected Map<String, ObservableClass> mObservableClasses;
 
+    protected Map<String, SerializerClass> mSerializerClasses;
+
+    /**
+     * 已经生成过的序列化器，同一个结果类型可能在多轮处理中被引用，只生成一次。
+     */
+    protected Set<String> mGeneratedSerializers;
+
     @Override
     public Set<String> getSupportedAnnotationTypes() {
         Set<String> annotations = new LinkedHashSet<>();
@@ -57,6 +65,8 @@ public class Processor extends AbstractProcessor {
         ProcessUtils.init(processingEnv);
         mCacheClasses = new HashMap<>();
         mObservableClasses = new HashMap<>();
+        mSerializerClasses = new HashMap<>();
+        mGeneratedSerializers = new HashSet<>();
     }
 
     @Override
@@ -93,6 +103,12 @@ public class Processor extends AbstractProcessor {
             observableClass.generateJavaFile();
         }
 
+        for (SerializerClass serializerClass : mSerializerClasses.values()) {
+            if (serializerClass != null && mGeneratedSerializers.add(serializerClass.getQualifiedName())) {
+                serializerClass.generateJavaFile();
+            }
+        }
+
         roundClean();
         return false;
     }
@@ -100,6 +116,7 @@ public class Processor extends AbstractProcessor {
     protected void roundClean() {
         mCacheClasses.clear();
         mObservableClasses.clear();
+        mSerializerClasses.clear();
     }
 
     protected void verifyCacheableDomainElement(Element e) {
@@ -140,7 +157,9 @@ public class Processor extends AbstractProcessor {
                 String className = cacheClass.getClassName();
                 if (isCacheableElement(methodElement)) {
                     verifyCacheableElement(methodElement);
-                    cacheClass.addMethod(new CacheMethod(packageName, className, methodElement));
+                    CacheMethod cacheMethod = new CacheMethod(packageName, className, methodElement);
+                    markSerializerClass(cacheMethod);
+                    cacheClass.addMethod(cacheMethod);
                 } else if (isCacheParameterElement(methodElement)) {
                     verifyCacheParameterElement(methodElement);
                     cacheClass.addCacheParameter(new AdditionalParameter(methodElement));
@@ -272,6 +291,18 @@ public class Processor extends AbstractProcessor {
         cacheClass.addMethod(new CacheMethod(cacheClass.getPackageName(), cacheClass.getClassName(), cacheMethodElement));
     }
 
+    /**
+     * 没有指定编解码器或指定了二进制编解码器时，为结果类型生成序列化器。没有指定编解码器时序列化器只在读取二进制格式的缓存，
+     * 以及配置的编解码器是二进制编解码器时使用。
+     */
+    protected void markSerializerClass(CacheMethod cacheMethod) {
+        String codecName = cacheMethod.getCodecName();
+        if (!ProcessUtils.isStringEmpty(codecName) && !codecName.equals(SerializerClass.BINARY_CODEC_NAME)) {
+            return;
+        }
+        cacheMethod.setSerializer(SerializerClass.resolve(cacheMethod.getResultTypeMirror(), mSerializerClasses));
+    }
+
     protected void markObservableMethod(TypeElement classElement, ExecutableElement methodElement) {
         ObservableClass observableClass = new ObservableClass(classElement);
         String qualifiedName = observableClass.getQualifiedName();
@@ -0,0 +1,612 @@
+package me.allenzjl.domaincache;
+
+import com.squareup.javapoet.AnnotationSpec;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.ExecutableType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+
+/**
+ * 为{@code @Cacheable}方法的结果类型生成的序列化器，生成在结果类型所在的包中，直接读写字段或getter/setter，不使用反射。
+ * <p>
+ * 序列化器的格式与{@code BinaryCodec}相同。不能直接访问的字段类型交给{@code BinaryCodec}处理；
+ * 结果类型本身有不能访问的字段、没有可访问的无参构造方法或带有类型参数时不生成序列化器。
+ */
+public class SerializerClass extends BasicClass {
+
+    public static final String SERIALIZER_CLASS_NAME_SUFFIX = "CacheSerializer";
+
+    public static final String BINARY_CODEC_NAME = "binary";
+
+    public static final ClassName BINARY_SERIALIZER_TYPE = ClassName.get("me.allenzjl.domaincache", "BinarySerializer");
+
+    public static final ClassName BINARY_CODEC_TYPE = ClassName.get("me.allenzjl.domaincache", "BinaryCodec");
+
+    public static final ClassName BINARY_WRITER_TYPE = ClassName.get("me.allenzjl.domaincache", "BinaryWriter");
+
+    public static final ClassName BINARY_READER_TYPE = ClassName.get("me.allenzjl.domaincache", "BinaryReader");
+
+    public static final ClassName ARRAY_LIST_TYPE = ClassName.get("java.util", "ArrayList");
+
+    public static final String INSTANCE_FIELD_NAME = "INSTANCE";
+
+    public static final String WRITER_NAME = "writer";
+
+    public static final String READER_NAME = "reader";
+
+    public static final String VALUE_NAME = "value";
+
+    public static final String RESULT_NAME = "result";
+
+    protected ClassName mTypeName;
+
+    protected List<Property> mProperties;
+
+    protected Map<String, SerializerClass> mSerializers;
+
+    protected int mLocalCount;
+
+    protected SerializerClass(TypeElement classElement, Map<String, SerializerClass> serializers) {
+        super(classElement, SERIALIZER_CLASS_NAME_SUFFIX);
+        mTypeName = ClassName.get(classElement);
+        StringBuilder nameBuilder = new StringBuilder();
+        for (String simpleName : mTypeName.simpleNames()) {
+            if (nameBuilder.length() > 0) {
+                nameBuilder.append('_');
+            }
+            nameBuilder.append(simpleName);
+        }
+        mClassName = nameBuilder.append(SERIALIZER_CLASS_NAME_SUFFIX).toString();
+        mSerializers = serializers;
+        mProperties = new ArrayList<>();
+    }
+
+    /**
+     * 返回结果类型的序列化器，结果类型不支持时返回null。
+     *
+     * @param type        结果类型
+     * @param serializers 本轮已经解析过的序列化器，以结果类型的全名为键，不支持的类型对应null
+     */
+    public static SerializerClass resolve(TypeMirror type, Map<String, SerializerClass> serializers) {
+        if (type.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+        TypeElement element = (TypeElement) ((DeclaredType) type).asElement();
+        String qualifiedName = element.getQualifiedName().toString();
+        if (serializers.containsKey(qualifiedName)) {
+            return serializers.get(qualifiedName);
+        }
+        SerializerClass serializer = new SerializerClass(element, serializers);
+        if (!serializer.initProperties()) {
+            serializer = null;
+        }
+        serializers.put(qualifiedName, serializer);
+        if (serializer != null) {
+            for (Property property : serializer.mProperties) {
+                serializer.resolveNested(property.mType);
+            }
+        }
+        return serializer;
+    }
+
+    public ClassName getSerializerTypeName() {
+        return ClassName.get(mPackageName, mClassName);
+    }
+
+    protected static Types typeUtils() {
+        return ProcessUtils.getProcessingEnv().getTypeUtils();
+    }
+
+    protected static Elements elementUtils() {
+        return ProcessUtils.getProcessingEnv().getElementUtils();
+    }
+
+    protected boolean initProperties() {
+        String qualifiedName = mClassElement.getQualifiedName().toString();
+        if (mClassElement.getKind() != ElementKind.CLASS || mClassElement.getModifiers().contains(Modifier.ABSTRACT) ||
+                !mClassElement.getTypeParameters().isEmpty() || qualifiedName.startsWith("java.") ||
+                qualifiedName.startsWith("javax.") || qualifiedName.startsWith("android.") || !isTypeAccessible(mClassElement)) {
+            return false;
+        }
+        boolean hasConstructor = false;
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(mClassElement.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty() && isAccessible(constructor)) {
+                hasConstructor = true;
+                break;
+            }
+        }
+        if (!hasConstructor) {
+            return false;
+        }
+
+        DeclaredType declaredType = (DeclaredType) mClassElement.asType();
+        List<ExecutableElement> methods = ElementFilter.methodsIn(elementUtils().getAllMembers(mClassElement));
+        Set<String> names = new HashSet<>();
+        TypeElement current = mClassElement;
+        while (current != null && !current.getQualifiedName().contentEquals(Object.class.getName())) {
+            for (VariableElement field : ElementFilter.fieldsIn(current.getEnclosedElements())) {
+                Set<Modifier> modifiers = field.getModifiers();
+                if (modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.TRANSIENT)) {
+                    continue;
+                }
+                String name = field.getSimpleName().toString();
+                if (!names.add(name)) {
+                    // 与BinaryCodec一致，父类中的同名字段被子类的字段隐藏
+                    continue;
+                }
+                Property property = new Property(name, typeUtils().asMemberOf(declaredType, field));
+                if (!isTypeMirrorAccessible(property.mType)) {
+                    return false;
+                }
+                boolean accessible = isAccessible(field);
+                if (!accessible) {
+                    property.mGetter = findGetter(methods, declaredType, property);
+                }
+                if (!accessible || modifiers.contains(Modifier.FINAL)) {
+                    property.mSetter = findSetter(methods, declaredType, property);
+                }
+                if ((!accessible && property.mGetter == null) ||
+                        ((!accessible || modifiers.contains(Modifier.FINAL)) && property.mSetter == null)) {
+                    return false;
+                }
+                mProperties.add(property);
+            }
+            TypeMirror superclass = current.getSuperclass();
+            current = superclass.getKind() == TypeKind.DECLARED ? (TypeElement) ((DeclaredType) superclass).asElement() : null;
+        }
+        return true;
+    }
+
+    protected String findGetter(List<ExecutableElement> methods, DeclaredType declaredType, Property property) {
+        String suffix = capitalize(property.mName);
+        for (ExecutableElement method : methods) {
+            String name = method.getSimpleName().toString();
+            boolean isGetter = name.equals("get" + suffix) ||
+                    (name.equals("is" + suffix) && property.mType.getKind() == TypeKind.BOOLEAN);
+            if (isGetter && method.getParameters().isEmpty() && !method.getModifiers().contains(Modifier.STATIC) &&
+                    isAccessible(method) && typeUtils().isSameType(
+                    ((ExecutableType) typeUtils().asMemberOf(declaredType, method)).getReturnType(),
+                    property.mType)) {
+                return name;
+            }
+        }
+        return null;
+    }
+
+    protected String findSetter(List<ExecutableElement> methods, DeclaredType declaredType, Property property) {
+        String name = "set" + capitalize(property.mName);
+        for (ExecutableElement method : methods) {
+            if (method.getSimpleName().contentEquals(name) && method.getParameters().size() == 1 &&
+                    !method.getModifiers().contains(Modifier.STATIC) && isAccessible(method) && typeUtils().isSameType(
+                    ((ExecutableType) typeUtils().asMemberOf(declaredType, method)).getParameterTypes()
+                            .get(0), property.mType)) {
+                return name;
+            }
+        }
+        return null;
+    }
+
+    protected static String capitalize(String name) {
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+
+    /**
+     * 成员在生成的序列化器中是否可以访问，序列化器与结果类型在同一个包中。
+     */
+    protected boolean isAccessible(Element element) {
+        Set<Modifier> modifiers = element.getModifiers();
+        if (modifiers.contains(Modifier.PUBLIC)) {
+            return true;
+        }
+        return !modifiers.contains(Modifier.PRIVATE) &&
+                elementUtils().getPackageOf(element).getQualifiedName().contentEquals(mPackageName);
+    }
+
+    protected boolean isTypeAccessible(TypeElement element) {
+        Element current = element;
+        while (current instanceof TypeElement) {
+            TypeElement typeElement = (TypeElement) current;
+            if (!isAccessible(typeElement)) {
+                return false;
+            }
+            if (typeElement.getNestingKind() == NestingKind.LOCAL || typeElement.getNestingKind() == NestingKind.ANONYMOUS) {
+                return false;
+            }
+            if (typeElement.getNestingKind() == NestingKind.MEMBER && typeElement.getKind() == ElementKind.CLASS &&
+                    !typeElement.getModifiers().contains(Modifier.STATIC)) {
+                return false;
+            }
+            current = typeElement.getEnclosingElement();
+        }
+        return true;
+    }
+
+    protected boolean isTypeMirrorAccessible(TypeMirror type) {
+        switch (type.getKind()) {
+            case ARRAY:
+                return isTypeMirrorAccessible(((ArrayType) type).getComponentType());
+            case DECLARED:
+                if (!isTypeAccessible((TypeElement) ((DeclaredType) type).asElement())) {
+                    return false;
+                }
+                for (TypeMirror argument : ((DeclaredType) type).getTypeArguments()) {
+                    if (argument.getKind() == TypeKind.DECLARED || argument.getKind() == TypeKind.ARRAY) {
+                        if (!isTypeMirrorAccessible(argument)) {
+                            return false;
+                        }
+                    }
+                }
+                return true;
+            case TYPEVAR:
+            case WILDCARD:
+                return isTypeMirrorAccessible(typeUtils().erasure(type));
+            default:
+                return type.getKind().isPrimitive();
+        }
+    }
+
+    protected void resolveNested(TypeMirror type) {
+        if (type.getKind() == TypeKind.ARRAY) {
+            resolveNested(((ArrayType) type).getComponentType());
+        } else if (type.getKind() == TypeKind.DECLARED) {
+            TypeMirror elementType = listElementType(type);
+            if (elementType != null) {
+                resolveNested(elementType);
+            } else if (builtinKind(type) == null) {
+                resolve(type, mSerializers);
+            }
+        }
+    }
+
+    /**
+     * 返回List、ArrayList或Collection的元素类型，其他类型返回null。
+     */
+    protected static TypeMirror listElementType(TypeMirror type) {
+        if (type.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+        DeclaredType declaredType = (DeclaredType) type;
+        String name = ((TypeElement) declaredType.asElement()).getQualifiedName().toString();
+        if (!name.equals("java.util.List") && !name.equals("java.util.ArrayList") && !name.equals("java.util.Collection")) {
+            return null;
+        }
+        if (declaredType.getTypeArguments().size() != 1) {
+            return null;
+        }
+        TypeMirror elementType = declaredType.getTypeArguments().get(0);
+        if (elementType.getKind() != TypeKind.DECLARED && elementType.getKind() != TypeKind.ARRAY) {
+            return null;
+        }
+        return elementType;
+    }
+
+    /**
+     * 返回可以直接读写的类型的写方法名，如"Int"、"String"，其他类型返回null。
+     */
+    protected static String builtinKind(TypeMirror type) {
+        switch (type.getKind()) {
+            case INT:
+            case SHORT:
+            case BYTE:
+                return "Int";
+            case LONG:
+                return "Long";
+            case BOOLEAN:
+                return "Boolean";
+            case DOUBLE:
+                return "Double";
+            case FLOAT:
+                return "Float";
+            case CHAR:
+                return "Char";
+            case DECLARED:
+                TypeElement element = (TypeElement) ((DeclaredType) type).asElement();
+                if (element.getKind() == ElementKind.ENUM) {
+                    return "Enum";
+                }
+                switch (element.getQualifiedName().toString()) {
+                    case "java.lang.Integer":
+                    case "java.lang.Short":
+                    case "java.lang.Byte":
+                        return "Int";
+                    case "java.lang.Long":
+                        return "Long";
+                    case "java.lang.Boolean":
+                        return "Boolean";
+                    case "java.lang.Double":
+                        return "Double";
+                    case "java.lang.Float":
+                        return "Float";
+                    case "java.lang.Character":
+                        return "Char";
+                    case "java.lang.String":
+                        return "String";
+                    case "java.util.Date":
+                        return "Date";
+                    case "java.math.BigDecimal":
+                    case "java.math.BigInteger":
+                        return "Decimal";
+                    default:
+                        return null;
+                }
+            default:
+                return null;
+        }
+    }
+
+    protected SerializerClass nestedSerializer(TypeMirror type) {
+        if (type.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+        return mSerializers.get(((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().toString());
+    }
+
+    protected String newLocal(String prefix) {
+        return prefix + (mLocalCount++);
+    }
+
+    @Override
+    protected TypeSpec generateClass() {
+        ClassName serializerTypeName = getSerializerTypeName();
+        TypeSpec.Builder classBuilder = TypeSpec.classBuilder(mClassName).addModifiers(Modifier.PUBLIC)
+                .superclass(ParameterizedTypeName.get(BINARY_SERIALIZER_TYPE, mTypeName));
+        classBuilder.addField(FieldSpec.builder(serializerTypeName, INSTANCE_FIELD_NAME, Modifier.PUBLIC, Modifier.STATIC,
+                Modifier.FINAL).initializer("new $T()", serializerTypeName).build());
+        classBuilder.addMethod(
+                MethodSpec.constructorBuilder().addModifiers(Modifier.PROTECTED).addStatement("super($T.class)", mTypeName)
+                        .build());
+        mLocalCount = 0;
+        classBuilder.addMethod(generateWriteMethod());
+        mLocalCount = 0;
+        classBuilder.addMethod(generateReadMethod());
+        return classBuilder.build();
+    }
+
+    protected MethodSpec generateWriteMethod() {
+        MethodSpec.Builder methodBuilder = MethodSpec.methodBuilder("write").addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC).addParameter(BINARY_WRITER_TYPE, WRITER_NAME).addParameter(mTypeName, VALUE_NAME);
+        CodeBlock.Builder code = CodeBlock.builder();
+        code.beginControlFlow("if ($N == null)", VALUE_NAME);
+        code.addStatement("$N.writeNull()", WRITER_NAME);
+        code.addStatement("return");
+        code.endControlFlow();
+        code.addStatement("$N.beginObject($L)", WRITER_NAME, mProperties.size());
+        for (Property property : mProperties) {
+            code.addStatement("$N.writeFieldName($S)", WRITER_NAME, property.mName);
+            String expression = property.mGetter != null ? VALUE_NAME + "." + property.mGetter + "()" :
+                    VALUE_NAME + "." + property.mName;
+            addWriteStatements(code, property.mType, expression);
+        }
+        methodBuilder.addCode(code.build());
+        return methodBuilder.build();
+    }
+
+    protected void addWriteStatements(CodeBlock.Builder code, TypeMirror type, String expression) {
+        String kind = builtinKind(type);
+        if (kind != null) {
+            if (type.getKind().isPrimitive() || kind.equals("String") || kind.equals("Enum")) {
+                code.addStatement("$N.write$L($L)", WRITER_NAME, kind, expression);
+                return;
+            }
+            String local = newLocal("v");
+            code.addStatement("$T $N = $L", TypeName.get(type), local, expression);
+            code.beginControlFlow("if ($N == null)", local);
+            code.addStatement("$N.writeNull()", WRITER_NAME);
+            code.nextControlFlow("else");
+            if (kind.equals("Date")) {
+                code.addStatement("$N.writeDate($N.getTime())", WRITER_NAME, local);
+            } else if (kind.equals("Decimal")) {
+                code.addStatement("$N.writeDecimal($N.toString())", WRITER_NAME, local);
+            } else {
+                code.addStatement("$N.write$L($N)", WRITER_NAME, kind, local);
+            }
+            code.endControlFlow();
+            return;
+        }
+        TypeMirror elementType = listElementType(type);
+        if (elementType == null && type.getKind() == TypeKind.ARRAY) {
+            TypeMirror componentType = ((ArrayType) type).getComponentType();
+            if (componentType.getKind() == TypeKind.BYTE) {
+                code.addStatement("$N.writeBytes($L)", WRITER_NAME, expression);
+                return;
+            }
+            elementType = componentType;
+        }
+        if (elementType != null) {
+            String local = newLocal("v");
+            String element = newLocal("e");
+            code.addStatement("$T $N = $L", TypeName.get(type), local, expression);
+            code.beginControlFlow("if ($N == null)", local);
+            code.addStatement("$N.writeNull()", WRITER_NAME);
+            code.nextControlFlow("else");
+            code.addStatement("$N.beginList($N.$L)", WRITER_NAME, local, type.getKind() == TypeKind.ARRAY ? "length" : "size()");
+            code.beginControlFlow("for ($T $N : $N)", TypeName.get(elementType), element, local);
+            addWriteStatements(code, elementType, element);
+            code.endControlFlow();
+            code.endControlFlow();
+            return;
+        }
+        SerializerClass serializer = nestedSerializer(type);
+        if (serializer != null) {
+            code.addStatement("$T.$N.write($N, $L)", serializer.getSerializerTypeName(), INSTANCE_FIELD_NAME, WRITER_NAME,
+                    expression);
+        } else {
+            code.addStatement("$T.INSTANCE.writeValue($N, $L)", BINARY_CODEC_TYPE, WRITER_NAME, expression);
+        }
+    }
+
+    protected MethodSpec generateReadMethod() {
+        MethodSpec.Builder methodBuilder = MethodSpec.methodBuilder("read").addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC).addParameter(BINARY_READER_TYPE, READER_NAME).returns(mTypeName);
+        boolean unchecked = false;
+        CodeBlock.Builder code = CodeBlock.builder();
+        String fieldCount = newLocal("n");
+        code.addStatement("int $N = $N.beginObject()", fieldCount, READER_NAME);
+        code.beginControlFlow("if ($N < 0)", fieldCount);
+        code.addStatement("return null");
+        code.endControlFlow();
+        code.addStatement("$T $N = new $T()", mTypeName, RESULT_NAME, mTypeName);
+        String index = newLocal("i");
+        code.beginControlFlow("for (int $N = 0; $N < $N; $N++)", index, index, fieldCount, index);
+        code.beginControlFlow("switch ($N.readFieldName())", READER_NAME);
+        for (Property property : mProperties) {
+            code.add("case $S:\n", property.mName).indent();
+            String target = property.mSetter != null ? RESULT_NAME + "." + property.mSetter + "($L)" :
+                    RESULT_NAME + "." + property.mName + " = $L";
+            unchecked |= addReadStatements(code, property.mType, target);
+            code.addStatement("break").unindent();
+        }
+        code.add("default:\n").indent();
+        code.addStatement("$N.skipValue()", READER_NAME);
+        code.addStatement("break").unindent();
+        code.endControlFlow();
+        code.endControlFlow();
+        code.addStatement("return $N", RESULT_NAME);
+        if (unchecked) {
+            methodBuilder.addAnnotation(
+                    AnnotationSpec.builder(SuppressWarnings.class).addMember("value", "$S", "unchecked")
+                            .build());
+        }
+        methodBuilder.addCode(code.build());
+        return methodBuilder.build();
+    }
+
+    /**
+     * 生成读取一个值并交给target的语句。
+     *
+     * @param target 含有一个$L的语句模板，如"result.id = $L"
+     * @return 是否生成了未检查的类型转换
+     */
+    protected boolean addReadStatements(CodeBlock.Builder code, TypeMirror type, String target) {
+        String kind = builtinKind(type);
+        if (kind != null) {
+            code.addStatement(target, readExpression(type, kind));
+            return false;
+        }
+        TypeMirror elementType = listElementType(type);
+        boolean isArray = false;
+        if (elementType == null && type.getKind() == TypeKind.ARRAY) {
+            TypeMirror componentType = ((ArrayType) type).getComponentType();
+            if (componentType.getKind() == TypeKind.BYTE) {
+                code.addStatement(target, CodeBlock.builder().add("$N.readBytes()", READER_NAME).build());
+                return false;
+            }
+            if (componentType.getKind() != TypeKind.ARRAY) {
+                elementType = componentType;
+                isArray = true;
+            }
+        }
+        if (elementType != null) {
+            String size = newLocal("s");
+            String local = newLocal("l");
+            String index = newLocal("i");
+            code.addStatement("int $N = $N.beginList()", size, READER_NAME);
+            code.beginControlFlow("if ($N < 0)", size);
+            code.addStatement(target, "null");
+            code.nextControlFlow("else");
+            String elementTarget;
+            if (isArray) {
+                code.addStatement("$T $N = new $T[$N]", TypeName.get(type), local,
+                        TypeName.get(typeUtils().erasure(elementType)), size);
+                elementTarget = local + "[" + index + "] = $L";
+            } else {
+                TypeName elementTypeName = TypeName.get(elementType);
+                code.addStatement("$T $N = new $T($N)", TypeName.get(type), local,
+                        ParameterizedTypeName.get(ARRAY_LIST_TYPE, elementTypeName), size);
+                elementTarget = local + ".add($L)";
+            }
+            code.beginControlFlow("for (int $N = 0; $N < $N; $N++)", index, index, size, index);
+            boolean unchecked = addReadStatements(code, elementType, elementTarget);
+            code.endControlFlow();
+            code.addStatement(target, local);
+            code.endControlFlow();
+            return unchecked;
+        }
+        SerializerClass serializer = nestedSerializer(type);
+        if (serializer != null) {
+            code.addStatement(target, CodeBlock.builder()
+                    .add("$T.$N.read($N)", serializer.getSerializerTypeName(), INSTANCE_FIELD_NAME, READER_NAME).build());
+            return false;
+        }
+        TypeName typeName = TypeName.get(type);
+        TypeName rawTypeName = TypeName.get(typeUtils().erasure(type));
+        code.addStatement(target, CodeBlock.builder()
+                .add("($T) $T.INSTANCE.readValue($N, $T.class)", typeName, BINARY_CODEC_TYPE, READER_NAME, rawTypeName).build());
+        return !typeName.equals(rawTypeName);
+    }
+
+    protected CodeBlock readExpression(TypeMirror type, String kind) {
+        CodeBlock.Builder expression = CodeBlock.builder();
+        TypeKind typeKind = type.getKind();
+        if (typeKind.isPrimitive()) {
+            if (typeKind == TypeKind.SHORT) {
+                expression.add("(short) ");
+            } else if (typeKind == TypeKind.BYTE) {
+                expression.add("(byte) ");
+            }
+            return expression.add("$N.read$L()", READER_NAME, kind).build();
+        }
+        String name = ((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().toString();
+        switch (kind) {
+            case "String":
+                return expression.add("$N.readString()", READER_NAME).build();
+            case "Enum":
+                return expression.add("readEnum($N, $T.class)", READER_NAME, TypeName.get(type)).build();
+            case "Date":
+                return expression.add("$N.readNullIf() ? null : new $T($N.readDate())", READER_NAME, TypeName.get(type),
+                        READER_NAME).build();
+            case "Decimal":
+                return expression.add("$N.readNullIf() ? null : new $T($N.readString())", READER_NAME, TypeName.get(type),
+                        READER_NAME).build();
+            default:
+                expression.add("$N.readNullIf() ? null : ", READER_NAME);
+                if (name.equals("java.lang.Short")) {
+                    expression.add("(short) ");
+                } else if (name.equals("java.lang.Byte")) {
+                    expression.add("(byte) ");
+                }
+                return expression.add("$N.read$L()", READER_NAME, kind).build();
+        }
+    }
+
+    protected static class Property {
+
+        protected final String mName;
+
+        protected final TypeMirror mType;
+
+        protected String mGetter;
+
+        protected String mSetter;
+
+        protected Property(String name, TypeMirror type) {
+            mName = name;
+            mType = type;
+        }
+    }
+}
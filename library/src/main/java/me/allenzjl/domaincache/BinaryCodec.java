@@ -0,0 +1,434 @@
+package me.allenzjl.domaincache;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.WildcardType;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 紧凑的二进制编解码器。
+ * <p>
+ * 对象按字段（包括父类的字段，不包括static和transient字段）序列化，字段名只在第一次出现时写入，因此列表中的同类对象只保存一次字段名。
+ * 读取时按字段名匹配，新增或删除字段不影响已有的缓存。不支持循环引用。
+ */
+public class BinaryCodec implements Codec {
+
+    public static final int ID = 1;
+
+    public static final String NAME = "binary";
+
+    public static final BinaryCodec INSTANCE = new BinaryCodec();
+
+    public static final int TAG_NULL = 0;
+
+    public static final int TAG_TRUE = 1;
+
+    public static final int TAG_FALSE = 2;
+
+    public static final int TAG_INT = 3;
+
+    public static final int TAG_LONG = 4;
+
+    public static final int TAG_FLOAT = 5;
+
+    public static final int TAG_DOUBLE = 6;
+
+    public static final int TAG_CHAR = 7;
+
+    public static final int TAG_STRING = 8;
+
+    public static final int TAG_DECIMAL = 9;
+
+    public static final int TAG_DATE = 10;
+
+    public static final int TAG_ENUM = 11;
+
+    public static final int TAG_BYTES = 12;
+
+    public static final int TAG_LIST = 13;
+
+    public static final int TAG_MAP = 14;
+
+    public static final int TAG_OBJECT = 15;
+
+    protected final Map<Class, ClassInfo> mClassInfos = new ConcurrentHashMap<>();
+
+    @Override
+    public int getId() {
+        return ID;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public byte[] encode(Object value) {
+        BinaryWriter writer = new BinaryWriter();
+        writeValue(writer, value);
+        return writer.toByteArray();
+    }
+
+    @Override
+    public Object decode(ByteBuffer data, Class resultClass, boolean isArray) {
+        BinaryReader reader = new BinaryReader(data.duplicate());
+        if (isArray) {
+            return readList(reader, resultClass);
+        } else {
+            return readValue(reader, resultClass);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public void writeValue(BinaryWriter writer, Object value) {
+        if (value == null) {
+            writer.writeNull();
+        } else if (value instanceof String) {
+            writer.writeString((String) value);
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            writer.writeInt(((Number) value).intValue());
+        } else if (value instanceof Long) {
+            writer.writeLong((Long) value);
+        } else if (value instanceof Boolean) {
+            writer.writeBoolean((Boolean) value);
+        } else if (value instanceof Double) {
+            writer.writeDouble((Double) value);
+        } else if (value instanceof Float) {
+            writer.writeFloat((Float) value);
+        } else if (value instanceof Character) {
+            writer.writeChar((Character) value);
+        } else if (value instanceof BigDecimal || value instanceof BigInteger) {
+            writer.writeDecimal(value.toString());
+        } else if (value instanceof Date) {
+            writer.writeDate(((Date) value).getTime());
+        } else if (value instanceof Enum) {
+            writer.writeEnum((Enum) value);
+        } else if (value instanceof byte[]) {
+            writer.writeBytes((byte[]) value);
+        } else if (value instanceof Collection) {
+            Collection collection = (Collection) value;
+            writer.beginList(collection.size());
+            for (Object element : collection) {
+                writeValue(writer, element);
+            }
+        } else if (value.getClass().isArray()) {
+            int length = Array.getLength(value);
+            writer.beginList(length);
+            for (int i = 0; i < length; i++) {
+                writeValue(writer, Array.get(value, i));
+            }
+        } else if (value instanceof Map) {
+            Map<Object, Object> map = (Map<Object, Object>) value;
+            writer.beginMap(map.size());
+            for (Map.Entry<Object, Object> entry : map.entrySet()) {
+                writeValue(writer, entry.getKey());
+                writeValue(writer, entry.getValue());
+            }
+        } else {
+            writeObject(writer, value);
+        }
+    }
+
+    protected void writeObject(BinaryWriter writer, Object value) {
+        ClassInfo info = getClassInfo(value.getClass());
+        writer.beginObject(info.mFields.length);
+        try {
+            for (Field field : info.mFields) {
+                writer.writeFieldName(field.getName());
+                writeValue(writer, field.get(value));
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public List<Object> readList(BinaryReader reader, Type elementType) {
+        int size = reader.beginList();
+        if (size < 0) {
+            return null;
+        }
+        List<Object> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(readValue(reader, elementType));
+        }
+        return list;
+    }
+
+    public Object readValue(BinaryReader reader, Type type) {
+        Class raw = rawClass(type);
+        int tag = reader.peekTag();
+        switch (tag) {
+            case TAG_NULL:
+                reader.readTag();
+                return raw.isPrimitive() ? convertNumber(0, raw) : null;
+            case TAG_TRUE:
+            case TAG_FALSE:
+                return reader.readBoolean();
+            case TAG_INT:
+            case TAG_LONG: {
+                long value = reader.readLong();
+                if (raw == Object.class || raw == Number.class) {
+                    return tag == TAG_INT ? (Object) (int) value : (Object) value;
+                }
+                return convertNumber(value, raw);
+            }
+            case TAG_FLOAT:
+            case TAG_DOUBLE: {
+                double value = reader.readDouble();
+                if (raw == Object.class || raw == Number.class) {
+                    return tag == TAG_FLOAT ? (Object) (float) value : (Object) value;
+                }
+                return convertNumber(value, raw);
+            }
+            case TAG_CHAR:
+                return reader.readChar();
+            case TAG_STRING: {
+                String text = reader.readString();
+                if ((raw == char.class || raw == Character.class) && text.length() > 0) {
+                    return text.charAt(0);
+                }
+                return text;
+            }
+            case TAG_DECIMAL: {
+                String text = reader.readString();
+                if (raw == BigInteger.class) {
+                    return new BigInteger(text);
+                }
+                BigDecimal decimal = new BigDecimal(text);
+                return raw == BigDecimal.class || raw == Object.class || raw == Number.class ? decimal :
+                        convertNumber(decimal, raw);
+            }
+            case TAG_DATE:
+                reader.readTag();
+                return new Date(reader.readZigZag());
+            case TAG_ENUM:
+                return readEnum(reader.readString(), raw);
+            case TAG_BYTES:
+                reader.readTag();
+                return reader.readRawBytes();
+            case TAG_LIST:
+                return readCollection(reader, type, raw);
+            case TAG_MAP:
+                return readMap(reader, type, raw);
+            case TAG_OBJECT:
+                return readObject(reader, raw);
+            default:
+                throw reader.unexpected(reader.readTag());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    protected Object readEnum(String name, Class raw) {
+        if (raw.isEnum()) {
+            return Enum.valueOf(raw, name);
+        }
+        return name;
+    }
+
+    @SuppressWarnings("unchecked")
+    protected Object readCollection(BinaryReader reader, Type type, Class raw) {
+        if (raw.isArray()) {
+            Type componentType = type instanceof GenericArrayType ? ((GenericArrayType) type).getGenericComponentType() :
+                    raw.getComponentType();
+            int size = reader.beginList();
+            Object array = Array.newInstance(raw.getComponentType(), size);
+            for (int i = 0; i < size; i++) {
+                Array.set(array, i, readValue(reader, componentType));
+            }
+            return array;
+        }
+        Type elementType = typeArgument(type, 0);
+        int size = reader.beginList();
+        Collection<Object> collection;
+        if (raw.isInterface() || Modifier.isAbstract(raw.getModifiers())) {
+            collection = Set.class.isAssignableFrom(raw) ? new LinkedHashSet<>() : new ArrayList<>(size);
+        } else if (Collection.class.isAssignableFrom(raw)) {
+            collection = (Collection<Object>) newInstance(raw);
+        } else {
+            collection = new ArrayList<>(size);
+        }
+        for (int i = 0; i < size; i++) {
+            collection.add(readValue(reader, elementType));
+        }
+        return collection;
+    }
+
+    @SuppressWarnings("unchecked")
+    protected Object readMap(BinaryReader reader, Type type, Class raw) {
+        reader.readTag();
+        int size = (int) reader.readVarLong();
+        Map<Object, Object> map;
+        if (raw.isInterface() || Modifier.isAbstract(raw.getModifiers()) || !Map.class.isAssignableFrom(raw)) {
+            map = new LinkedHashMap<>();
+        } else {
+            map = (Map<Object, Object>) newInstance(raw);
+        }
+        Type keyType = typeArgument(type, 0);
+        Type valueType = typeArgument(type, 1);
+        for (int i = 0; i < size; i++) {
+            Object key = readValue(reader, keyType);
+            map.put(key, readValue(reader, valueType));
+        }
+        return map;
+    }
+
+    protected Object readObject(BinaryReader reader, Class raw) {
+        int fieldCount = reader.beginObject();
+        if (raw == Object.class || Map.class.isAssignableFrom(raw)) {
+            Map<String, Object> map = new LinkedHashMap<>();
+            for (int i = 0; i < fieldCount; i++) {
+                String name = reader.readFieldName();
+                map.put(name, readValue(reader, Object.class));
+            }
+            return map;
+        }
+        ClassInfo info = getClassInfo(raw);
+        Object object = newInstance(raw);
+        try {
+            for (int i = 0; i < fieldCount; i++) {
+                Field field = info.mFieldsByName.get(reader.readFieldName());
+                if (field == null) {
+                    reader.skipValue();
+                } else {
+                    field.set(object, readValue(reader, field.getGenericType()));
+                }
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+        return object;
+    }
+
+    protected Object newInstance(Class raw) {
+        try {
+            Constructor constructor = getClassInfo(raw).getConstructor();
+            return constructor.newInstance();
+        } catch (Exception e) {
+            throw new IllegalStateException("Cannot instantiate " + raw.getName(), e);
+        }
+    }
+
+    protected ClassInfo getClassInfo(Class clazz) {
+        ClassInfo info = mClassInfos.get(clazz);
+        if (info == null) {
+            info = new ClassInfo(clazz);
+            mClassInfos.put(clazz, info);
+        }
+        return info;
+    }
+
+    protected static Object convertNumber(Number value, Class raw) {
+        if (raw == int.class || raw == Integer.class) {
+            return value.intValue();
+        } else if (raw == long.class || raw == Long.class) {
+            return value.longValue();
+        } else if (raw == double.class || raw == Double.class) {
+            return value.doubleValue();
+        } else if (raw == float.class || raw == Float.class) {
+            return value.floatValue();
+        } else if (raw == short.class || raw == Short.class) {
+            return value.shortValue();
+        } else if (raw == byte.class || raw == Byte.class) {
+            return value.byteValue();
+        } else if (raw == char.class || raw == Character.class) {
+            return (char) value.intValue();
+        } else if (raw == boolean.class || raw == Boolean.class) {
+            return value.intValue() != 0;
+        } else if (raw == BigDecimal.class) {
+            return new BigDecimal(value.toString());
+        } else if (raw == BigInteger.class) {
+            return BigInteger.valueOf(value.longValue());
+        } else if (raw == Date.class) {
+            return new Date(value.longValue());
+        } else if (raw == String.class) {
+            return value.toString();
+        }
+        return value;
+    }
+
+    protected static Class rawClass(Type type) {
+        if (type instanceof Class) {
+            return (Class) type;
+        } else if (type instanceof ParameterizedType) {
+            return rawClass(((ParameterizedType) type).getRawType());
+        } else if (type instanceof GenericArrayType) {
+            Class component = rawClass(((GenericArrayType) type).getGenericComponentType());
+            return Array.newInstance(component, 0).getClass();
+        } else if (type instanceof WildcardType) {
+            Type[] upperBounds = ((WildcardType) type).getUpperBounds();
+            return upperBounds.length > 0 ? rawClass(upperBounds[0]) : Object.class;
+        }
+        return Object.class;
+    }
+
+    protected static Type typeArgument(Type type, int index) {
+        if (type instanceof ParameterizedType) {
+            Type[] arguments = ((ParameterizedType) type).getActualTypeArguments();
+            if (index < arguments.length) {
+                return arguments[index];
+            }
+        }
+        return Object.class;
+    }
+
+    protected static class ClassInfo {
+
+        protected final Class mClass;
+
+        protected final Field[] mFields;
+
+        protected final Map<String, Field> mFieldsByName;
+
+        protected volatile Constructor mConstructor;
+
+        protected ClassInfo(Class clazz) {
+            mClass = clazz;
+            List<Field> fields = new ArrayList<>();
+            mFieldsByName = new HashMap<>();
+            for (Class c = clazz; c != null && c != Object.class; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    int modifiers = field.getModifiers();
+                    if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic()) {
+                        continue;
+                    }
+                    // 父类中的同名字段被子类的字段隐藏
+                    if (mFieldsByName.containsKey(field.getName())) {
+                        continue;
+                    }
+                    field.setAccessible(true);
+                    fields.add(field);
+                    mFieldsByName.put(field.getName(), field);
+                }
+            }
+            mFields = fields.toArray(new Field[fields.size()]);
+        }
+
+        @SuppressWarnings("unchecked")
+        protected Constructor getConstructor() throws NoSuchMethodException {
+            if (mConstructor == null) {
+                Constructor constructor = mClass.getDeclaredConstructor();
+                constructor.setAccessible(true);
+                mConstructor = constructor;
+            }
+            return mConstructor;
+        }
+    }
+}
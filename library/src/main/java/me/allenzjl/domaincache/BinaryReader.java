@@ -0,0 +1,317 @@
+package me.allenzjl.domaincache;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 按{@link BinaryCodec}的格式读取{@link BinaryWriter}写入的数据，直接从{@link ByteBuffer}中读取，不复制整段数据。
+ */
+public class BinaryReader {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    protected final ByteBuffer mBuffer;
+
+    protected List<String> mNames;
+
+    public BinaryReader(ByteBuffer buffer) {
+        mBuffer = buffer;
+    }
+
+    public int peekTag() {
+        return mBuffer.get(mBuffer.position()) & 0xFF;
+    }
+
+    public int readTag() {
+        return mBuffer.get() & 0xFF;
+    }
+
+    /**
+     * 下一个值为null时读取它并返回true。
+     */
+    public boolean readNullIf() {
+        if (peekTag() == BinaryCodec.TAG_NULL) {
+            mBuffer.get();
+            return true;
+        }
+        return false;
+    }
+
+    public boolean readBoolean() {
+        int tag = readTag();
+        switch (tag) {
+            case BinaryCodec.TAG_TRUE:
+                return true;
+            case BinaryCodec.TAG_FALSE:
+            case BinaryCodec.TAG_NULL:
+                return false;
+            default:
+                throw unexpected(tag);
+        }
+    }
+
+    public int readInt() {
+        return (int) readLong();
+    }
+
+    public long readLong() {
+        int tag = readTag();
+        switch (tag) {
+            case BinaryCodec.TAG_INT:
+            case BinaryCodec.TAG_LONG:
+                return readZigZag();
+            case BinaryCodec.TAG_CHAR:
+                return readVarLong();
+            case BinaryCodec.TAG_FLOAT:
+                return (long) Float.intBitsToFloat(readFixedInt());
+            case BinaryCodec.TAG_DOUBLE:
+                return (long) readRawDouble();
+            case BinaryCodec.TAG_NULL:
+                return 0;
+            default:
+                throw unexpected(tag);
+        }
+    }
+
+    public float readFloat() {
+        return (float) readDouble();
+    }
+
+    public double readDouble() {
+        int tag = readTag();
+        switch (tag) {
+            case BinaryCodec.TAG_FLOAT:
+                return Float.intBitsToFloat(readFixedInt());
+            case BinaryCodec.TAG_DOUBLE:
+                return readRawDouble();
+            case BinaryCodec.TAG_INT:
+            case BinaryCodec.TAG_LONG:
+                return readZigZag();
+            case BinaryCodec.TAG_NULL:
+                return 0;
+            default:
+                throw unexpected(tag);
+        }
+    }
+
+    public char readChar() {
+        int tag = readTag();
+        switch (tag) {
+            case BinaryCodec.TAG_CHAR:
+                return (char) readVarLong();
+            case BinaryCodec.TAG_STRING:
+                String text = readRawString();
+                return text.length() == 0 ? 0 : text.charAt(0);
+            case BinaryCodec.TAG_NULL:
+                return 0;
+            default:
+                throw unexpected(tag);
+        }
+    }
+
+    public String readString() {
+        int tag = readTag();
+        switch (tag) {
+            case BinaryCodec.TAG_NULL:
+                return null;
+            case BinaryCodec.TAG_STRING:
+            case BinaryCodec.TAG_DECIMAL:
+            case BinaryCodec.TAG_ENUM:
+                return readRawString();
+            default:
+                throw unexpected(tag);
+        }
+    }
+
+    public long readDate() {
+        int tag = readTag();
+        switch (tag) {
+            case BinaryCodec.TAG_DATE:
+            case BinaryCodec.TAG_INT:
+            case BinaryCodec.TAG_LONG:
+                return readZigZag();
+            case BinaryCodec.TAG_NULL:
+                return 0;
+            default:
+                throw unexpected(tag);
+        }
+    }
+
+    public byte[] readBytes() {
+        int tag = readTag();
+        switch (tag) {
+            case BinaryCodec.TAG_NULL:
+                return null;
+            case BinaryCodec.TAG_BYTES:
+                return readRawBytes();
+            default:
+                throw unexpected(tag);
+        }
+    }
+
+    /**
+     * 开始读取一个列表。
+     *
+     * @return 元素个数，值为null时返回-1
+     */
+    public int beginList() {
+        int tag = readTag();
+        if (tag == BinaryCodec.TAG_NULL) {
+            return -1;
+        }
+        if (tag != BinaryCodec.TAG_LIST) {
+            throw unexpected(tag);
+        }
+        return (int) readVarLong();
+    }
+
+    /**
+     * 开始读取一个对象。
+     *
+     * @return 字段个数，值为null时返回-1
+     */
+    public int beginObject() {
+        int tag = readTag();
+        if (tag == BinaryCodec.TAG_NULL) {
+            return -1;
+        }
+        if (tag != BinaryCodec.TAG_OBJECT) {
+            throw unexpected(tag);
+        }
+        return (int) readVarLong();
+    }
+
+    public String readFieldName() {
+        if (mNames == null) {
+            mNames = new ArrayList<>();
+        }
+        long header = readVarLong();
+        if ((header & 1) != 0) {
+            return mNames.get((int) (header >>> 1));
+        }
+        int length = (int) (header >>> 1);
+        String name = readRawString(length);
+        mNames.add(name);
+        return name;
+    }
+
+    /**
+     * 跳过下一个值。
+     */
+    public void skipValue() {
+        int tag = readTag();
+        switch (tag) {
+            case BinaryCodec.TAG_NULL:
+            case BinaryCodec.TAG_TRUE:
+            case BinaryCodec.TAG_FALSE:
+                break;
+            case BinaryCodec.TAG_INT:
+            case BinaryCodec.TAG_LONG:
+            case BinaryCodec.TAG_CHAR:
+            case BinaryCodec.TAG_DATE:
+                readVarLong();
+                break;
+            case BinaryCodec.TAG_FLOAT:
+                skip(4);
+                break;
+            case BinaryCodec.TAG_DOUBLE:
+                skip(8);
+                break;
+            case BinaryCodec.TAG_STRING:
+            case BinaryCodec.TAG_DECIMAL:
+            case BinaryCodec.TAG_ENUM:
+            case BinaryCodec.TAG_BYTES:
+                skip((int) readVarLong());
+                break;
+            case BinaryCodec.TAG_LIST: {
+                int size = (int) readVarLong();
+                for (int i = 0; i < size; i++) {
+                    skipValue();
+                }
+                break;
+            }
+            case BinaryCodec.TAG_MAP: {
+                int size = (int) readVarLong();
+                for (int i = 0; i < size * 2; i++) {
+                    skipValue();
+                }
+                break;
+            }
+            case BinaryCodec.TAG_OBJECT: {
+                int size = (int) readVarLong();
+                for (int i = 0; i < size; i++) {
+                    readFieldName();
+                    skipValue();
+                }
+                break;
+            }
+            default:
+                throw unexpected(tag);
+        }
+    }
+
+    protected void skip(int length) {
+        mBuffer.position(mBuffer.position() + length);
+    }
+
+    protected long readZigZag() {
+        long value = readVarLong();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    protected long readVarLong() {
+        long value = 0;
+        int shift = 0;
+        while (true) {
+            byte b = mBuffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+            shift += 7;
+            if (shift > 63) {
+                throw new IllegalStateException("Malformed varint");
+            }
+        }
+    }
+
+    protected int readFixedInt() {
+        return ((mBuffer.get() & 0xFF) << 24) | ((mBuffer.get() & 0xFF) << 16) | ((mBuffer.get() & 0xFF) << 8) |
+                (mBuffer.get() & 0xFF);
+    }
+
+    protected double readRawDouble() {
+        long high = readFixedInt() & 0xFFFFFFFFL;
+        long low = readFixedInt() & 0xFFFFFFFFL;
+        return Double.longBitsToDouble((high << 32) | low);
+    }
+
+    protected String readRawString() {
+        return readRawString((int) readVarLong());
+    }
+
+    protected String readRawString(int length) {
+        String text;
+        if (mBuffer.hasArray()) {
+            text = new String(mBuffer.array(), mBuffer.arrayOffset() + mBuffer.position(), length, UTF_8);
+            skip(length);
+        } else {
+            byte[] bytes = new byte[length];
+            mBuffer.get(bytes);
+            text = new String(bytes, UTF_8);
+        }
+        return text;
+    }
+
+    protected byte[] readRawBytes() {
+        byte[] bytes = new byte[(int) readVarLong()];
+        mBuffer.get(bytes);
+        return bytes;
+    }
+
+    protected IllegalStateException unexpected(int tag) {
+        return new IllegalStateException("Unexpected tag " + tag + " at " + (mBuffer.position() - 1));
+    }
+}
@@ -0,0 +1,94 @@
+package me.allenzjl.domaincache;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 某个结果类型的{@link BinaryCodec}格式的序列化器，由注解处理器为{@code @Cacheable}方法的结果类型生成，读写字段时不使用反射。
+ * <p>
+ * 生成的序列化器和{@link BinaryCodec}的格式相同并使用同一个{@link #getId()}，写入的缓存也可以由{@link BinaryCodec}读取，反之亦然。
+ * 它不需要注册到{@link Codecs}。
+ *
+ * @param <T> 结果类型
+ */
+public abstract class BinarySerializer<T> implements Codec {
+
+    protected final Class<T> mType;
+
+    protected BinarySerializer(Class<T> type) {
+        mType = type;
+    }
+
+    public Class<T> getType() {
+        return mType;
+    }
+
+    @Override
+    public int getId() {
+        return BinaryCodec.ID;
+    }
+
+    @Override
+    public String getName() {
+        return BinaryCodec.NAME;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public byte[] encode(Object value) {
+        BinaryWriter writer = new BinaryWriter();
+        if (value == null || mType.isInstance(value)) {
+            write(writer, (T) value);
+        } else if (value instanceof Collection) {
+            Collection<T> collection = (Collection<T>) value;
+            writer.beginList(collection.size());
+            for (T element : collection) {
+                write(writer, element);
+            }
+        } else if (value instanceof Object[]) {
+            T[] array = (T[]) value;
+            writer.beginList(array.length);
+            for (T element : array) {
+                write(writer, element);
+            }
+        } else {
+            throw new IllegalArgumentException(value.getClass().getName() + " is not " + mType.getName());
+        }
+        return writer.toByteArray();
+    }
+
+    @Override
+    public Object decode(ByteBuffer data, Class resultClass, boolean isArray) {
+        BinaryReader reader = new BinaryReader(data.duplicate());
+        if (isArray) {
+            int size = reader.beginList();
+            if (size < 0) {
+                return null;
+            }
+            List<T> list = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                list.add(read(reader));
+            }
+            return list;
+        } else {
+            return read(reader);
+        }
+    }
+
+    /**
+     * 写入一个结果，value为null时写入null。
+     */
+    public abstract void write(BinaryWriter writer, T value);
+
+    /**
+     * 读取一个结果，未知的字段会被跳过。
+     */
+    public abstract T read(BinaryReader reader);
+
+    protected static <E extends Enum<E>> E readEnum(BinaryReader reader, Class<E> enumType) {
+        String name = reader.readString();
+        return name == null ? null : Enum.valueOf(enumType, name);
+    }
+}
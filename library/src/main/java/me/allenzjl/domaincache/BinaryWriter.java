@@ -0,0 +1,193 @@
+package me.allenzjl.domaincache;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 按{@link BinaryCodec}的格式写入数据。
+ * <p>
+ * 每个值以一个字节的标记开头，整数使用zigzag变长编码；对象的字段名在第一次出现时写入文本，之后只写入它的序号。
+ */
+public class BinaryWriter {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    protected byte[] mBuffer;
+
+    protected int mPosition;
+
+    protected Map<String, Integer> mNames;
+
+    public BinaryWriter() {
+        this(256);
+    }
+
+    public BinaryWriter(int initialCapacity) {
+        mBuffer = new byte[initialCapacity];
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(mBuffer, mPosition);
+    }
+
+    public int size() {
+        return mPosition;
+    }
+
+    public void writeNull() {
+        writeByte(BinaryCodec.TAG_NULL);
+    }
+
+    public void writeBoolean(boolean value) {
+        writeByte(value ? BinaryCodec.TAG_TRUE : BinaryCodec.TAG_FALSE);
+    }
+
+    public void writeInt(int value) {
+        writeByte(BinaryCodec.TAG_INT);
+        writeVarLong(((long) value << 1) ^ (value >> 31));
+    }
+
+    public void writeLong(long value) {
+        writeByte(BinaryCodec.TAG_LONG);
+        writeVarLong((value << 1) ^ (value >> 63));
+    }
+
+    public void writeFloat(float value) {
+        writeByte(BinaryCodec.TAG_FLOAT);
+        writeFixedInt(Float.floatToIntBits(value));
+    }
+
+    public void writeDouble(double value) {
+        writeByte(BinaryCodec.TAG_DOUBLE);
+        long bits = Double.doubleToLongBits(value);
+        writeFixedInt((int) (bits >>> 32));
+        writeFixedInt((int) bits);
+    }
+
+    public void writeChar(char value) {
+        writeByte(BinaryCodec.TAG_CHAR);
+        writeVarLong(value);
+    }
+
+    public void writeString(String value) {
+        if (value == null) {
+            writeNull();
+            return;
+        }
+        writeByte(BinaryCodec.TAG_STRING);
+        writeRawString(value);
+    }
+
+    public void writeDecimal(String value) {
+        writeByte(BinaryCodec.TAG_DECIMAL);
+        writeRawString(value);
+    }
+
+    public void writeDate(long time) {
+        writeByte(BinaryCodec.TAG_DATE);
+        writeVarLong((time << 1) ^ (time >> 63));
+    }
+
+    public void writeEnum(Enum value) {
+        if (value == null) {
+            writeNull();
+            return;
+        }
+        writeByte(BinaryCodec.TAG_ENUM);
+        writeRawString(value.name());
+    }
+
+    public void writeBytes(byte[] value) {
+        if (value == null) {
+            writeNull();
+            return;
+        }
+        writeByte(BinaryCodec.TAG_BYTES);
+        writeVarLong(value.length);
+        ensureCapacity(value.length);
+        System.arraycopy(value, 0, mBuffer, mPosition, value.length);
+        mPosition += value.length;
+    }
+
+    /**
+     * 开始写入一个列表，之后需要依次写入size个元素。
+     */
+    public void beginList(int size) {
+        writeByte(BinaryCodec.TAG_LIST);
+        writeVarLong(size);
+    }
+
+    /**
+     * 开始写入一个映射，之后需要依次写入size对键和值。
+     */
+    public void beginMap(int size) {
+        writeByte(BinaryCodec.TAG_MAP);
+        writeVarLong(size);
+    }
+
+    /**
+     * 开始写入一个对象，之后需要依次写入fieldCount个{@link #writeFieldName(String)}和字段值。
+     */
+    public void beginObject(int fieldCount) {
+        writeByte(BinaryCodec.TAG_OBJECT);
+        writeVarLong(fieldCount);
+    }
+
+    public void writeFieldName(String name) {
+        if (mNames == null) {
+            mNames = new HashMap<>();
+        }
+        Integer index = mNames.get(name);
+        if (index != null) {
+            writeVarLong(((long) index << 1) | 1);
+        } else {
+            mNames.put(name, mNames.size());
+            byte[] bytes = name.getBytes(UTF_8);
+            writeVarLong((long) bytes.length << 1);
+            writeRawBytes(bytes);
+        }
+    }
+
+    protected void writeRawString(String value) {
+        byte[] bytes = value.getBytes(UTF_8);
+        writeVarLong(bytes.length);
+        writeRawBytes(bytes);
+    }
+
+    protected void writeRawBytes(byte[] bytes) {
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, mBuffer, mPosition, bytes.length);
+        mPosition += bytes.length;
+    }
+
+    protected void writeByte(int value) {
+        ensureCapacity(1);
+        mBuffer[mPosition++] = (byte) value;
+    }
+
+    protected void writeFixedInt(int value) {
+        ensureCapacity(4);
+        mBuffer[mPosition++] = (byte) (value >>> 24);
+        mBuffer[mPosition++] = (byte) (value >>> 16);
+        mBuffer[mPosition++] = (byte) (value >>> 8);
+        mBuffer[mPosition++] = (byte) value;
+    }
+
+    protected void writeVarLong(long value) {
+        ensureCapacity(10);
+        while ((value & ~0x7FL) != 0) {
+            mBuffer[mPosition++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        mBuffer[mPosition++] = (byte) value;
+    }
+
+    protected void ensureCapacity(int extra) {
+        int required = mPosition + extra;
+        if (required > mBuffer.length) {
+            mBuffer = Arrays.copyOf(mBuffer, Math.max(required, mBuffer.length << 1));
+        }
+    }
+}
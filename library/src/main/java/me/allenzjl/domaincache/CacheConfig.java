@@ -0,0 +1,277 @@
+package me.allenzjl.domaincache;
+
+/**
+ * 缓存仓库的配置，需要在第一次调用{@link CacheStorage#getInstance()}之前通过{@link CacheStorage#setConfig(CacheConfig)}设置。
+ */
+public class CacheConfig {
+
+    public static final int DEFAULT_MEMORY_CACHE_SIZE = 64;
+
+    public static final int DEFAULT_COMPRESSION_THRESHOLD = 8 * 1024;
+
+    public static final int DEFAULT_SEGMENT_THRESHOLD = 256 * 1024;
+
+    protected int mMemoryCacheSize = DEFAULT_MEMORY_CACHE_SIZE;
+
+    protected int mMemoryCacheMode = MemoryCache.MODE_COPY_ON_READ;
+
+    protected long mOffHeapCacheSize = OffHeapCache.DEFAULT_CAPACITY;
+
+    protected int mLockStripes = StripedLock.DEFAULT_STRIPES;
+
+    protected boolean mWriteBehind = false;
+
+    protected int mWriteQueueCapacity = WriteBehindQueue.DEFAULT_CAPACITY;
+
+    protected int mWriteBatchSize = WriteBehindQueue.DEFAULT_BATCH_SIZE;
+
+    protected Codec mCodec = JsonCodec.INSTANCE;
+
+    protected CacheStore mStore;
+
+    protected int mCompressionThreshold = DEFAULT_COMPRESSION_THRESHOLD;
+
+    protected int mSegmentThreshold = DEFAULT_SEGMENT_THRESHOLD;
+
+    protected int mSweepInterval = ExpirationSweeper.DEFAULT_INTERVAL;
+
+    protected int mSweepBatchSize = ExpirationSweeper.DEFAULT_BATCH_SIZE;
+
+    protected long mDiskQuota = DiskQuota.DEFAULT_QUOTA;
+
+    protected int mRefreshThreads = Refresher.DEFAULT_THREADS;
+
+    protected int mRefreshQueueCapacity = Refresher.DEFAULT_QUEUE_CAPACITY;
+
+    public int getMemoryCacheSize() {
+        return mMemoryCacheSize;
+    }
+
+    /**
+     * 设置一级内存缓存最多保存的条目数，0表示不使用内存缓存。
+     */
+    public CacheConfig setMemoryCacheSize(int memoryCacheSize) {
+        if (memoryCacheSize < 0) {
+            throw new IllegalArgumentException("memoryCacheSize < 0");
+        }
+        mMemoryCacheSize = memoryCacheSize;
+        return this;
+    }
+
+    public int getMemoryCacheMode() {
+        return mMemoryCacheMode;
+    }
+
+    /**
+     * 设置一级内存缓存的读取方式，{@link MemoryCache#MODE_SHARED}或{@link MemoryCache#MODE_COPY_ON_READ}。
+     */
+    public CacheConfig setMemoryCacheMode(int memoryCacheMode) {
+        mMemoryCacheMode = memoryCacheMode;
+        return this;
+    }
+
+    public long getOffHeapCacheSize() {
+        return mOffHeapCacheSize;
+    }
+
+    /**
+     * 设置二级堆外缓存的容量，单位字节，按{@link OffHeapCache#SLAB_SIZE}分块，不足一块时不使用堆外缓存。
+     */
+    public CacheConfig setOffHeapCacheSize(long offHeapCacheSize) {
+        if (offHeapCacheSize < 0) {
+            throw new IllegalArgumentException("offHeapCacheSize < 0");
+        }
+        mOffHeapCacheSize = offHeapCacheSize;
+        return this;
+    }
+
+    public int getLockStripes() {
+        return mLockStripes;
+    }
+
+    /**
+     * 设置分段锁的段数，会向上取整到2的幂。
+     */
+    public CacheConfig setLockStripes(int lockStripes) {
+        if (lockStripes <= 0) {
+            throw new IllegalArgumentException("lockStripes <= 0");
+        }
+        mLockStripes = lockStripes;
+        return this;
+    }
+
+    public boolean isWriteBehind() {
+        return mWriteBehind;
+    }
+
+    /**
+     * 设置是否异步写缓存。启用后{@link CacheStorage#put}只把缓存加入队列，由后台线程批量写入数据库。
+     */
+    public CacheConfig setWriteBehind(boolean writeBehind) {
+        mWriteBehind = writeBehind;
+        return this;
+    }
+
+    public int getWriteQueueCapacity() {
+        return mWriteQueueCapacity;
+    }
+
+    /**
+     * 设置异步写队列的容量，队列满时写缓存会阻塞。
+     */
+    public CacheConfig setWriteQueueCapacity(int writeQueueCapacity) {
+        if (writeQueueCapacity <= 0) {
+            throw new IllegalArgumentException("writeQueueCapacity <= 0");
+        }
+        mWriteQueueCapacity = writeQueueCapacity;
+        return this;
+    }
+
+    public int getWriteBatchSize() {
+        return mWriteBatchSize;
+    }
+
+    /**
+     * 设置后台线程每个事务最多写入的缓存条数。
+     */
+    public CacheConfig setWriteBatchSize(int writeBatchSize) {
+        if (writeBatchSize <= 0) {
+            throw new IllegalArgumentException("writeBatchSize <= 0");
+        }
+        mWriteBatchSize = writeBatchSize;
+        return this;
+    }
+
+    public Codec getCodec() {
+        return mCodec;
+    }
+
+    /**
+     * 设置默认的编解码器，没有在{@code @Cacheable}中指定编解码器、结果类型也没有生成{@link BinarySerializer}的缓存都使用它。
+     * 编解码器会被自动注册到{@link Codecs}。
+     */
+    public CacheConfig setCodec(Codec codec) {
+        if (codec == null) {
+            throw new NullPointerException("codec == null");
+        }
+        Codecs.register(codec);
+        mCodec = codec;
+        return this;
+    }
+
+    public int getCompressionThreshold() {
+        return mCompressionThreshold;
+    }
+
+    /**
+     * 设置压缩缓存结果的阈值，编码后不小于这个字节数的结果在写入数据库时压缩，小于0表示不压缩。内存缓存中的结果不压缩。
+     * <p>
+     * 默认{@link #DEFAULT_COMPRESSION_THRESHOLD}：按benchmark模块的CompressionBenchmark，压缩后磁盘占用约减少一半，
+     * 读取延迟约增加一倍。小于8KB的结果每条节省不到4KB，即不到一个页面，不值得增加的延迟。
+     */
+    public CacheConfig setCompressionThreshold(int compressionThreshold) {
+        mCompressionThreshold = compressionThreshold;
+        return this;
+    }
+
+    public int getSegmentThreshold() {
+        return mSegmentThreshold;
+    }
+
+    /**
+     * 设置把缓存结果保存到段文件的阈值，压缩后不小于这个字节数的结果保存在{@link SegmentStore}的段文件中，CACHE表只保存它的位置，
+     * 小于0表示全部保存在数据库中。Android的CursorWindow最大只有2MB左右，阈值应该远小于它。
+     */
+    public CacheConfig setSegmentThreshold(int segmentThreshold) {
+        mSegmentThreshold = segmentThreshold;
+        return this;
+    }
+
+    public int getSweepInterval() {
+        return mSweepInterval;
+    }
+
+    /**
+     * 设置后台删除过期缓存的间隔秒数，0表示不删除，过期的缓存只是不再被读取。
+     */
+    public CacheConfig setSweepInterval(int sweepInterval) {
+        if (sweepInterval < 0) {
+            throw new IllegalArgumentException("sweepInterval < 0");
+        }
+        mSweepInterval = sweepInterval;
+        return this;
+    }
+
+    public int getSweepBatchSize() {
+        return mSweepBatchSize;
+    }
+
+    /**
+     * 设置删除过期缓存时每个事务最多删除的条数。
+     */
+    public CacheConfig setSweepBatchSize(int sweepBatchSize) {
+        if (sweepBatchSize <= 0) {
+            throw new IllegalArgumentException("sweepBatchSize <= 0");
+        }
+        mSweepBatchSize = sweepBatchSize;
+        return this;
+    }
+
+    public long getDiskQuota() {
+        return mDiskQuota;
+    }
+
+    /**
+     * 设置数据库和段文件中缓存总大小的配额，超过后在后台按最近最少访问的顺序淘汰缓存，0表示不限制。
+     */
+    public CacheConfig setDiskQuota(long diskQuota) {
+        if (diskQuota < 0) {
+            throw new IllegalArgumentException("diskQuota < 0");
+        }
+        mDiskQuota = diskQuota;
+        return this;
+    }
+
+    public int getRefreshThreads() {
+        return mRefreshThreads;
+    }
+
+    /**
+     * 设置在后台刷新变旧缓存的线程数。
+     */
+    public CacheConfig setRefreshThreads(int refreshThreads) {
+        if (refreshThreads <= 0) {
+            throw new IllegalArgumentException("refreshThreads <= 0");
+        }
+        mRefreshThreads = refreshThreads;
+        return this;
+    }
+
+    public int getRefreshQueueCapacity() {
+        return mRefreshQueueCapacity;
+    }
+
+    /**
+     * 设置等待刷新的变旧缓存最多的个数，超过时丢弃新的刷新。
+     */
+    public CacheConfig setRefreshQueueCapacity(int refreshQueueCapacity) {
+        if (refreshQueueCapacity <= 0) {
+            throw new IllegalArgumentException("refreshQueueCapacity <= 0");
+        }
+        mRefreshQueueCapacity = refreshQueueCapacity;
+        return this;
+    }
+
+    public CacheStore getStore() {
+        return mStore;
+    }
+
+    /**
+     * 设置保存缓存的后端，为null时使用{@link SQLiteCacheStore}。写多的场景可以使用{@link LogCacheStore}，
+     * 在JVM上运行测试时可以使用{@link JdbcCacheStore}。
+     */
+    public CacheConfig setStore(CacheStore store) {
+        mStore = store;
+        return this;
+    }
+}
@@ -0,0 +1,86 @@
+package me.allenzjl.domaincache;
+
+import com.alibaba.fastjson.JSON;
+
+/**
+ * 预先计算好的缓存键，包括方法键、参数的规范文本和它们的指纹，读写同一条缓存时只计算一次。
+ */
+public final class CacheKey {
+
+    private final String mKey;
+
+    private final String mParameter;
+
+    private final long mFingerprint;
+
+    private String mMemoryKey;
+
+    public CacheKey(String key, String parameter) {
+        if (key == null) {
+            throw new NullPointerException("key == null");
+        }
+        mKey = key;
+        mParameter = parameter == null ? "" : parameter;
+        mFingerprint = Fingerprint.of(mKey, mParameter);
+    }
+
+    /**
+     * 没有参数的方法的缓存键。
+     */
+    public static CacheKey of(String key) {
+        return new CacheKey(key, "");
+    }
+
+    /**
+     * 用fastjson序列化参数对象得到的缓存键，与旧版本生成的代码写入的缓存兼容。
+     */
+    public static CacheKey of(String key, Object parameter) {
+        return new CacheKey(key, parameter == null ? "" : JSON.toJSONString(parameter));
+    }
+
+    public String getKey() {
+        return mKey;
+    }
+
+    public String getParameter() {
+        return mParameter;
+    }
+
+    public long getFingerprint() {
+        return mFingerprint;
+    }
+
+    /**
+     * 内存缓存和异步写队列使用的键。
+     */
+    public String getMemoryKey() {
+        String memoryKey = mMemoryKey;
+        if (memoryKey == null) {
+            memoryKey = MemoryCache.buildKey(mKey, mParameter);
+            mMemoryKey = memoryKey;
+        }
+        return memoryKey;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        CacheKey that = (CacheKey) o;
+        return mFingerprint == that.mFingerprint && mKey.equals(that.mKey) && mParameter.equals(that.mParameter);
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (mFingerprint ^ (mFingerprint >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return mKey + mParameter;
+    }
+}
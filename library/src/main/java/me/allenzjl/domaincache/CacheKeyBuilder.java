@@ -0,0 +1,159 @@
+package me.allenzjl.domaincache;
+
+import com.alibaba.fastjson.JSON;
+
+/**
+ * 生成的代码用来构造{@link CacheKey}的构建器，按调用顺序把参数写入线程内复用的缓冲区。
+ * <p>
+ * 注解处理器按参数名排序后依次调用{@code put}，得到的文本与fastjson序列化同样参数的{@code JSONObject}完全相同（值为null的参数被省略），
+ * 因此旧版本写入的缓存仍然可以命中。基本类型和字符串直接写入，其他类型交给fastjson。
+ * <p>
+ * 构造期间求值的参数（{@code @CacheParameter}方法、fastjson调用的getter）可能再调用另一个生成的方法，
+ * 这时线程内的构建器正在使用，{@link #obtain(String)}改为返回新的构建器，外层的缓存键不受影响。
+ */
+public class CacheKeyBuilder {
+
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    private static final ThreadLocal<CacheKeyBuilder> sBuilders = new ThreadLocal<CacheKeyBuilder>() {
+        @Override
+        protected CacheKeyBuilder initialValue() {
+            return new CacheKeyBuilder();
+        }
+    };
+
+    protected final StringBuilder mBuffer = new StringBuilder(64);
+
+    protected String mKey;
+
+    protected boolean mEmpty;
+
+    protected CacheKeyBuilder() {
+    }
+
+    /**
+     * 取得当前线程的构建器并开始构造一个缓存键。当前线程的构建器还没有{@link #build()}时返回新的构建器。
+     */
+    public static CacheKeyBuilder obtain(String key) {
+        CacheKeyBuilder builder = sBuilders.get();
+        if (builder.mKey != null) {
+            builder = new CacheKeyBuilder();
+        }
+        builder.mKey = key;
+        builder.mEmpty = true;
+        builder.mBuffer.setLength(0);
+        builder.mBuffer.append('{');
+        return builder;
+    }
+
+    public CacheKeyBuilder put(String name, int value) {
+        name(name).append(value);
+        return this;
+    }
+
+    public CacheKeyBuilder put(String name, long value) {
+        name(name).append(value);
+        return this;
+    }
+
+    public CacheKeyBuilder put(String name, boolean value) {
+        name(name).append(value);
+        return this;
+    }
+
+    public CacheKeyBuilder put(String name, char value) {
+        StringBuilder buffer = name(name);
+        buffer.append('"');
+        appendEscaped(buffer, value);
+        buffer.append('"');
+        return this;
+    }
+
+    public CacheKeyBuilder put(String name, String value) {
+        if (value != null) {
+            appendString(name(name), value);
+        }
+        return this;
+    }
+
+    public CacheKeyBuilder put(String name, Object value) {
+        if (value == null) {
+            return this;
+        }
+        if (value instanceof String) {
+            return put(name, (String) value);
+        } else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte ||
+                value instanceof Boolean) {
+            name(name).append(value.toString());
+        } else if (value instanceof Character) {
+            return put(name, ((Character) value).charValue());
+        } else {
+            // 浮点数和对象的格式依赖fastjson的实现
+            name(name).append(JSON.toJSONString(value));
+        }
+        return this;
+    }
+
+    public CacheKey build() {
+        mBuffer.append('}');
+        CacheKey cacheKey = new CacheKey(mKey, mBuffer.toString());
+        mKey = null;
+        return cacheKey;
+    }
+
+    protected StringBuilder name(String name) {
+        if (mEmpty) {
+            mEmpty = false;
+        } else {
+            mBuffer.append(',');
+        }
+        appendString(mBuffer, name);
+        return mBuffer.append(':');
+    }
+
+    protected static void appendString(StringBuilder buffer, String value) {
+        buffer.append('"');
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            appendEscaped(buffer, value.charAt(i));
+        }
+        buffer.append('"');
+    }
+
+    /**
+     * 按fastjson的规则转义字符。
+     */
+    protected static void appendEscaped(StringBuilder buffer, char c) {
+        switch (c) {
+            case '"':
+                buffer.append("\\\"");
+                break;
+            case '\\':
+                buffer.append("\\\\");
+                break;
+            case '\b':
+                buffer.append("\\b");
+                break;
+            case '\t':
+                buffer.append("\\t");
+                break;
+            case '\n':
+                buffer.append("\\n");
+                break;
+            case '\f':
+                buffer.append("\\f");
+                break;
+            case '\r':
+                buffer.append("\\r");
+                break;
+            default:
+                if (c < 0x20 || (c >= 0x7F && c <= 0xA0) || c == 0x2028) {
+                    buffer.append("\\u").append(HEX_DIGITS[(c >> 12) & 0xF]).append(HEX_DIGITS[(c >> 8) & 0xF])
+                            .append(HEX_DIGITS[(c >> 4) & 0xF]).append(HEX_DIGITS[c & 0xF]);
+                } else {
+                    buffer.append(c);
+                }
+                break;
+        }
+    }
+}
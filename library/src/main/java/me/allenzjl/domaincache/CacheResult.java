@@ -0,0 +1,41 @@
+package me.allenzjl.domaincache;
+
+/**
+ * 读缓存的结果，可能是已经变旧但还没有过期的结果。
+ */
+public class CacheResult<T> {
+
+    protected final T mValue;
+
+    protected final boolean mStale;
+
+    protected final boolean mNegative;
+
+    public CacheResult(T value, boolean stale) {
+        this(value, stale, false);
+    }
+
+    public CacheResult(T value, boolean stale, boolean negative) {
+        mValue = value;
+        mStale = stale;
+        mNegative = negative;
+    }
+
+    public T getValue() {
+        return mValue;
+    }
+
+    /**
+     * @return 结果已经变旧，应当在后台刷新时返回true
+     */
+    public boolean isStale() {
+        return mStale;
+    }
+
+    /**
+     * @return 缓存的是源方法返回的null时返回true，此时{@link #getValue()}为null
+     */
+    public boolean isNegative() {
+        return mNegative;
+    }
+}
@@ -0,0 +1,126 @@
+package me.allenzjl.domaincache;
+
+/**
+ * {@link CacheStore}读写的一行缓存。结果保存在数据库中时data不为null，保存在段文件中时pointer不为null。
+ */
+public class CacheRow {
+
+    protected final long mId;
+
+    protected final String mKey;
+
+    protected final String mParameter;
+
+    protected final byte[] mData;
+
+    protected final SegmentStore.Pointer mPointer;
+
+    protected final int mCodecId;
+
+    protected final int mCompression;
+
+    protected final String mAlias;
+
+    protected final long mExpired;
+
+    protected final long mSoftExpired;
+
+    protected long mSize;
+
+    protected long mAccessed;
+
+    protected String[] mParamNames;
+
+    protected Object[] mParams;
+
+    public CacheRow(long id, String key, String parameter, byte[] data, SegmentStore.Pointer pointer, int codecId,
+                    int compression, String alias, long expired, long softExpired) {
+        mId = id;
+        mKey = key;
+        mParameter = parameter;
+        mData = data;
+        mPointer = pointer;
+        mCodecId = codecId;
+        mCompression = compression;
+        mAlias = alias;
+        mExpired = expired;
+        mSoftExpired = softExpired;
+    }
+
+    public long getId() {
+        return mId;
+    }
+
+    public String getKey() {
+        return mKey;
+    }
+
+    public String getParameter() {
+        return mParameter;
+    }
+
+    public byte[] getData() {
+        return mData;
+    }
+
+    public SegmentStore.Pointer getPointer() {
+        return mPointer;
+    }
+
+    public int getCodecId() {
+        return mCodecId;
+    }
+
+    public int getCompression() {
+        return mCompression;
+    }
+
+    public String getAlias() {
+        return mAlias;
+    }
+
+    public long getExpired() {
+        return mExpired;
+    }
+
+    /**
+     * 结果变旧的时间，之后到{@link #getExpired()}之前仍然可以读到旧的结果，0表示与{@link #getExpired()}相同。
+     */
+    public long getSoftExpired() {
+        return mSoftExpired;
+    }
+
+    public long getSize() {
+        return mSize;
+    }
+
+    public long getAccessed() {
+        return mAccessed;
+    }
+
+    /**
+     * 写入时的大小和访问时间，读取时不设置。
+     */
+    public CacheRow setUsage(long size, long accessed) {
+        mSize = size;
+        mAccessed = accessed;
+        return this;
+    }
+
+    public String[] getParamNames() {
+        return mParamNames;
+    }
+
+    public Object[] getParams() {
+        return mParams;
+    }
+
+    /**
+     * 写入时的索引参数，paramNames为null时没有索引参数。
+     */
+    public CacheRow setParams(String[] paramNames, Object[] params) {
+        mParamNames = paramNames;
+        mParams = params;
+        return this;
+    }
+}
@@ -0,0 +1,86 @@
+package me.allenzjl.domaincache;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import rx.Scheduler;
+import rx.schedulers.Schedulers;
+
+/**
+ * 生成的{@code *Observable}类使用的调度器的注册表。
+ * <p>
+ * 读缓存在{@link #CACHE}调度器上执行，未命中时调用原方法和写缓存在{@link #ORIGIN}调度器上执行，读缓存不会排在慢的网络请求之后。
+ * 两者默认都是{@link Schedulers#io()}，在主线程上订阅也不会阻塞主线程读磁盘或者调用原方法，结果在后台线程上发送，
+ * 需要时用{@code observeOn}切换回主线程。需要在订阅的线程上同步执行时注册{@link Schedulers#immediate()}。
+ * 可以替换默认的调度器，也可以注册其他名称的调度器，在{@code @CacheObservable(cacheScheduler = ..., originScheduler = ...)}中引用。
+ * <pre>
+ * CacheSchedulers.register(CacheSchedulers.CACHE, CacheSchedulers.newScheduler("DomainCache-IO", 2));
+ * CacheSchedulers.register(CacheSchedulers.ORIGIN, Schedulers.io());
+ * </pre>
+ */
+public class CacheSchedulers {
+
+    /**
+     * 默认读缓存的调度器的名称。
+     */
+    public static final String CACHE = "cache";
+
+    /**
+     * 默认调用原方法的调度器的名称。
+     */
+    public static final String ORIGIN = "origin";
+
+    private static final Map<String, Scheduler> sSchedulers = new ConcurrentHashMap<>();
+
+    static {
+        register(CACHE, Schedulers.io());
+        register(ORIGIN, Schedulers.io());
+    }
+
+    private CacheSchedulers() {
+    }
+
+    /**
+     * 注册调度器，已经注册的名称会被替换，只影响之后创建的{@code Observable}。
+     */
+    public static void register(String name, Scheduler scheduler) {
+        if (name == null) {
+            throw new NullPointerException("name == null");
+        }
+        if (scheduler == null) {
+            throw new NullPointerException("scheduler == null");
+        }
+        sSchedulers.put(name, scheduler);
+    }
+
+    public static Scheduler get(String name) {
+        Scheduler scheduler = sSchedulers.get(name);
+        if (scheduler == null) {
+            throw new IllegalStateException("Scheduler '" + name + "' is not registered");
+        }
+        return scheduler;
+    }
+
+    /**
+     * 创建使用固定数量的后台线程的调度器，适合作为读缓存的调度器。
+     */
+    public static Scheduler newScheduler(final String threadName, int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("threads <= 0");
+        }
+        return Schedulers.from(Executors.newFixedThreadPool(threads, new ThreadFactory() {
+
+            private final AtomicInteger mCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, threadName + "-" + mCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        }));
+    }
+}
@@ -0,0 +1,208 @@
+package me.allenzjl.domaincache;
+
+import me.allenzjl.domaincache.CacheStorageHelper.CacheTableColumn;
+import me.allenzjl.domaincache.CacheStorageHelper.ParamsTableColumn;
+
+import java.util.List;
+
+/**
+ * CACHE和PARAMS表的结构和读写语句，{@link SQLiteCacheStore}和{@link JdbcCacheStore}共用。
+ * <p>
+ * 表名和列名都是编译期常量，引用它们不会加载依赖Android的{@link CacheStorageHelper}。
+ */
+public class CacheSql {
+
+    /**
+     * 按主键查找未过期的缓存，_expired为0表示永不过期。
+     */
+    public static final String CACHE_QUERY_SQL =
+            "SELECT * FROM " + CacheStorageHelper.TABLE_CACHE + " WHERE " + CacheTableColumn.ID + " = ? AND (" +
+                    CacheTableColumn.EXPIRED + " = 0 OR " + CacheTableColumn.EXPIRED + " > ?)";
+
+    /**
+     * 按一组主键查找未过期的缓存，后面拼接主键的占位符和右括号。
+     */
+    public static final String CACHE_QUERY_IN_SQL_PREFIX =
+            "SELECT * FROM " + CacheStorageHelper.TABLE_CACHE + " WHERE (" + CacheTableColumn.EXPIRED + " = 0 OR " +
+                    CacheTableColumn.EXPIRED + " > ?) AND " + CacheTableColumn.ID + " IN (";
+
+    /**
+     * 每次批量查询最多的主键数，SQLite默认最多999个参数。
+     */
+    public static final int MAX_IN_SIZE = 500;
+
+    /**
+     * 借助_expired上的索引找出一批过期的缓存。
+     */
+    public static final String EXPIRED_QUERY_SQL =
+            "SELECT " + CacheTableColumn.ID + " FROM " + CacheStorageHelper.TABLE_CACHE + " WHERE " + CacheTableColumn.EXPIRED +
+                    " > 0 AND " + CacheTableColumn.EXPIRED + " <= ? LIMIT ?";
+
+    /**
+     * 借助_accessed上的索引找出一批最近最少访问的缓存。
+     */
+    public static final String LEAST_ACCESSED_QUERY_SQL =
+            "SELECT " + CacheTableColumn.ID + ", " + CacheTableColumn.SIZE + " FROM " + CacheStorageHelper.TABLE_CACHE +
+                    " ORDER BY " + CacheTableColumn.ACCESSED + " LIMIT ?";
+
+    public static final String TOTAL_SIZE_QUERY_SQL =
+            "SELECT IFNULL(SUM(" + CacheTableColumn.SIZE + "), 0) FROM " + CacheStorageHelper.TABLE_CACHE;
+
+    /**
+     * 统计每个段文件中仍被引用的字节数。
+     */
+    public static final String SEGMENT_QUERY_SQL =
+            "SELECT " + CacheTableColumn.SEGMENT + ", SUM(" + CacheTableColumn.SEGMENT_LENGTH + ") FROM " +
+                    CacheStorageHelper.TABLE_CACHE + " WHERE " + CacheTableColumn.SEGMENT + " IS NOT NULL GROUP BY " +
+                    CacheTableColumn.SEGMENT;
+
+    public static final String SEGMENT_ROWS_QUERY_SQL =
+            "SELECT * FROM " + CacheStorageHelper.TABLE_CACHE + " WHERE " + CacheTableColumn.SEGMENT + " = ?";
+
+    /**
+     * 把结果移到新的位置，只在缓存仍然引用原来的位置时更新，期间被覆盖的缓存保持不变。
+     */
+    public static final String SEGMENT_RELOCATE_SQL =
+            "UPDATE " + CacheStorageHelper.TABLE_CACHE + " SET " + CacheTableColumn.SEGMENT + " = ?, " +
+                    CacheTableColumn.SEGMENT_OFFSET + " = ?, " + CacheTableColumn.SEGMENT_LENGTH + " = ? WHERE " +
+                    CacheTableColumn.ID + " = ? AND " + CacheTableColumn.SEGMENT + " = ? AND " +
+                    CacheTableColumn.SEGMENT_OFFSET + " = ?";
+
+    public static final String CACHE_REMOVE_WHERE_CLAUSE = CacheTableColumn.ALIAS + " = ?";
+
+    public static final String CACHE_REMOVE_SQL =
+            "DELETE FROM " + CacheStorageHelper.TABLE_CACHE + " WHERE " + CACHE_REMOVE_WHERE_CLAUSE;
+
+    /**
+     * 按索引参数删除缓存，借助PARAMS上(_alias, _name, _value)的索引，在compare之后拼接比较运算符和参数占位符。
+     */
+    public static final String CACHE_REMOVE_BY_PARAM_SQL_PREFIX =
+            "DELETE FROM " + CacheStorageHelper.TABLE_CACHE + " WHERE " + CacheTableColumn.ID + " IN (SELECT " +
+                    ParamsTableColumn.CACHE_ID + " FROM " + CacheStorageHelper.TABLE_PARAMS + " WHERE " + ParamsTableColumn.ALIAS +
+                    " = ? AND " + ParamsTableColumn.NAME + " = ? AND " + ParamsTableColumn.VALUE + " ";
+
+    /**
+     * 按一组主键删除缓存，索引参数由触发器删除。使用{@link #deleteIn(List)}拼接主键。
+     */
+    public static final String CACHE_DELETE_IN_SQL_PREFIX =
+            "DELETE FROM " + CacheStorageHelper.TABLE_CACHE + " WHERE " + CacheTableColumn.ID + " IN (";
+
+    /**
+     * 按指纹主键插入或替换缓存。
+     */
+    public static final String CACHE_UPSERT_SQL =
+            "INSERT OR REPLACE INTO " + CacheStorageHelper.TABLE_CACHE + " (" + CacheTableColumn.ID + ", " + CacheTableColumn.KEY +
+                    ", " + CacheTableColumn.PARAMETER + ", " + CacheTableColumn.RESULT + ", " + CacheTableColumn.ALIAS + ", " +
+                    CacheTableColumn.EXPIRED + ", " + CacheTableColumn.CODEC + ", " + CacheTableColumn.COMPRESSION + ", " +
+                    CacheTableColumn.SEGMENT + ", " + CacheTableColumn.SEGMENT_OFFSET + ", " + CacheTableColumn.SEGMENT_LENGTH +
+                    ", " + CacheTableColumn.SIZE + ", " + CacheTableColumn.ACCESSED + ", " + CacheTableColumn.SOFT_EXPIRED +
+                    ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    /**
+     * 更新缓存的访问时间，不会把时间改早。
+     */
+    public static final String ACCESSED_UPDATE_SQL =
+            "UPDATE " + CacheStorageHelper.TABLE_CACHE + " SET " + CacheTableColumn.ACCESSED + " = MAX(" +
+                    CacheTableColumn.ACCESSED + ", ?) WHERE " + CacheTableColumn.ID + " = ?";
+
+    public static final String PARAMS_DELETE_SQL =
+            "DELETE FROM " + CacheStorageHelper.TABLE_PARAMS + " WHERE " + ParamsTableColumn.CACHE_ID + " = ?";
+
+    public static final String PARAMS_INSERT_SQL =
+            "INSERT OR REPLACE INTO " + CacheStorageHelper.TABLE_PARAMS + " (" + ParamsTableColumn.CACHE_ID + ", " +
+                    ParamsTableColumn.ALIAS + ", " + ParamsTableColumn.NAME + ", " + ParamsTableColumn.VALUE +
+                    ") VALUES (?, ?, ?, ?)";
+
+    private CacheSql() {
+    }
+
+    public static String createCacheTable() {
+        StringBuilder sqlBuilder = new StringBuilder();
+        sqlBuilder.append("CREATE TABLE IF NOT EXISTS ").append(CacheStorageHelper.TABLE_CACHE).append(" (");
+        sqlBuilder.append(CacheTableColumn.ID).append(" INTEGER PRIMARY KEY, ");
+        sqlBuilder.append(CacheTableColumn.KEY).append(" TEXT NOT NULL, ");
+        sqlBuilder.append(CacheTableColumn.PARAMETER).append(" TEXT NOT NULL, ");
+        sqlBuilder.append(CacheTableColumn.RESULT).append(" BLOB, ");
+        sqlBuilder.append(CacheTableColumn.ALIAS).append(" TEXT, ");
+        sqlBuilder.append(CacheTableColumn.EXPIRED).append(" INTEGER NOT NULL DEFAULT 0, ");
+        sqlBuilder.append(CacheTableColumn.CODEC).append(" INTEGER NOT NULL DEFAULT ").append(JsonCodec.ID).append(", ");
+        sqlBuilder.append(CacheTableColumn.COMPRESSION).append(" INTEGER NOT NULL DEFAULT ").append(Compression.NONE)
+                .append(", ");
+        sqlBuilder.append(CacheTableColumn.SEGMENT).append(" INTEGER, ");
+        sqlBuilder.append(CacheTableColumn.SEGMENT_OFFSET).append(" INTEGER, ");
+        sqlBuilder.append(CacheTableColumn.SEGMENT_LENGTH).append(" INTEGER, ");
+        sqlBuilder.append(CacheTableColumn.SIZE).append(" INTEGER NOT NULL DEFAULT 0, ");
+        sqlBuilder.append(CacheTableColumn.ACCESSED).append(" INTEGER NOT NULL DEFAULT 0, ");
+        sqlBuilder.append(CacheTableColumn.SOFT_EXPIRED).append(" INTEGER NOT NULL DEFAULT 0);");
+        return sqlBuilder.toString();
+    }
+
+    public static String createParamsTable() {
+        StringBuilder sqlBuilder = new StringBuilder();
+        sqlBuilder.append("CREATE TABLE IF NOT EXISTS ").append(CacheStorageHelper.TABLE_PARAMS).append(" (");
+        sqlBuilder.append(ParamsTableColumn.CACHE_ID).append(" INTEGER NOT NULL, ");
+        sqlBuilder.append(ParamsTableColumn.ALIAS).append(" TEXT NOT NULL, ");
+        sqlBuilder.append(ParamsTableColumn.NAME).append(" TEXT NOT NULL, ");
+        sqlBuilder.append(ParamsTableColumn.VALUE).append(" TEXT, ");
+        sqlBuilder.append("PRIMARY KEY (").append(ParamsTableColumn.CACHE_ID).append(", ").append(ParamsTableColumn.NAME)
+                .append("));");
+        return sqlBuilder.toString();
+    }
+
+    /**
+     * 删除缓存时由触发器删除它的索引参数。INSERT OR REPLACE替换缓存时不会触发，需要另外删除旧的索引参数。
+     */
+    public static String createCacheDeleteTrigger() {
+        return "CREATE TRIGGER IF NOT EXISTS " + CacheStorageHelper.TRIGGER_CACHE_DELETE + " AFTER DELETE ON " +
+                CacheStorageHelper.TABLE_CACHE + " BEGIN DELETE FROM " + CacheStorageHelper.TABLE_PARAMS + " WHERE " +
+                ParamsTableColumn.CACHE_ID + " = OLD." + CacheTableColumn.ID + "; END";
+    }
+
+    public static String[] createIndexes() {
+        return new String[]{createIndex(false, CacheStorageHelper.TABLE_CACHE, CacheTableColumn.ALIAS),
+                createIndex(false, CacheStorageHelper.TABLE_CACHE, CacheTableColumn.EXPIRED),
+                createIndex(false, CacheStorageHelper.TABLE_CACHE, CacheTableColumn.ACCESSED),
+                createIndex(false, CacheStorageHelper.TABLE_PARAMS, ParamsTableColumn.ALIAS, ParamsTableColumn.NAME,
+                        ParamsTableColumn.VALUE)};
+    }
+
+    public static String createIndex(boolean unique, String table, String... columns) {
+        StringBuilder nameBuilder = new StringBuilder(table);
+        StringBuilder columnsBuilder = new StringBuilder();
+        for (int i = 0; i < columns.length; i++) {
+            nameBuilder.append(columns[i]);
+            columnsBuilder.append(columns[i]);
+            if (i < columns.length - 1) {
+                columnsBuilder.append(", ");
+            }
+        }
+        nameBuilder.append("_INDEX");
+        return "CREATE " + (unique ? "UNIQUE " : "") + "INDEX IF NOT EXISTS " + nameBuilder + " ON " + table + " (" +
+                columnsBuilder + ")";
+    }
+
+    /**
+     * 按一组主键删除缓存的语句。主键直接写入语句，数量不受参数个数的限制。
+     */
+    public static String deleteIn(List<Long> ids) {
+        StringBuilder sqlBuilder = new StringBuilder(CACHE_DELETE_IN_SQL_PREFIX);
+        for (int i = 0; i < ids.size(); i++) {
+            if (i > 0) {
+                sqlBuilder.append(", ");
+            }
+            sqlBuilder.append(ids.get(i).longValue());
+        }
+        return sqlBuilder.append(")").toString();
+    }
+
+    /**
+     * 在prefix之后拼接count个占位符和右括号。
+     */
+    public static String inClause(String prefix, int count) {
+        StringBuilder sqlBuilder = new StringBuilder(prefix);
+        for (int i = 0; i < count; i++) {
+            sqlBuilder.append(i == 0 ? "?" : ", ?");
+        }
+        return sqlBuilder.append(")").toString();
+    }
+}
@@ -0,0 +1,129 @@
+package me.allenzjl.domaincache;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+/**
+ * 写缓存时使用的预编译语句，随{@link CacheStorageHelper#open()}打开的连接创建，在连接关闭时释放。
+ * <p>
+ * 语句本身不是线程安全的，只能在写事务中使用，写事务之间由数据库串行化。
+ */
+public class CacheStatements {
+
+    protected final SQLiteDatabase mDatabase;
+
+    protected SQLiteStatement mCacheUpsert;
+
+    protected SQLiteStatement mParamsDelete;
+
+    protected SQLiteStatement mParamsInsert;
+
+    protected SQLiteStatement mAccessedUpdate;
+
+    public CacheStatements(SQLiteDatabase database) {
+        mDatabase = database;
+    }
+
+    /**
+     * 插入或替换缓存，不包括索引参数。
+     */
+    public void upsertCache(CacheRow row) {
+        if (mCacheUpsert == null) {
+            mCacheUpsert = mDatabase.compileStatement(CacheSql.CACHE_UPSERT_SQL);
+        }
+        SQLiteStatement statement = mCacheUpsert;
+        statement.clearBindings();
+        statement.bindLong(1, row.getId());
+        statement.bindString(2, row.getKey());
+        statement.bindString(3, row.getParameter());
+        if (row.getData() == null) {
+            statement.bindNull(4);
+        } else {
+            statement.bindBlob(4, row.getData());
+        }
+        bindStringOrNull(statement, 5, row.getAlias());
+        statement.bindLong(6, row.getExpired());
+        statement.bindLong(7, row.getCodecId());
+        statement.bindLong(8, row.getCompression());
+        SegmentStore.Pointer pointer = row.getPointer();
+        if (pointer == null) {
+            statement.bindNull(9);
+            statement.bindNull(10);
+            statement.bindNull(11);
+        } else {
+            statement.bindLong(9, pointer.getSegment());
+            statement.bindLong(10, pointer.getOffset());
+            statement.bindLong(11, pointer.getLength());
+        }
+        statement.bindLong(12, row.getSize());
+        statement.bindLong(13, row.getAccessed());
+        statement.bindLong(14, row.getSoftExpired());
+        statement.executeInsert();
+    }
+
+    public void updateAccessed(long cacheId, long accessed) {
+        if (mAccessedUpdate == null) {
+            mAccessedUpdate = mDatabase.compileStatement(CacheSql.ACCESSED_UPDATE_SQL);
+        }
+        SQLiteStatement statement = mAccessedUpdate;
+        statement.bindLong(1, accessed);
+        statement.bindLong(2, cacheId);
+        statement.executeUpdateDelete();
+    }
+
+    /**
+     * 替换缓存的索引参数，旧的索引参数总是被删除。
+     *
+     * @param paramNames 参数名，与params一一对应
+     */
+    public void replaceParams(long cacheId, String alias, String[] paramNames, Object... params) {
+        if (mParamsDelete == null) {
+            mParamsDelete = mDatabase.compileStatement(CacheSql.PARAMS_DELETE_SQL);
+        }
+        mParamsDelete.bindLong(1, cacheId);
+        mParamsDelete.executeUpdateDelete();
+        if (alias == null || paramNames == null) {
+            return;
+        }
+        if (mParamsInsert == null) {
+            mParamsInsert = mDatabase.compileStatement(CacheSql.PARAMS_INSERT_SQL);
+        }
+        SQLiteStatement statement = mParamsInsert;
+        int count = Math.min(paramNames.length, params.length);
+        for (int i = 0; i < count; i++) {
+            statement.clearBindings();
+            statement.bindLong(1, cacheId);
+            statement.bindString(2, alias);
+            statement.bindString(3, paramNames[i]);
+            statement.bindString(4, String.valueOf(params[i]));
+            statement.executeInsert();
+        }
+    }
+
+    protected static void bindStringOrNull(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
+
+    public void close() {
+        if (mCacheUpsert != null) {
+            mCacheUpsert.close();
+            mCacheUpsert = null;
+        }
+        if (mParamsDelete != null) {
+            mParamsDelete.close();
+            mParamsDelete = null;
+        }
+        if (mParamsInsert != null) {
+            mParamsInsert.close();
+            mParamsInsert = null;
+        }
+        if (mAccessedUpdate != null) {
+            mAccessedUpdate.close();
+            mAccessedUpdate = null;
+        }
+    }
+}
@@ -1,17 +1,16 @@
 package me.allenzjl.domaincache;
 
-import android.content.ContentValues;
-import android.content.Context;
-import android.database.Cursor;
-import android.database.sqlite.SQLiteDatabase;
-import android.text.TextUtils;
-
-import com.alibaba.fastjson.JSON;
-
+import java.io.IOException;
 import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.Map;
 
 /**
  * 缓存仓库。
@@ -19,59 +18,266 @@ import java.util.concurrent.LinkedBlockingQueue;
 public class CacheStorage {
 
     private static class LazyHolder {
-        private static CacheStorage INSTANCE = new CacheStorage();
+        private static CacheStorage INSTANCE = new CacheStorage(sConfig);
     }
 
+    private static CacheConfig sConfig = new CacheConfig();
+
     public static CacheStorage getInstance() {
         return LazyHolder.INSTANCE;
     }
 
-    public static final String CACHE_QUERY_WHERE_CLAUSE = CacheStorageHelper.CacheTableColumn.KEY +
-            " = ? AND " + CacheStorageHelper.CacheTableColumn.PARAMETER + " = ?";
+    /**
+     * 设置缓存仓库的配置，只在第一次调用{@link #getInstance()}之前有效。
+     */
+    public static synchronized void setConfig(CacheConfig config) {
+        if (config == null) {
+            throw new NullPointerException("config == null");
+        }
+        sConfig = config;
+    }
+
+    protected CacheStore mStore;
+
+    protected WriteBehindQueue mOperationQueue;
 
-    public static final String CACHE_QUERY_SQL =
-            "SELECT * FROM " + CacheStorageHelper.TABLE_CACHE + " WHERE " + CACHE_QUERY_WHERE_CLAUSE;
+    protected MemoryCache mMemoryCache;
 
-    public static final String ALIAS_QUERY_SQL = "SELECT * FROM " + CacheStorageHelper.TABLE_ALIAS + " WHERE " +
-            CacheStorageHelper.AliasTableColumn.ALIAS + " = ? AND " + CacheStorageHelper.AliasTableColumn.KEY + " = ?";
+    protected OffHeapCache mOffHeapCache;
 
-    public static final String PARAMS_QUERY_WHERE_CLAUSE = CacheStorageHelper.ParamsTableColumn.CACHE_ID + " = ?";
+    protected StripedLock mLock;
 
-    public static final String PARAMS_QUERY_SQL = "SELECT * FROM " + CacheStorageHelper.TABLE_PARAMS + " WHERE " +
-            PARAMS_QUERY_WHERE_CLAUSE;
+    protected Codec mCodec;
 
-    public static final String ALIAS_QUERY_WHERE_CLAUSE_2 = CacheStorageHelper.AliasTableColumn.ALIAS + " = ?";
+    protected int mCompressionThreshold;
 
-    public static final String ALIAS_QUERY_SQL_2 =
-            "SELECT * FROM " + CacheStorageHelper.TABLE_ALIAS + " WHERE " + ALIAS_QUERY_WHERE_CLAUSE_2;
+    protected SegmentStore mSegmentStore;
 
-    public static final String CACHE_REMOVE_WHERE_CLAUSE = CacheStorageHelper.CacheTableColumn.ALIAS + " = ?";
+    protected int mSegmentThreshold;
 
-    protected Context mContext;
+    protected ExpirationSweeper mSweeper;
 
-    protected CacheStorageHelper mStorageHelper;
+    protected DiskQuota mDiskQuota;
 
-    protected LinkedBlockingQueue mOperationQueue;
+    protected final SingleFlight mSingleFlight = new SingleFlight();
 
-    protected CacheStorage() {
-        mContext = ContextAccessor.getApplicationContext();
-        mStorageHelper = new CacheStorageHelper(mContext);
-        mOperationQueue = new LinkedBlockingQueue();
+    protected Refresher mRefresher;
+
+    /**
+     * 创建独立的缓存仓库，通常使用{@link #getInstance()}。
+     */
+    public CacheStorage(CacheConfig config) {
+        mStore = config.getStore() != null ? config.getStore() :
+                new SQLiteCacheStore(ContextAccessor.getApplicationContext());
+        if (config.isWriteBehind()) {
+            mOperationQueue = new WriteBehindQueue(new WriteBehindQueue.Writer() {
+                @Override
+                public void write(List<PendingWrite> batch) {
+                    store(batch);
+                }
+
+                @Override
+                public void onFailed(List<PendingWrite> failed) {
+                    // 数据库中仍然是旧值，内存中的新值不能再保留
+                    for (PendingWrite write : failed) {
+                        mMemoryCache.remove(write.getMemoryKey());
+                        mOffHeapCache.remove(write.getCacheKey().getFingerprint());
+                    }
+                }
+            }, config.getWriteQueueCapacity(), config.getWriteBatchSize());
+        }
+        mMemoryCache = new MemoryCache(config.getMemoryCacheSize(), config.getMemoryCacheMode());
+        mOffHeapCache = new OffHeapCache(config.getOffHeapCacheSize());
+        mLock = new StripedLock(config.getLockStripes());
+        mCodec = config.getCodec();
+        mCompressionThreshold = config.getCompressionThreshold();
+        mSegmentStore = new SegmentStore(mStore.getSegmentDirectory(), SegmentStore.DEFAULT_MAX_SEGMENT_SIZE);
+        mSegmentThreshold = config.getSegmentThreshold();
+        mRefresher = new Refresher(config.getRefreshThreads(), config.getRefreshQueueCapacity());
+        if (config.getSweepInterval() > 0) {
+            mSweeper = new ExpirationSweeper(new ExpirationSweeper.Sweeper() {
+                @Override
+                public int sweep(long now, int batchSize) {
+                    int count = mStore.sweepExpired(now, batchSize);
+                    if (count > 0) {
+                        mSegmentStore.requestCollect();
+                    }
+                    return count;
+                }
+
+                @Override
+                public void onSwept(int total) {
+                    // 没有过期的缓存时也合并被覆盖的结果留下的段文件
+                    compactSegments();
+                }
+            }, config.getSweepInterval(), config.getSweepBatchSize());
+            mSweeper.start();
+        }
+        if (config.getDiskQuota() > 0) {
+            mDiskQuota = new DiskQuota(new DiskQuota.Evictor() {
+                @Override
+                public void updateAccessed(Map<Long, Long> accesses) {
+                    mStore.updateAccessed(accesses);
+                }
+
+                @Override
+                public long queryTotalSize() {
+                    return mStore.queryTotalSize();
+                }
+
+                @Override
+                public long evict(int batchSize) {
+                    long freed = mStore.evictLeastAccessed(batchSize);
+                    if (freed > 0) {
+                        mSegmentStore.requestCollect();
+                    }
+                    return freed;
+                }
+
+                @Override
+                public void onEvicted() {
+                    compactSegments();
+                }
+            }, config.getDiskQuota());
+        }
+    }
+
+    /**
+     * 提前打开数据库连接。不调用时会在第一次读写缓存时打开。{@link #shutdown()}之后调用时重新开始定期删除过期的缓存。
+     */
+    public void open() {
+        mStore.open();
+        if (mSweeper != null) {
+            mSweeper.start();
+        }
+    }
+
+    /**
+     * 关闭数据库连接，通常在应用退出时调用。之后再读写缓存会重新打开连接。
+     */
+    public void shutdown() {
+        if (mSweeper != null) {
+            mSweeper.stop();
+        }
+        mLock.lockAll();
+        try {
+            flush();
+            mStore.close();
+            mSegmentStore.close();
+        } finally {
+            mLock.unlockAll();
+        }
+    }
+
+    /**
+     * 阻塞直到异步写队列中的缓存全部写入数据库。没有启用异步写时直接返回。
+     */
+    public void flush() {
+        if (mOperationQueue != null) {
+            mOperationQueue.flush();
+        }
+    }
+
+    /**
+     * 返回缓存仓库使用的分段锁，可以通过它查看锁竞争的统计数据。
+     */
+    public StripedLock getLock() {
+        return mLock;
+    }
+
+    /**
+     * 返回生成的{@code @Cacheable}方法合并并发源调用使用的{@link SingleFlight}，可以通过它查看省去的源调用次数。
+     */
+    public SingleFlight getSingleFlight() {
+        return mSingleFlight;
+    }
+
+    /**
+     * 返回在后台刷新变旧缓存的{@link Refresher}。
+     */
+    public Refresher getRefresher() {
+        return mRefresher;
+    }
+
+    /**
+     * 在后台执行task刷新key对应的缓存，同一个key同时只执行一次，通常在读到变旧的结果后调用。
+     *
+     * @return 提交成功时返回true
+     */
+    public boolean refresh(Object key, Runnable task) {
+        return mRefresher.refresh(key, task);
     }
 
-    @SuppressWarnings("unchecked")
     public <T> T getObject(String key, Object parameter, Class<T> resultClass) {
-        return (T) get(key, parameter, resultClass, false);
+        return getObject(CacheKey.of(key, parameter), resultClass, null);
+    }
+
+    public <T> T getObject(String key, Object parameter, Class<T> resultClass, Codec codec) {
+        return getObject(CacheKey.of(key, parameter), resultClass, codec);
     }
 
+    /**
+     * 读缓存。
+     *
+     * @param codec 缓存由同一个编号的编解码器写入时用它解码，否则使用写入时的编解码器，可以为null
+     */
     @SuppressWarnings("unchecked")
+    public <T> T getObject(CacheKey cacheKey, Class<T> resultClass, Codec codec) {
+        return (T) get(cacheKey, resultClass, false, codec);
+    }
+
     public <T> List<T> getList(String key, Object parameter, Class<T> resultClass) {
-        return (List<T>) get(key, parameter, resultClass, true);
+        return getList(CacheKey.of(key, parameter), resultClass, null);
+    }
+
+    public <T> List<T> getList(String key, Object parameter, Class<T> resultClass, Codec codec) {
+        return getList(CacheKey.of(key, parameter), resultClass, codec);
     }
 
     @SuppressWarnings("unchecked")
+    public <T> List<T> getList(CacheKey cacheKey, Class<T> resultClass, Codec codec) {
+        return (List<T>) get(cacheKey, resultClass, true, codec);
+    }
+
     public <T> T[] getArray(String key, Object parameter, Class<T> resultClass) {
-        List<T> list = (List<T>) get(key, parameter, resultClass, true);
+        return getArray(CacheKey.of(key, parameter), resultClass, null);
+    }
+
+    public <T> T[] getArray(String key, Object parameter, Class<T> resultClass, Codec codec) {
+        return getArray(CacheKey.of(key, parameter), resultClass, codec);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T[] getArray(CacheKey cacheKey, Class<T> resultClass, Codec codec) {
+        return toArray((List<T>) get(cacheKey, resultClass, true, codec), resultClass);
+    }
+
+    /**
+     * 读缓存，变旧但还没有过期的结果也会返回，由调用方根据{@link CacheResult#isStale()}决定是否刷新。
+     *
+     * @return 未命中时返回null
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CacheResult<T> getObjectResult(CacheKey cacheKey, Class<T> resultClass, Codec codec) {
+        return (CacheResult<T>) getResult(cacheKey, resultClass, false, codec);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> CacheResult<List<T>> getListResult(CacheKey cacheKey, Class<T> resultClass, Codec codec) {
+        return (CacheResult<List<T>>) (CacheResult) getResult(cacheKey, resultClass, true, codec);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> CacheResult<T[]> getArrayResult(CacheKey cacheKey, Class<T> resultClass, Codec codec) {
+        CacheResult<Object> result = getResult(cacheKey, resultClass, true, codec);
+        if (result == null) {
+            return null;
+        }
+        return new CacheResult<>(toArray((List<T>) result.getValue(), resultClass), result.isStale(), result.isNegative());
+    }
+
+    @SuppressWarnings("unchecked")
+    protected static <T> T[] toArray(List<T> list, Class<T> resultClass) {
         if (list != null) {
             T[] array = (T[]) Array.newInstance(resultClass, list.size());
             return list.toArray(array);
@@ -80,235 +286,516 @@ public class CacheStorage {
         }
     }
 
-    protected Object get(String key, Object parameter, Class resultClass, boolean isArray) {
-        synchronized (this) {
-            String parameterJson = parameter == null ? "" : JSON.toJSONString(parameter);
-            Cursor cursor = null;
+    /**
+     * 读缓存，变旧的结果视为未命中。
+     */
+    protected Object get(CacheKey cacheKey, Class resultClass, boolean isArray, Codec codec) {
+        CacheResult<Object> result = getResult(cacheKey, resultClass, isArray, codec);
+        return result != null && !result.isStale() ? result.getValue() : null;
+    }
+
+    /**
+     * 读缓存。内存缓存和堆外缓存只保存没有变旧的结果，变旧的结果从异步写队列或者后端读取。
+     */
+    protected CacheResult<Object> getResult(CacheKey cacheKey, Class resultClass, boolean isArray, Codec codec) {
+        String memoryKey = cacheKey.getMemoryKey();
+        Object cached = mMemoryCache.get(memoryKey, resultClass, isArray, codec);
+        if (cached != null) {
+            onAccessed(cacheKey);
+            return toResult(cached, false);
+        }
+        int stripe = mLock.stripeFor(memoryKey);
+        mLock.lockRead(stripe);
+        try {
+            long now = System.currentTimeMillis();
+            PendingWrite pending = getPending(memoryKey);
+            if (pending != null) {
+                Object result = decodePending(pending, resultClass, isArray, codec);
+                return result != null ? toResult(result, pending.isStale(now)) : null;
+            }
+            Object offHeap = getOffHeap(cacheKey, resultClass, isArray, codec);
+            if (offHeap != null) {
+                return toResult(offHeap, false);
+            }
             try {
-                cursor = mStorageHelper.getReadableDatabase().rawQuery(CACHE_QUERY_SQL, new String[]{key, parameterJson});
-                int count = cursor.getCount();
-                if (count == 0) {
-                    return null;
-                } else if (count > 1) {
-                    throw new IllegalStateException("Key '" + key + "' has more than one cache");
-                } else {
-                    cursor.moveToFirst();
-                    long expired = cursor.getLong(cursor.getColumnIndex(CacheStorageHelper.CacheTableColumn.EXPIRED));
-                    if (expired != 0) {
-                        Date now = new Date();
-                        if (now.after(new Date(expired))) {
-                            return null;
-                        }
-                    }
-                    String resultJson = cursor.getString(cursor.getColumnIndex(CacheStorageHelper.CacheTableColumn.RESULT));
-                    if (isArray) {
-                        return JSON.parseArray(resultJson, resultClass);
-                    } else {
-                        return JSON.parseObject(resultJson, resultClass);
-                    }
-                }
+                CacheRow row = mStore.get(cacheKey.getFingerprint(), now);
+                Object result = row != null ? decodeRow(row, cacheKey, resultClass, isArray, codec) : null;
+                return result != null ? toResult(result, isStale(row.getSoftExpired(), now)) : null;
             } catch (Exception e) {
                 e.printStackTrace();
                 return null;
-            } finally {
-                if (cursor != null) {
-                    cursor.close();
-                }
-                mStorageHelper.close();
             }
+        } finally {
+            mLock.unlockRead(stripe);
         }
     }
 
-    public void put(String key, Object parameter, Object result, int expire, String alias, String paramNames, Object... params) {
-        synchronized (this) {
-            SQLiteDatabase db = mStorageHelper.getWritableDatabase();
-            db.beginTransaction();
-            try {
-                long cacheId = storeCache(db, key, parameter, result, alias, expire);
-                if (!TextUtils.isEmpty(alias)) {
-                    long aliasId = storeAlias(db, alias, key, paramNames);
-                    storeParams(db, cacheId, aliasId, params);
-                }
-                db.setTransactionSuccessful();
-            } finally {
-                db.endTransaction();
-            }
-            mStorageHelper.close();
+    /**
+     * 把解码后的结果包装为{@link CacheResult}，否定缓存的结果为null。
+     */
+    protected static CacheResult<Object> toResult(Object result, boolean stale) {
+        if (result == NegativeCodec.ABSENT) {
+            return new CacheResult<>(null, stale, true);
         }
+        return new CacheResult<>(result, stale);
+    }
+
+    /**
+     * 批量读缓存，每个分段只加一次锁，内存缓存中没有的缓存按主键分组一起查询。
+     *
+     * @return 与cacheKeys位置对应的结果，未命中的位置为null
+     */
+    public <T> List<T> getAll(List<CacheKey> cacheKeys, Class<T> resultClass, Codec codec) {
+        return getAll(cacheKeys, resultClass, false, codec);
+    }
+
+    public <T> List<List<T>> getAllLists(List<CacheKey> cacheKeys, Class<T> resultClass, Codec codec) {
+        return getAll(cacheKeys, resultClass, true, codec);
     }
 
-    protected long storeCache(SQLiteDatabase db, String key, Object parameter, Object result, String alias, int expire) {
-        Cursor cursor = null;
+    @SuppressWarnings("unchecked")
+    protected <R> List<R> getAll(List<CacheKey> cacheKeys, Class resultClass, boolean isArray, Codec codec) {
+        int size = cacheKeys.size();
+        Object[] results = new Object[size];
+        List<Integer> misses = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            CacheKey cacheKey = cacheKeys.get(i);
+            Object cached = mMemoryCache.get(cacheKey.getMemoryKey(), resultClass, isArray, codec);
+            if (cached != null) {
+                onAccessed(cacheKey);
+                results[i] = cached;
+            } else {
+                misses.add(i);
+            }
+        }
+        if (misses.isEmpty()) {
+            return (List<R>) Arrays.asList(results);
+        }
+        List<String> memoryKeys = new ArrayList<>(misses.size());
+        for (int index : misses) {
+            memoryKeys.add(cacheKeys.get(index).getMemoryKey());
+        }
+        int[] stripes = mLock.stripesFor(memoryKeys);
+        mLock.lockRead(stripes);
         try {
-            String parameterJson = parameter == null ? "" : JSON.toJSONString(parameter);
-            cursor = db.rawQuery(CACHE_QUERY_SQL, new String[]{key, parameterJson});
-            int count = cursor.getCount();
-            if (count > 1) {
-                throw new IllegalStateException("Key '" + key + "' has more than one cache");
+            long now = System.currentTimeMillis();
+            // 同一个键可能出现多次
+            Map<Long, List<Integer>> queried = new LinkedHashMap<>();
+            for (int index : misses) {
+                CacheKey cacheKey = cacheKeys.get(index);
+                PendingWrite pending = getPending(cacheKey.getMemoryKey());
+                if (pending != null) {
+                    results[index] = pending.isStale(now) ? null : decodePending(pending, resultClass, isArray, codec);
+                    continue;
+                }
+                Object offHeap = getOffHeap(cacheKey, resultClass, isArray, codec);
+                if (offHeap != null) {
+                    results[index] = offHeap;
+                    continue;
+                }
+                List<Integer> indexes = queried.get(cacheKey.getFingerprint());
+                if (indexes == null) {
+                    indexes = new ArrayList<>(1);
+                    queried.put(cacheKey.getFingerprint(), indexes);
+                }
+                indexes.add(index);
+            }
+            if (!queried.isEmpty()) {
+                List<CacheRow> rows = mStore.getAll(new ArrayList<>(queried.keySet()), now);
+                for (CacheRow row : rows) {
+                    List<Integer> indexes = queried.get(row.getId());
+                    if (indexes == null || isStale(row.getSoftExpired(), now)) {
+                        continue;
+                    }
+                    for (int index : indexes) {
+                        try {
+                            results[index] = decodeRow(row, cacheKeys.get(index), resultClass, isArray, codec);
+                        } catch (Exception e) {
+                            e.printStackTrace();
+                        }
+                    }
+                }
+            }
+        } finally {
+            mLock.unlockRead(stripes);
+        }
+        for (int i = 0; i < size; i++) {
+            if (results[i] == NegativeCodec.ABSENT) {
+                results[i] = null;
             }
-            String resultJson = JSON.toJSONString(result);
+        }
+        return (List<R>) Arrays.asList(results);
+    }
 
-            long expired;
-            if (expire == 0) {
-                expired = 0;
-            } else {
-                Date now = new Date();
-                expired = now.getTime() + expire * 1000;
+    /**
+     * 从堆外缓存读取，命中时放入内存缓存。
+     */
+    protected Object getOffHeap(CacheKey cacheKey, Class resultClass, boolean isArray, Codec codec) {
+        OffHeapCache.Value value =
+                mOffHeapCache.get(cacheKey.getFingerprint(), cacheKey.getMemoryKey(), System.currentTimeMillis());
+        if (value == null) {
+            return null;
+        }
+        Object result = value.decode(resultClass, isArray, codec);
+        mMemoryCache.put(cacheKey.getMemoryKey(), value.getData(), value.getCodec(), value.getExpired(), value.getAlias(),
+                result, resultClass, isArray);
+        onAccessed(cacheKey);
+        return result;
+    }
+
+    protected PendingWrite getPending(String memoryKey) {
+        return mOperationQueue != null ? mOperationQueue.get(memoryKey) : null;
+    }
+
+    protected Object decodePending(PendingWrite pending, Class resultClass, boolean isArray, Codec codec) {
+        if (pending.isExpired(System.currentTimeMillis())) {
+            return null;
+        }
+        return selectCodec(pending.getCodec(), codec).decode(ByteBuffer.wrap(pending.getData()), resultClass, isArray);
+    }
+
+    /**
+     * 解码后端读出的一行缓存，没有变旧时放入内存缓存。
+     *
+     * @return 解码后的结果，指纹冲突或者没有结果时返回null
+     */
+    protected Object decodeRow(CacheRow row, CacheKey cacheKey, Class resultClass, boolean isArray, Codec codec)
+            throws IOException {
+        // 指纹冲突时主键相同但键不同，视为未命中
+        if (!cacheKey.getKey().equals(row.getKey()) || !cacheKey.getParameter().equals(row.getParameter())) {
+            return null;
+        }
+        ByteBuffer data;
+        SegmentStore.Pointer pointer = row.getPointer();
+        if (pointer != null) {
+            data = mSegmentStore.read(pointer.getSegment(), pointer.getOffset(), pointer.getLength());
+        } else {
+            if (row.getData() == null) {
+                return null;
             }
+            data = ByteBuffer.wrap(row.getData());
+        }
+        data = Compression.decompress(data, row.getCompression());
+        Codec decoder = codec != null && codec.getId() == row.getCodecId() ? codec : Codecs.get(row.getCodecId());
+        Object result = decoder.decode(data.duplicate(), resultClass, isArray);
+        if (!isStale(row.getSoftExpired(), System.currentTimeMillis())) {
+            long freshUntil = freshUntil(row.getExpired(), row.getSoftExpired());
+            mMemoryCache.put(cacheKey.getMemoryKey(), data, decoder, freshUntil, row.getAlias(), result, resultClass, isArray);
+            mOffHeapCache.put(cacheKey.getFingerprint(), cacheKey.getMemoryKey(), data, decoder, freshUntil, row.getAlias());
+        }
+        onAccessed(cacheKey);
+        return result;
+    }
 
-            ContentValues values = new ContentValues();
-            values.put(CacheStorageHelper.CacheTableColumn.RESULT, resultJson);
-            values.put(CacheStorageHelper.CacheTableColumn.EXPIRED, expired);
-            if (count == 0) {
-                values.put(CacheStorageHelper.CacheTableColumn.KEY, key);
-                values.put(CacheStorageHelper.CacheTableColumn.PARAMETER, parameterJson);
-                values.put(CacheStorageHelper.CacheTableColumn.ALIAS, alias);
-                return db.insert(CacheStorageHelper.TABLE_CACHE, null, values);
+    protected void onAccessed(CacheKey cacheKey) {
+        if (mDiskQuota != null) {
+            mDiskQuota.onAccessed(cacheKey.getFingerprint(), System.currentTimeMillis());
+        }
+    }
+
+    protected static boolean isStale(long softExpired, long now) {
+        return softExpired != 0 && now > softExpired;
+    }
+
+    /**
+     * 返回内存缓存和堆外缓存中保存到的时间，结果变旧后只从异步写队列或者后端读取。
+     */
+    protected static long freshUntil(long expired, long softExpired) {
+        return softExpired != 0 ? softExpired : expired;
+    }
+
+    /**
+     * 返回编码结果使用的编解码器，preferred与{@link CacheConfig#getCodec()}的编号相同时使用preferred，否则使用配置的编解码器。
+     * 没有指定编解码器的方法用它选择生成的序列化器，只有配置了{@link BinaryCodec}时才使用序列化器编码。
+     */
+    public Codec getCodec(Codec preferred) {
+        return selectCodec(mCodec, preferred);
+    }
+
+    /**
+     * 返回解码使用的编解码器，preferred与写入时的编解码器编号相同时优先使用preferred。
+     */
+    static Codec selectCodec(Codec stored, Codec preferred) {
+        return preferred != null && preferred.getId() == stored.getId() ? preferred : stored;
+    }
+
+    public void put(String key, Object parameter, Object result, int expire, String alias, String paramNames, Object... params) {
+        put(CacheKey.of(key, parameter), result, expire, alias, null, paramNames, params);
+    }
+
+    public void put(String key, Object parameter, Object result, int expire, String alias, Codec codec, String paramNames,
+                    Object... params) {
+        put(CacheKey.of(key, parameter), result, expire, alias, codec, paramNames, params);
+    }
+
+    /**
+     * 写缓存。
+     *
+     * @param codec 编码结果使用的编解码器，为null时使用{@link CacheConfig#getCodec()}
+     */
+    public void put(CacheKey cacheKey, Object result, int expire, String alias, Codec codec, String paramNames,
+                    Object... params) {
+        put(cacheKey, result, expire, 0, alias, codec, paramNames, params);
+    }
+
+    /**
+     * 写缓存，结果在expire秒后变旧，再过maxStale秒后过期。变旧的结果只能通过{@link #getObjectResult(CacheKey, Class, Codec)}
+     * 等方法读到。
+     *
+     * @param maxStale 变旧后仍然可以读到的秒数，expire为0时忽略
+     */
+    public void put(CacheKey cacheKey, Object result, int expire, int maxStale, String alias, Codec codec, String paramNames,
+                    Object... params) {
+        put(cacheKey, result, expire, maxStale, 0, alias, codec, paramNames, params);
+    }
+
+    /**
+     * 写缓存。结果为null、空列表或者空数组时是否定缓存，negativeExpire大于0时改为在negativeExpire秒后过期，并且不会变旧。
+     * 结果为null时保存为{@link NegativeCodec}编码的否定缓存，只能通过{@link #getObjectResult(CacheKey, Class, Codec)}
+     * 等方法与未命中区分。
+     *
+     * @param negativeExpire 否定缓存过期的秒数，0表示与其他结果相同
+     */
+    public void put(CacheKey cacheKey, Object result, int expire, int maxStale, int negativeExpire, String alias, Codec codec,
+                    String paramNames, Object... params) {
+        if (codec == null) {
+            codec = mCodec;
+        }
+        if (negativeExpire > 0 && isNegative(result)) {
+            expire = negativeExpire;
+            maxStale = 0;
+        }
+        if (result == null) {
+            codec = NegativeCodec.INSTANCE;
+        }
+        long expired = toExpired(expire);
+        long softExpired = 0;
+        if (expired != 0 && maxStale > 0) {
+            softExpired = expired;
+            expired += maxStale * 1000L;
+        }
+        PendingWrite write =
+                new PendingWrite(cacheKey, codec.encode(result), codec, expired, softExpired, alias, paramNames, params);
+        if (mOperationQueue != null) {
+            // 等待队列腾出空间时不能持有分段锁，否则同一分段的读写都会被阻塞
+            mOperationQueue.awaitCapacity(1);
+        }
+        int stripe = mLock.stripeFor(write.getMemoryKey());
+        mLock.lockWrite(stripe);
+        try {
+            if (mOperationQueue != null) {
+                mOperationQueue.enqueue(write);
             } else {
-                cursor.moveToFirst();
-                long cacheId = cursor.getLong(cursor.getColumnIndex(CacheStorageHelper.CacheTableColumn.ID));
-                db.update(CacheStorageHelper.TABLE_CACHE, values, CACHE_QUERY_WHERE_CLAUSE, new String[]{key, parameterJson});
-                return cacheId;
+                store(Collections.singletonList(write));
             }
+            putMemory(write);
         } finally {
-            if (cursor != null) {
-                cursor.close();
-            }
+            mLock.unlockWrite(stripe);
         }
     }
 
-    protected long storeAlias(SQLiteDatabase db, String alias, String key, String paramNames) {
-        Cursor cursor = null;
+    public void putAll(List<CacheKey> cacheKeys, List<?> results, int expire, String alias, Codec codec) {
+        putAll(cacheKeys, results, expire, alias, codec, null, null);
+    }
+
+    /**
+     * 批量写缓存，每个分段只加一次锁，没有启用异步写时在一个事务中写入。
+     *
+     * @param results 与cacheKeys位置对应的结果
+     * @param params  与cacheKeys位置对应的索引参数，可以为null
+     */
+    public void putAll(List<CacheKey> cacheKeys, List<?> results, int expire, String alias, Codec codec, String paramNames,
+                       List<Object[]> params) {
+        int size = cacheKeys.size();
+        if (results.size() != size || (params != null && params.size() != size)) {
+            throw new IllegalArgumentException("Sizes of 'cacheKeys', 'results' and 'params' should be equal");
+        }
+        if (codec == null) {
+            codec = mCodec;
+        }
+        long expired = toExpired(expire);
+        List<PendingWrite> writes = new ArrayList<>(size);
+        List<String> memoryKeys = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Object result = results.get(i);
+            Codec encoder = result != null ? codec : NegativeCodec.INSTANCE;
+            PendingWrite write = new PendingWrite(cacheKeys.get(i), encoder.encode(result), encoder, expired, 0, alias,
+                    paramNames, params != null ? params.get(i) : new Object[0]);
+            writes.add(write);
+            memoryKeys.add(write.getMemoryKey());
+        }
+        if (mOperationQueue != null) {
+            mOperationQueue.awaitCapacity(writes.size());
+        }
+        int[] stripes = mLock.stripesFor(memoryKeys);
+        mLock.lockWrite(stripes);
         try {
-            cursor = db.rawQuery(ALIAS_QUERY_SQL, new String[]{alias, key});
-            int count = cursor.getCount();
-            if (count > 1) {
-                throw new IllegalStateException("alias duplicated");
-            } else if (count == 1) {
-                cursor.moveToFirst();
-                return cursor.getLong(cursor.getColumnIndex(CacheStorageHelper.AliasTableColumn.ID));
+            if (mOperationQueue != null) {
+                for (PendingWrite write : writes) {
+                    mOperationQueue.enqueue(write);
+                }
             } else {
-                ContentValues values = new ContentValues();
-                values.put(CacheStorageHelper.AliasTableColumn.ALIAS, alias);
-                values.put(CacheStorageHelper.AliasTableColumn.KEY, key);
-                values.put(CacheStorageHelper.AliasTableColumn.PARAM_NAMES, paramNames);
-                return db.insert(CacheStorageHelper.TABLE_ALIAS, null, values);
+                store(writes);
             }
-        } finally {
-            if (cursor != null) {
-                cursor.close();
+            for (PendingWrite write : writes) {
+                putMemory(write);
             }
+        } finally {
+            mLock.unlockWrite(stripes);
+        }
+    }
+
+    /**
+     * 结果为null、空列表或者空数组时返回true。
+     */
+    protected static boolean isNegative(Object result) {
+        if (result == null) {
+            return true;
+        } else if (result instanceof Collection) {
+            return ((Collection) result).isEmpty();
+        } else if (result.getClass().isArray()) {
+            return Array.getLength(result) == 0;
         }
+        return false;
     }
 
-    protected void storeParams(SQLiteDatabase db, long cacheId, long aliasId, Object... params) {
-        Cursor cursor = null;
+    protected static long toExpired(int expire) {
+        if (expire == 0) {
+            return 0;
+        } else {
+            Date now = new Date();
+            return now.getTime() + expire * 1000L;
+        }
+    }
+
+    protected void putMemory(PendingWrite write) {
+        long freshUntil = freshUntil(write.getExpired(), write.getSoftExpired());
+        mMemoryCache.put(write.getMemoryKey(), ByteBuffer.wrap(write.getData()), write.getCodec(), freshUntil,
+                write.getAlias(), null, null, false);
+        mOffHeapCache.put(write.getCacheKey().getFingerprint(), write.getMemoryKey(), ByteBuffer.wrap(write.getData()),
+                write.getCodec(), freshUntil, write.getAlias());
+    }
+
+    /**
+     * 在一个事务中写入一批缓存。超过阈值的结果先追加到段文件，事务提交前把段文件写入存储设备，提交后释放追加的位置。
+     */
+    protected void store(List<PendingWrite> writes) {
+        List<SegmentStore.Pointer> appended = new ArrayList<>();
         try {
-            cursor = db.rawQuery(PARAMS_QUERY_SQL, new String[]{String.valueOf(cacheId)});
-            int count = cursor.getCount();
-            if (count > 1) {
-                throw new IllegalStateException("params duplicated");
+            store(writes, appended);
+        } finally {
+            for (SegmentStore.Pointer pointer : appended) {
+                mSegmentStore.release(pointer);
             }
-            if (params.length > 0) {
-                if (params.length > CacheStorageHelper.PARAMS_MAX_COLUMN) {
-                    throw new IllegalArgumentException(
-                            "Size of 'params' should not greater than " + CacheStorageHelper.PARAMS_MAX_COLUMN);
-                }
-                ContentValues paramsValues = new ContentValues();
-                for (int i = 0; i < params.length; i++) {
-                    String text = String.valueOf(params[i]);
-                    paramsValues.put(CacheStorageHelper.ParamsTableColumn.PARAM + i, text);
+        }
+        if (mSegmentStore.isCollectPending()) {
+            mSegmentStore.collect(mStore);
+        }
+    }
+
+    protected void store(List<PendingWrite> writes, List<SegmentStore.Pointer> appended) {
+        long storedSize = 0;
+        long now = System.currentTimeMillis();
+        List<CacheRow> rows = new ArrayList<>(writes.size());
+        for (PendingWrite write : writes) {
+            CacheKey cacheKey = write.getCacheKey();
+            byte[] data = write.getData();
+            int compression = Compression.NONE;
+            if (Compression.shouldCompress(data, mCompressionThreshold)) {
+                byte[] compressed = Compression.deflate(data);
+                if (compressed != null) {
+                    data = compressed;
+                    compression = Compression.DEFLATE;
                 }
-                if (count == 0) {
-                    paramsValues.put(CacheStorageHelper.ParamsTableColumn.CACHE_ID, cacheId);
-                    paramsValues.put(CacheStorageHelper.ParamsTableColumn.ALIAS_ID, aliasId);
-                    db.insert(CacheStorageHelper.TABLE_PARAMS, null, paramsValues);
-                } else {
-                    db.update(CacheStorageHelper.TABLE_PARAMS, paramsValues, PARAMS_QUERY_WHERE_CLAUSE,
-                            new String[]{String.valueOf(cacheId)});
+            }
+            SegmentStore.Pointer pointer = null;
+            if (data != null && mSegmentThreshold >= 0 && data.length >= mSegmentThreshold) {
+                try {
+                    pointer = mSegmentStore.append(data);
+                    appended.add(pointer);
+                    data = null;
+                } catch (IOException e) {
+                    // 段文件不可用时仍然保存在数据库中
+                    e.printStackTrace();
                 }
             }
-        } finally {
-            if (cursor != null) {
-                cursor.close();
+            long size = (data != null ? data.length : pointer != null ? pointer.getLength() : 0) +
+                    cacheKey.getKey().length() + cacheKey.getParameter().length();
+            storedSize += size;
+            String[] paramNames = null;
+            if (!isEmpty(write.getAlias()) && !isEmpty(write.getParamNames())) {
+                paramNames = write.getParamNames().split(",");
+            }
+            rows.add(new CacheRow(cacheKey.getFingerprint(), cacheKey.getKey(), cacheKey.getParameter(), data, pointer,
+                    write.getCodec().getId(), compression, write.getAlias(), write.getExpired(), write.getSoftExpired())
+                    .setUsage(size, now).setParams(paramNames, write.getParams()));
+        }
+        if (!appended.isEmpty()) {
+            try {
+                mSegmentStore.sync();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
             }
         }
+        mStore.store(rows);
+        if (mDiskQuota != null) {
+            mDiskQuota.onStored(storedSize);
+        }
+    }
+
+    /**
+     * 在后台线程中回收和合并段文件。
+     */
+    protected void compactSegments() {
+        try {
+            mSegmentStore.compact(mStore);
+        } catch (IOException e) {
+            // 留到下次清理或者淘汰时再合并
+            e.printStackTrace();
+        }
     }
 
     public void remove(String alias) {
-        synchronized (this) {
-            if (TextUtils.isEmpty(alias)) {
-                return;
-            }
-            SQLiteDatabase db = mStorageHelper.getWritableDatabase();
-            db.delete(CacheStorageHelper.TABLE_CACHE, CACHE_REMOVE_WHERE_CLAUSE, new String[]{alias});
-            mStorageHelper.close();
+        if (isEmpty(alias)) {
+            return;
+        }
+        mLock.lockAll();
+        try {
+            flush();
+            mStore.remove(alias);
+            mMemoryCache.removeAlias(alias);
+            mOffHeapCache.removeAlias(alias);
+            mSegmentStore.requestCollect();
+        } finally {
+            mLock.unlockAll();
         }
+        mSegmentStore.collect(mStore);
     }
 
+    /**
+     * 删除alias下索引参数paramName与value比较成立的缓存。
+     *
+     * @param compare SQL比较运算符，=、==、!=、<>、<、<=、>或>=，索引参数保存为字符串，按字符串比较
+     */
     public void remove(String alias, String paramName, String compare, Object value) {
-        synchronized (this) {
-            SQLiteDatabase db = mStorageHelper.getWritableDatabase();
-            db.beginTransaction();
-            Cursor cursor = null;
-            try {
-                cursor = db.rawQuery(ALIAS_QUERY_SQL_2, new String[]{alias});
-                int count = cursor.getCount();
-                if (count == 0) {
-                    return;
-                }
-                cursor.moveToFirst();
-                while (!cursor.isAfterLast()) {
-                    long aliasId = cursor.getLong(cursor.getColumnIndex(CacheStorageHelper.AliasTableColumn.ID));
-                    String paramNames = cursor.getString(cursor.getColumnIndex(CacheStorageHelper.AliasTableColumn.PARAM_NAMES));
-                    if (!TextUtils.isEmpty(paramNames)) {
-                        String[] names = paramNames.split(",");
-                        for (int i = 0; i < names.length; i++) {
-                            String name = names[i];
-                            if (name.equals(paramName)) {
-                                removeCache(db, aliasId, i, compare, value);
-                                break;
-                            }
-                        }
-                    }
-                    cursor.moveToNext();
-                }
-                db.setTransactionSuccessful();
-            } finally {
-                if (cursor != null) {
-                    cursor.close();
-                }
-                db.endTransaction();
-            }
-            mStorageHelper.close();
-        }
-    }
-
-    protected void removeCache(SQLiteDatabase db, long aliasId, int paramIndex, String compare, Object value) {
-        StringBuilder sqlBuilder = new StringBuilder();
-        sqlBuilder.append("DELETE FROM ").append(CacheStorageHelper.TABLE_CACHE).append(" WHERE ")
-                .append(CacheStorageHelper.CacheTableColumn.ID).append(" IN (SELECT ");
-        sqlBuilder.append(CacheStorageHelper.CacheTableColumn.ID).append(" FROM ").append(CacheStorageHelper.TABLE_CACHE)
-                .append(" JOIN ").append(CacheStorageHelper.TABLE_PARAMS).append(" ON ");
-        sqlBuilder.append(CacheStorageHelper.TABLE_CACHE).append(".").append(CacheStorageHelper.CacheTableColumn.ID)
-                .append(" =" + " ").append(CacheStorageHelper.TABLE_PARAMS).append(".")
-                .append(CacheStorageHelper.ParamsTableColumn.CACHE_ID).append(" WHERE ");
-        sqlBuilder.append(CacheStorageHelper.TABLE_PARAMS).append(".").append(CacheStorageHelper.ParamsTableColumn.ALIAS_ID)
-                .append(" = ? AND ");
-        sqlBuilder.append(CacheStorageHelper.TABLE_PARAMS).append(".").append(CacheStorageHelper.ParamsTableColumn.PARAM)
-                .append(paramIndex).append(" ").append(compare).append(" ?)");
-        db.execSQL(sqlBuilder.toString(), new Object[]{aliasId, value});
-
-        sqlBuilder = new StringBuilder();
-        sqlBuilder.append("DELETE FROM ").append(CacheStorageHelper.TABLE_PARAMS).append(" WHERE ")
-                .append(CacheStorageHelper.ParamsTableColumn.CACHE_ID).append(" IN (SELECT ");
-        sqlBuilder.append(CacheStorageHelper.ParamsTableColumn.CACHE_ID).append(" FROM ").append(CacheStorageHelper.TABLE_PARAMS)
-                .append(" LEFT JOIN ").append(CacheStorageHelper.TABLE_CACHE).append(" ON ");
-        sqlBuilder.append(CacheStorageHelper.TABLE_PARAMS).append(".").append(CacheStorageHelper.ParamsTableColumn.CACHE_ID)
-                .append(" =" + " ").append(CacheStorageHelper.TABLE_CACHE).append(".")
-                .append(CacheStorageHelper.CacheTableColumn.ID).append(" WHERE ");
-        sqlBuilder.append(CacheStorageHelper.TABLE_CACHE).append(".").append(CacheStorageHelper.CacheTableColumn.ID)
-                .append(" IS NULL)");
-        db.execSQL(sqlBuilder.toString());
+        if (isEmpty(alias)) {
+            return;
+        }
+        mLock.lockAll();
+        try {
+            // 内存缓存中没有保存索引参数，保守地使整个alias失效
+            mMemoryCache.removeAlias(alias);
+            mOffHeapCache.removeAlias(alias);
+            flush();
+            mStore.remove(alias, paramName, compare, value);
+            mSegmentStore.requestCollect();
+        } finally {
+            mLock.unlockAll();
+        }
+        mSegmentStore.collect(mStore);
+    }
+
+    protected static boolean isEmpty(String str) {
+        return str == null || str.length() == 0;
     }
 }
@@ -1,6 +1,7 @@
 package me.allenzjl.domaincache;
 
 import android.content.Context;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 
@@ -9,58 +10,345 @@ import android.database.sqlite.SQLiteOpenHelper;
  */
 public class CacheStorageHelper extends SQLiteOpenHelper {
 
-    public static final int DB_VERSION = 2;
+    public static final int DB_VERSION = 11;
 
     public static final String DB_NAME = "DOMAIN_CACHE.db";
 
     public static final String TABLE_CACHE = "CACHE";
 
+    /**
+     * 版本9之前保存别名和索引参数名，已经删除。
+     */
     public static final String TABLE_ALIAS = "ALIAS";
 
     public static final String TABLE_PARAMS = "PARAMS";
 
+    /**
+     * 版本9之前PARAMS表的参数列数。
+     */
     public static final int PARAMS_MAX_COLUMN = 20;
 
+    public static final String TRIGGER_CACHE_DELETE = "CACHE_DELETE_TRIGGER";
+
+    protected SQLiteDatabase mDatabase;
+
+    protected CacheStatements mStatements;
 
     public CacheStorageHelper(Context context) {
         super(context, DB_NAME, null, DB_VERSION);
     }
 
+    /**
+     * 打开一个长期持有的数据库连接，并启用预写日志（WAL），使读操作可以和唯一的写操作并发执行。
+     * 连接在{@link #shutdown()}之前一直保持打开。
+     *
+     * @return 数据库
+     */
+    public synchronized SQLiteDatabase open() {
+        if (mDatabase == null || !mDatabase.isOpen()) {
+            SQLiteDatabase db = getWritableDatabase();
+            db.enableWriteAheadLogging();
+            mDatabase = db;
+            mStatements = new CacheStatements(db);
+        }
+        return mDatabase;
+    }
+
+    /**
+     * 返回当前连接上的预编译语句，只能在写事务中使用。
+     */
+    public synchronized CacheStatements getStatements() {
+        open();
+        return mStatements;
+    }
+
+    /**
+     * 关闭{@link #open()}打开的数据库连接。
+     */
+    public synchronized void shutdown() {
+        if (mDatabase != null) {
+            mStatements.close();
+            mStatements = null;
+            close();
+            mDatabase = null;
+        }
+    }
+
     @Override
     public void onCreate(SQLiteDatabase db) {
         createCacheTable(db);
-        createAliasTable(db);
         createParamsTable(db);
+        createTriggers(db);
+        createIndexes(db);
     }
 
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        throw new UnsupportedOperationException("Reinstall the app");
+        if (oldVersion < 2) {
+            // 版本1的表结构已无法迁移，缓存数据可以重建
+            dropTables(db);
+            onCreate(db);
+            return;
+        }
+        // 按版本号从小到大依次升级，每一步都基于上一个版本的表结构
+        if (oldVersion < 3) {
+            upgradeToVersion3(db);
+        }
+        if (oldVersion < 4) {
+            upgradeToVersion4(db);
+        }
+        if (oldVersion < 5) {
+            upgradeToVersion5(db);
+        }
+        if (oldVersion < 6) {
+            upgradeToVersion6(db);
+        }
+        if (oldVersion < 7) {
+            upgradeToVersion7(db);
+        }
+        if (oldVersion < 8) {
+            upgradeToVersion8(db);
+        }
+        if (oldVersion < 9) {
+            upgradeToVersion9(db);
+        }
+        if (oldVersion < 10) {
+            upgradeToVersion10(db);
+        }
+        if (oldVersion < 11) {
+            upgradeToVersion11(db);
+        }
+        createTriggers(db);
+        createIndexes(db);
+    }
+
+    /**
+     * 版本3把_expired改为INTEGER并建立索引。旧表改名后把数据复制到新表，每个缓存键只保留最新的一行。
+     */
+    protected void upgradeToVersion3(SQLiteDatabase db) {
+        renameTable(db, TABLE_CACHE);
+        renameTable(db, TABLE_ALIAS);
+        renameTable(db, TABLE_PARAMS);
+        createLegacyCacheTable(db, true);
+        createAliasTable(db);
+        createLegacyParamsTable(db);
+
+        String cacheColumns = CacheTableColumn.ID + ", " + CacheTableColumn.KEY + ", " + CacheTableColumn.PARAMETER + ", " +
+                CacheTableColumn.RESULT + ", " + CacheTableColumn.ALIAS;
+        db.execSQL("INSERT INTO " + TABLE_CACHE + " (" + cacheColumns + ", " + CacheTableColumn.EXPIRED + ") SELECT " +
+                cacheColumns + ", IFNULL(CAST(" + CacheTableColumn.EXPIRED + " AS INTEGER), 0) FROM " + oldTable(TABLE_CACHE) +
+                " WHERE " + CacheTableColumn.ID + " IN (SELECT MAX(" + CacheTableColumn.ID + ") FROM " + oldTable(TABLE_CACHE) +
+                " GROUP BY " + CacheTableColumn.KEY + ", " + CacheTableColumn.PARAMETER + ")");
+
+        String aliasColumns = AliasTableColumn.ID + ", " + AliasTableColumn.ALIAS + ", " + AliasTableColumn.KEY + ", " +
+                AliasTableColumn.PARAM_NAMES;
+        db.execSQL("INSERT INTO " + TABLE_ALIAS + " (" + aliasColumns + ") SELECT " + aliasColumns + " FROM " +
+                oldTable(TABLE_ALIAS) + " WHERE " + AliasTableColumn.ID + " IN (SELECT MIN(" + AliasTableColumn.ID + ") FROM " +
+                oldTable(TABLE_ALIAS) + " GROUP BY " + AliasTableColumn.ALIAS + ", " + AliasTableColumn.KEY + ")");
+
+        db.execSQL("INSERT INTO " + TABLE_PARAMS + " SELECT * FROM " + oldTable(TABLE_PARAMS) + " WHERE " +
+                ParamsTableColumn.CACHE_ID + " IN (SELECT " + CacheTableColumn.ID + " FROM " + TABLE_CACHE + ")");
+
+        db.execSQL("DROP TABLE " + oldTable(TABLE_CACHE));
+        db.execSQL("DROP TABLE " + oldTable(TABLE_ALIAS));
+        db.execSQL("DROP TABLE " + oldTable(TABLE_PARAMS));
+    }
+
+    /**
+     * 版本4用键的指纹作为CACHE的主键，需要为每一行重新计算_id，并同步更新PARAMS中的引用。
+     * 较早的版本3没有把_expired改为INTEGER，复制时同样转换为整数。
+     */
+    protected void upgradeToVersion4(SQLiteDatabase db) {
+        renameTable(db, TABLE_CACHE);
+        renameTable(db, TABLE_PARAMS);
+        createLegacyCacheTable(db, false);
+        createLegacyParamsTable(db);
+
+        StringBuilder paramsColumns = new StringBuilder(ParamsTableColumn.ALIAS_ID);
+        for (int i = 0; i < PARAMS_MAX_COLUMN; i++) {
+            paramsColumns.append(", ").append(ParamsTableColumn.PARAM).append(i);
+        }
+        String copyCacheSql = "INSERT OR REPLACE INTO " + TABLE_CACHE + " (" + CacheTableColumn.ID + ", " + CacheTableColumn.KEY +
+                ", " + CacheTableColumn.PARAMETER + ", " + CacheTableColumn.RESULT + ", " + CacheTableColumn.ALIAS + ", " +
+                CacheTableColumn.EXPIRED + ") SELECT ?, " + CacheTableColumn.KEY + ", " + CacheTableColumn.PARAMETER + ", " +
+                CacheTableColumn.RESULT + ", " + CacheTableColumn.ALIAS + ", IFNULL(CAST(" + CacheTableColumn.EXPIRED +
+                " AS INTEGER), 0) FROM " + oldTable(TABLE_CACHE) + " WHERE " + CacheTableColumn.ID + " = ?";
+        String copyParamsSql = "INSERT OR REPLACE INTO " + TABLE_PARAMS + " (" + ParamsTableColumn.CACHE_ID + ", " +
+                paramsColumns + ") SELECT ?, " + paramsColumns + " FROM " + oldTable(TABLE_PARAMS) + " WHERE " +
+                ParamsTableColumn.CACHE_ID + " = ?";
+        Cursor cursor = db.rawQuery("SELECT " + CacheTableColumn.ID + ", " + CacheTableColumn.KEY + ", " +
+                CacheTableColumn.PARAMETER + " FROM " + oldTable(TABLE_CACHE), null);
+        try {
+            while (cursor.moveToNext()) {
+                long oldId = cursor.getLong(0);
+                long newId = Fingerprint.of(cursor.getString(1), cursor.getString(2));
+                db.execSQL(copyCacheSql, new Object[]{newId, oldId});
+                db.execSQL(copyParamsSql, new Object[]{newId, oldId});
+            }
+        } finally {
+            cursor.close();
+        }
+
+        db.execSQL("DROP TABLE " + oldTable(TABLE_CACHE));
+        db.execSQL("DROP TABLE " + oldTable(TABLE_PARAMS));
+    }
+
+    /**
+     * 版本5记录每条缓存使用的编解码器。已有的缓存都是JSON文本，_codec默认为{@link JsonCodec#ID}，按BLOB读取时就是UTF-8编码的文本。
+     */
+    protected void upgradeToVersion5(SQLiteDatabase db) {
+        db.execSQL("ALTER TABLE " + TABLE_CACHE + " ADD COLUMN " + CacheTableColumn.CODEC + " INTEGER NOT NULL DEFAULT " +
+                JsonCodec.ID);
+    }
+
+    /**
+     * 版本6记录每条缓存的压缩方式，已有的缓存都没有压缩。
+     */
+    protected void upgradeToVersion6(SQLiteDatabase db) {
+        db.execSQL("ALTER TABLE " + TABLE_CACHE + " ADD COLUMN " + CacheTableColumn.COMPRESSION + " INTEGER NOT NULL DEFAULT " +
+                Compression.NONE);
+    }
+
+    /**
+     * 版本7增加保存在段文件中的结果的位置，已有的缓存都保存在_result中，位置为NULL。
+     */
+    protected void upgradeToVersion7(SQLiteDatabase db) {
+        db.execSQL("ALTER TABLE " + TABLE_CACHE + " ADD COLUMN " + CacheTableColumn.SEGMENT + " INTEGER");
+        db.execSQL("ALTER TABLE " + TABLE_CACHE + " ADD COLUMN " + CacheTableColumn.SEGMENT_OFFSET + " INTEGER");
+        db.execSQL("ALTER TABLE " + TABLE_CACHE + " ADD COLUMN " + CacheTableColumn.SEGMENT_LENGTH + " INTEGER");
+    }
+
+    /**
+     * 版本8记录每条缓存占用的大小和最近访问的时间，用于按配额淘汰。已有缓存的访问时间为0，最先被淘汰。
+     */
+    protected void upgradeToVersion8(SQLiteDatabase db) {
+        db.execSQL("ALTER TABLE " + TABLE_CACHE + " ADD COLUMN " + CacheTableColumn.SIZE + " INTEGER NOT NULL DEFAULT 0");
+        db.execSQL("ALTER TABLE " + TABLE_CACHE + " ADD COLUMN " + CacheTableColumn.ACCESSED + " INTEGER NOT NULL DEFAULT 0");
+        updateSizes(db);
+    }
+
+    /**
+     * 为版本8之前写入的缓存计算占用的大小，否则按配额淘汰时统计不到这些缓存。
+     */
+    protected void updateSizes(SQLiteDatabase db) {
+        db.execSQL("UPDATE " + TABLE_CACHE + " SET " + CacheTableColumn.SIZE + " = IFNULL(LENGTH(" + CacheTableColumn.RESULT +
+                "), 0) + IFNULL(" + CacheTableColumn.SEGMENT_LENGTH + ", 0) + LENGTH(" + CacheTableColumn.KEY + ") + LENGTH(" +
+                CacheTableColumn.PARAMETER + ")");
+    }
+
+    /**
+     * 版本9把索引参数改为每个参数一行，记录缓存的别名和参数名，按参数删除缓存时不再需要ALIAS表。
+     */
+    protected void upgradeToVersion9(SQLiteDatabase db) {
+        renameTable(db, TABLE_PARAMS);
+        createParamsTable(db);
+
+        Cursor cursor = db.rawQuery("SELECT " + AliasTableColumn.ID + ", " + AliasTableColumn.ALIAS + ", " +
+                AliasTableColumn.PARAM_NAMES + " FROM " + TABLE_ALIAS, null);
+        try {
+            while (cursor.moveToNext()) {
+                String paramNames = cursor.getString(2);
+                if (paramNames == null || paramNames.length() == 0) {
+                    continue;
+                }
+                String[] names = paramNames.split(",");
+                for (int i = 0; i < names.length && i < PARAMS_MAX_COLUMN; i++) {
+                    db.execSQL("INSERT OR REPLACE INTO " + TABLE_PARAMS + " (" + ParamsTableColumn.CACHE_ID + ", " +
+                            ParamsTableColumn.ALIAS + ", " + ParamsTableColumn.NAME + ", " + ParamsTableColumn.VALUE + ") SELECT " +
+                            ParamsTableColumn.CACHE_ID + ", ?, ?, " + ParamsTableColumn.PARAM + i + " FROM " +
+                            oldTable(TABLE_PARAMS) + " WHERE " + ParamsTableColumn.ALIAS_ID + " = ? AND " +
+                            ParamsTableColumn.PARAM + i + " IS NOT NULL", new Object[]{cursor.getString(1), names[i], cursor.getLong(0)});
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+
+        db.execSQL("DROP TABLE " + oldTable(TABLE_PARAMS));
+        db.execSQL("DROP TABLE " + TABLE_ALIAS);
+    }
+
+    /**
+     * 版本10记录结果变旧的时间，用于{@code STALE_WHILE_REVALIDATE}，已有的缓存为0，没有单独的变旧时间。
+     */
+    protected void upgradeToVersion10(SQLiteDatabase db) {
+        db.execSQL("ALTER TABLE " + TABLE_CACHE + " ADD COLUMN " + CacheTableColumn.SOFT_EXPIRED + " INTEGER NOT NULL DEFAULT 0");
+    }
+
+    /**
+     * 版本3曾经有两种表结构，较早的版本3只建立了唯一索引，_expired仍是TEXT。从这样的数据库升级上来时，
+     * 把仍然不是整数的过期时间转换为整数，其他变化已经在重建CACHE表和删除ALIAS表时完成。
+     */
+    protected void upgradeToVersion11(SQLiteDatabase db) {
+        db.execSQL("UPDATE " + TABLE_CACHE + " SET " + CacheTableColumn.EXPIRED + " = IFNULL(CAST(" + CacheTableColumn.EXPIRED +
+                " AS INTEGER), 0) WHERE TYPEOF(" + CacheTableColumn.EXPIRED + ") != 'integer'");
+    }
+
+    protected static String oldTable(String table) {
+        return table + "_OLD";
+    }
+
+    protected void renameTable(SQLiteDatabase db, String table) {
+        db.execSQL("DROP TABLE IF EXISTS " + oldTable(table));
+        db.execSQL("ALTER TABLE " + table + " RENAME TO " + oldTable(table));
+    }
+
+    protected void dropTables(SQLiteDatabase db) {
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_CACHE);
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_ALIAS);
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_PARAMS);
+    }
+
+    protected void createIndexes(SQLiteDatabase db) {
+        for (String sql : CacheSql.createIndexes()) {
+            db.execSQL(sql);
+        }
+    }
+
+    protected void createTriggers(SQLiteDatabase db) {
+        db.execSQL(CacheSql.createCacheDeleteTrigger());
     }
 
     protected void createCacheTable(SQLiteDatabase db) {
+        db.execSQL(CacheSql.createCacheTable());
+    }
+
+    /**
+     * 创建版本5之前的CACHE表，只在升级时使用。版本4开始_id是键的指纹，不再自增。
+     */
+    protected void createLegacyCacheTable(SQLiteDatabase db, boolean autoIncrement) {
         StringBuilder sqlBuilder = new StringBuilder();
         sqlBuilder.append("CREATE TABLE IF NOT EXISTS ").append(TABLE_CACHE).append(" (");
-        sqlBuilder.append(CacheTableColumn.ID).append(" INTEGER PRIMARY KEY AUTOINCREMENT, ");
-        sqlBuilder.append(CacheTableColumn.KEY).append(" TEXT, ");
-        sqlBuilder.append(CacheTableColumn.PARAMETER).append(" TEXT, ");
+        sqlBuilder.append(CacheTableColumn.ID).append(" INTEGER PRIMARY KEY").append(autoIncrement ? " AUTOINCREMENT, " : ", ");
+        sqlBuilder.append(CacheTableColumn.KEY).append(" TEXT NOT NULL, ");
+        sqlBuilder.append(CacheTableColumn.PARAMETER).append(" TEXT NOT NULL, ");
         sqlBuilder.append(CacheTableColumn.RESULT).append(" TEXT, ");
         sqlBuilder.append(CacheTableColumn.ALIAS).append(" TEXT, ");
-        sqlBuilder.append(CacheTableColumn.EXPIRED).append(" TEXT);");
+        sqlBuilder.append(CacheTableColumn.EXPIRED).append(" INTEGER NOT NULL DEFAULT 0);");
         db.execSQL(sqlBuilder.toString());
     }
 
+    /**
+     * 创建版本9之前的ALIAS表，只在升级时使用。
+     */
     protected void createAliasTable(SQLiteDatabase db) {
         StringBuilder sqlBuilder = new StringBuilder();
         sqlBuilder.append("CREATE TABLE IF NOT EXISTS ").append(TABLE_ALIAS).append(" (");
         sqlBuilder.append(AliasTableColumn.ID).append(" INTEGER PRIMARY KEY AUTOINCREMENT, ");
-        sqlBuilder.append(AliasTableColumn.ALIAS).append(" TEXT, ");
-        sqlBuilder.append(AliasTableColumn.KEY).append(" TEXT, ");
+        sqlBuilder.append(AliasTableColumn.ALIAS).append(" TEXT NOT NULL, ");
+        sqlBuilder.append(AliasTableColumn.KEY).append(" TEXT NOT NULL, ");
         sqlBuilder.append(AliasTableColumn.PARAM_NAMES).append(" TEXT);");
         db.execSQL(sqlBuilder.toString());
     }
 
     protected void createParamsTable(SQLiteDatabase db) {
+        db.execSQL(CacheSql.createParamsTable());
+    }
+
+    /**
+     * 创建版本9之前的PARAMS表，只在升级时使用。
+     */
+    protected void createLegacyParamsTable(SQLiteDatabase db) {
         StringBuilder sqlBuilder = new StringBuilder();
         sqlBuilder.append("CREATE TABLE IF NOT EXISTS ").append(TABLE_PARAMS).append(" (");
         sqlBuilder.append(ParamsTableColumn.CACHE_ID).append(" INTEGER PRIMARY KEY, ");
@@ -88,8 +376,27 @@ public class CacheStorageHelper extends SQLiteOpenHelper {
         public static final String ALIAS = "_alias";
 
         public static final String EXPIRED = "_expired";
+
+        public static final String CODEC = "_codec";
+
+        public static final String COMPRESSION = "_compression";
+
+        public static final String SEGMENT = "_segment";
+
+        public static final String SEGMENT_OFFSET = "_segment_offset";
+
+        public static final String SEGMENT_LENGTH = "_segment_length";
+
+        public static final String SIZE = "_size";
+
+        public static final String ACCESSED = "_accessed";
+
+        public static final String SOFT_EXPIRED = "_soft_expired";
     }
 
+    /**
+     * 版本9之前ALIAS表的列。
+     */
     public static class AliasTableColumn {
         public static final String ID = "_id";
 
@@ -103,8 +410,20 @@ public class CacheStorageHelper extends SQLiteOpenHelper {
     public static class ParamsTableColumn {
         public static final String CACHE_ID = "_cache_id";
 
+        public static final String ALIAS = "_alias";
+
+        public static final String NAME = "_name";
+
+        public static final String VALUE = "_value";
+
+        /**
+         * 版本9之前的列。
+         */
         public static final String ALIAS_ID = "_alias_id";
 
+        /**
+         * 版本9之前的列，后面接参数的序号。
+         */
         public static final String PARAM = "_param";
     }
 }
@@ -0,0 +1,105 @@
+package me.allenzjl.domaincache;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link CacheStorage}保存缓存的后端。
+ * <p>
+ * 内存缓存、加锁、异步写、编解码、压缩和段文件都由{@link CacheStorage}处理，后端只负责按行读写CACHE和PARAMS表。
+ * Android上默认使用{@link SQLiteCacheStore}，写多的场景可以使用只追加写的{@link LogCacheStore}，
+ * 在JVM上运行测试和基准测试时可以使用{@link JdbcCacheStore}或{@link LogCacheStore}。
+ * 实现需要是线程安全的。
+ */
+public interface CacheStore {
+
+    /**
+     * 打开后端，可以重复调用。读写之前没有打开时自动打开。
+     */
+    void open();
+
+    /**
+     * 关闭后端，之后再读写会重新打开。
+     */
+    void close();
+
+    /**
+     * 返回保存{@link SegmentStore}段文件的目录。
+     */
+    File getSegmentDirectory();
+
+    /**
+     * 按主键读取一行未过期的缓存。
+     *
+     * @return 没有时返回null
+     */
+    CacheRow get(long id, long now);
+
+    /**
+     * 按一组主键读取未过期的缓存，返回的顺序不确定，没有的主键不返回。
+     */
+    List<CacheRow> getAll(List<Long> ids, long now);
+
+    /**
+     * 在一个事务中插入或替换一批缓存，同时替换它们的索引参数。
+     */
+    void store(List<CacheRow> rows);
+
+    /**
+     * 删除alias下的所有缓存。
+     */
+    void remove(String alias);
+
+    /**
+     * 删除alias下索引参数paramName与value比较成立的缓存。
+     *
+     * @param compare SQL比较运算符，=、==、!=、<>、<、<=、>或>=，索引参数保存为字符串，按字符串比较
+     */
+    void remove(String alias, String paramName, String compare, Object value);
+
+    /**
+     * 在一个事务中删除一批过期的缓存。
+     *
+     * @return 删除的条数
+     */
+    int sweepExpired(long now, int batchSize);
+
+    /**
+     * 在一个事务中删除一批最近最少访问的缓存。
+     *
+     * @return 删除的缓存的总大小，没有可以删除的缓存时返回0
+     */
+    long evictLeastAccessed(int batchSize);
+
+    /**
+     * @return 所有缓存的总大小
+     */
+    long queryTotalSize();
+
+    /**
+     * 在一个事务中更新缓存的访问时间。
+     *
+     * @param accesses 缓存主键到访问时间的映射
+     */
+    void updateAccessed(Map<Long, Long> accesses);
+
+    /**
+     * 扫描所有缓存引用的段号。
+     *
+     * @return 段号到其中仍被引用的字节数的映射
+     */
+    Map<Integer, Long> scanSegments();
+
+    /**
+     * 查找结果保存在指定段文件中的缓存，只需要返回主键和位置。
+     */
+    List<CacheRow> getSegmentRows(int segment);
+
+    /**
+     * 把缓存的结果移到段文件中新的位置，缓存已经不再引用原来的位置时不修改。
+     *
+     * @return 是否修改
+     */
+    boolean relocate(long id, SegmentStore.Pointer from, SegmentStore.Pointer to);
+}
@@ -0,0 +1,34 @@
+package me.allenzjl.domaincache;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 缓存结果的编解码器。
+ * <p>
+ * 每条缓存都记录了写入时使用的编解码器的{@link #getId()}，读取时用同一个编解码器解码，因此更换默认编解码器不影响已有的缓存。
+ * 自定义的编解码器需要通过{@link Codecs#register(Codec)}注册。
+ */
+public interface Codec {
+
+    /**
+     * 保存在数据库中的编号，注册后不能再改变。
+     */
+    int getId();
+
+    /**
+     * 在{@code @Cacheable(codec = ...)}中引用的名称。
+     */
+    String getName();
+
+    byte[] encode(Object value);
+
+    /**
+     * 解码缓存结果。
+     *
+     * @param data        编码后的数据，从当前位置读到limit
+     * @param resultClass 结果的类型，isArray为true时是元素的类型
+     * @param isArray     结果是否为列表
+     * @return 结果，isArray为true时返回{@link java.util.List}
+     */
+    Object decode(ByteBuffer data, Class resultClass, boolean isArray);
+}
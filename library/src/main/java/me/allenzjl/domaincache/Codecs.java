@@ -0,0 +1,52 @@
+package me.allenzjl.domaincache;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 编解码器的注册表，内置{@link JsonCodec}、{@link BinaryCodec}和保存否定缓存的{@link NegativeCodec}。
+ */
+public class Codecs {
+
+    private static final Map<Integer, Codec> sCodecsById = new ConcurrentHashMap<>();
+
+    private static final Map<String, Codec> sCodecsByName = new ConcurrentHashMap<>();
+
+    static {
+        register(JsonCodec.INSTANCE);
+        register(BinaryCodec.INSTANCE);
+        register(NegativeCodec.INSTANCE);
+    }
+
+    private Codecs() {
+    }
+
+    public static synchronized void register(Codec codec) {
+        Codec registered = sCodecsById.get(codec.getId());
+        if (registered != null && registered != codec) {
+            throw new IllegalArgumentException("Codec id " + codec.getId() + " is used by '" + registered.getName() + "'");
+        }
+        registered = sCodecsByName.get(codec.getName());
+        if (registered != null && registered != codec) {
+            throw new IllegalArgumentException("Codec name '" + codec.getName() + "' is used by id " + registered.getId());
+        }
+        sCodecsById.put(codec.getId(), codec);
+        sCodecsByName.put(codec.getName(), codec);
+    }
+
+    public static Codec get(int id) {
+        Codec codec = sCodecsById.get(id);
+        if (codec == null) {
+            throw new IllegalStateException("Codec of id " + id + " is not registered");
+        }
+        return codec;
+    }
+
+    public static Codec get(String name) {
+        Codec codec = sCodecsByName.get(name);
+        if (codec == null) {
+            throw new IllegalStateException("Codec '" + name + "' is not registered");
+        }
+        return codec;
+    }
+}
@@ -0,0 +1,104 @@
+package me.allenzjl.domaincache;
+
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 缓存结果的压缩。压缩方式保存在CACHE表的_compression列中，读取时按它解压，对编解码器透明。
+ * <p>
+ * {@link #DEFLATE}的数据以4字节大端序的原始长度开头，后面是zlib格式的deflate数据。
+ */
+public class Compression {
+
+    public static final int NONE = 0;
+
+    public static final int DEFLATE = 1;
+
+    private Compression() {
+    }
+
+    /**
+     * 数据是否达到压缩的阈值。
+     *
+     * @param threshold 压缩的最小字节数，小于0时不压缩
+     */
+    public static boolean shouldCompress(byte[] data, int threshold) {
+        return data != null && threshold >= 0 && data.length >= threshold;
+    }
+
+    /**
+     * 压缩数据，压缩后没有变小时返回null。
+     */
+    public static byte[] deflate(byte[] data) {
+        if (data.length <= 4) {
+            return null;
+        }
+        Deflater deflater = new Deflater();
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            byte[] buffer = new byte[data.length];
+            buffer[0] = (byte) (data.length >>> 24);
+            buffer[1] = (byte) (data.length >>> 16);
+            buffer[2] = (byte) (data.length >>> 8);
+            buffer[3] = (byte) data.length;
+            int length = 4;
+            while (!deflater.finished()) {
+                if (length == buffer.length) {
+                    return null;
+                }
+                length += deflater.deflate(buffer, length, buffer.length - length);
+            }
+            byte[] result = new byte[length];
+            System.arraycopy(buffer, 0, result, 0, length);
+            return result;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * 按压缩方式解压数据，没有压缩时直接返回data。
+     */
+    public static ByteBuffer decompress(ByteBuffer data, int compression) {
+        switch (compression) {
+            case NONE:
+                return data;
+            case DEFLATE:
+                if (data.hasArray()) {
+                    return ByteBuffer.wrap(inflate(data.array(), data.arrayOffset() + data.position(), data.remaining()));
+                } else {
+                    byte[] bytes = new byte[data.remaining()];
+                    data.duplicate().get(bytes);
+                    return ByteBuffer.wrap(inflate(bytes, 0, bytes.length));
+                }
+            default:
+                throw new IllegalStateException("Unknown compression: " + compression);
+        }
+    }
+
+    protected static byte[] inflate(byte[] data, int offset, int count) {
+        int length = ((data[offset] & 0xFF) << 24) | ((data[offset + 1] & 0xFF) << 16) | ((data[offset + 2] & 0xFF) << 8) |
+                (data[offset + 3] & 0xFF);
+        byte[] result = new byte[length];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data, offset + 4, count - 4);
+            int position = 0;
+            while (position < length) {
+                int inflated = inflater.inflate(result, position, length - position);
+                if (inflated == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalStateException("Truncated compressed data");
+                }
+                position += inflated;
+            }
+            return result;
+        } catch (DataFormatException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package me.allenzjl.domaincache;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 数据库中缓存总大小的配额。
+ * <p>
+ * 写缓存时只累加估计的总大小，超过配额后由后台线程统计实际大小，并按最近最少访问的顺序分批删除缓存，
+ * 直到总大小降到配额的{@link #LOW_WATERMARK_PERCENT}%以下，读写缓存的线程不会因此阻塞。
+ * 读缓存时的访问时间先记录在内存中，由后台线程批量写入数据库。
+ */
+public class DiskQuota {
+
+    public static final long DEFAULT_QUOTA = 64 * 1024 * 1024;
+
+    public static final int LOW_WATERMARK_PERCENT = 90;
+
+    public static final int EVICT_BATCH_SIZE = 64;
+
+    /**
+     * 内存中记录的访问时间达到这个数量时提前写入数据库。
+     */
+    public static final int MAX_PENDING_ACCESSES = 512;
+
+    /**
+     * 在后台线程中访问数据库。
+     */
+    public interface Evictor {
+        /**
+         * 在一个事务中更新缓存的访问时间。
+         *
+         * @param accesses 缓存主键到访问时间的映射
+         */
+        void updateAccessed(Map<Long, Long> accesses);
+
+        /**
+         * @return 数据库中缓存的实际总大小
+         */
+        long queryTotalSize();
+
+        /**
+         * 在一个事务中删除一批最近最少访问的缓存。
+         *
+         * @return 删除的缓存的总大小，没有可以删除的缓存时返回0
+         */
+        long evict(int batchSize);
+
+        /**
+         * 一次淘汰结束后调用，只在删除了缓存时调用。
+         */
+        void onEvicted();
+    }
+
+    protected final Evictor mEvictor;
+
+    protected final long mQuota;
+
+    /**
+     * 估计的总大小，覆盖已有的缓存时会偏大，每次淘汰时校正，-1表示还没有统计。
+     */
+    protected final AtomicLong mTotalSize = new AtomicLong(-1);
+
+    protected final AtomicBoolean mScheduled = new AtomicBoolean();
+
+    protected final ConcurrentHashMap<Long, Long> mAccesses = new ConcurrentHashMap<>();
+
+    protected final ExecutorService mExecutor;
+
+    public DiskQuota(Evictor evictor, long quota) {
+        if (quota <= 0) {
+            throw new IllegalArgumentException("quota <= 0");
+        }
+        mEvictor = evictor;
+        mQuota = quota;
+        mExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "DomainCache-Evictor");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+    }
+
+    public long getQuota() {
+        return mQuota;
+    }
+
+    /**
+     * 记录写入的缓存大小，估计的总大小超过配额或者还没有统计时安排一次淘汰。
+     */
+    public void onStored(long size) {
+        long total = mTotalSize.get();
+        if (total >= 0) {
+            total = mTotalSize.addAndGet(size);
+        }
+        if (total < 0 || total > mQuota) {
+            schedule();
+        }
+    }
+
+    /**
+     * 记录缓存被读取的时间。
+     */
+    public void onAccessed(long cacheId, long now) {
+        mAccesses.put(cacheId, now);
+        if (mAccesses.size() >= MAX_PENDING_ACCESSES) {
+            schedule();
+        }
+    }
+
+    protected void schedule() {
+        if (mScheduled.compareAndSet(false, true)) {
+            mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    mScheduled.set(false);
+                    try {
+                        enforce();
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * 写入访问时间，总大小超过配额时淘汰缓存。
+     */
+    protected void enforce() {
+        flushAccesses();
+        long estimated = mTotalSize.get();
+        if (estimated >= 0 && estimated <= mQuota) {
+            return;
+        }
+        long total = mEvictor.queryTotalSize();
+        long target = mQuota / 100 * LOW_WATERMARK_PERCENT;
+        if (total > mQuota) {
+            boolean evicted = false;
+            while (total > target) {
+                long freed = mEvictor.evict(EVICT_BATCH_SIZE);
+                if (freed <= 0) {
+                    break;
+                }
+                evicted = true;
+                total -= freed;
+                // 两批之间让出数据库
+                Thread.yield();
+            }
+            if (evicted) {
+                mEvictor.onEvicted();
+            }
+        }
+        // 保留淘汰期间累加的大小
+        if (estimated < 0) {
+            mTotalSize.compareAndSet(-1, total);
+        } else {
+            mTotalSize.addAndGet(total - estimated);
+        }
+    }
+
+    protected void flushAccesses() {
+        if (mAccesses.isEmpty()) {
+            return;
+        }
+        Map<Long, Long> accesses = new HashMap<>();
+        for (Map.Entry<Long, Long> entry : mAccesses.entrySet()) {
+            accesses.put(entry.getKey(), entry.getValue());
+            // 期间再次访问的时间留到下一次写入
+            mAccesses.remove(entry.getKey(), entry.getValue());
+        }
+        mEvictor.updateAccessed(accesses);
+    }
+}
@@ -0,0 +1,112 @@
+package me.allenzjl.domaincache;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 定期删除过期缓存的后台任务。
+ * <p>
+ * 每次最多删除一批，每批使用单独的短事务，直到没有过期的缓存为止，避免长时间占用数据库的写锁。
+ */
+public class ExpirationSweeper {
+
+    public static final int DEFAULT_INTERVAL = 10 * 60;
+
+    public static final int DEFAULT_BATCH_SIZE = 256;
+
+    /**
+     * 在一个事务中删除一批过期的缓存。
+     */
+    public interface Sweeper {
+        /**
+         * @param now       当前时间
+         * @param batchSize 最多删除的条数
+         * @return 删除的条数
+         */
+        int sweep(long now, int batchSize);
+
+        /**
+         * 每次清理结束后调用，可以在这里回收删除的缓存占用的其他空间。
+         *
+         * @param total 这次删除的总条数
+         */
+        void onSwept(int total);
+    }
+
+    protected final Sweeper mSweeper;
+
+    protected final int mInterval;
+
+    protected final int mBatchSize;
+
+    protected ScheduledExecutorService mExecutor;
+
+    /**
+     * @param interval 两次清理之间的秒数
+     */
+    public ExpirationSweeper(Sweeper sweeper, int interval, int batchSize) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("interval <= 0");
+        }
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize <= 0");
+        }
+        mSweeper = sweeper;
+        mInterval = interval;
+        mBatchSize = batchSize;
+    }
+
+    public synchronized void start() {
+        if (mExecutor != null) {
+            return;
+        }
+        mExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "DomainCache-Sweeper");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+        mExecutor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                sweepAll();
+            }
+        }, mInterval, mInterval, TimeUnit.SECONDS);
+    }
+
+    public synchronized void stop() {
+        if (mExecutor != null) {
+            mExecutor.shutdownNow();
+            mExecutor = null;
+        }
+    }
+
+    /**
+     * 分批删除当前所有过期的缓存。
+     *
+     * @return 删除的条数
+     */
+    public int sweepAll() {
+        long now = System.currentTimeMillis();
+        int total = 0;
+        try {
+            int count;
+            do {
+                count = mSweeper.sweep(now, mBatchSize);
+                total += count;
+                // 两批之间让出数据库，读写缓存不用等到清理结束
+                Thread.yield();
+            } while (count >= mBatchSize && !Thread.currentThread().isInterrupted());
+            mSweeper.onSwept(total);
+        } catch (Exception e) {
+            // 抛出异常会取消之后的定时任务
+            e.printStackTrace();
+        }
+        return total;
+    }
+}
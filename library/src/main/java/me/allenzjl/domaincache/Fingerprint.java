@@ -0,0 +1,51 @@
+package me.allenzjl.domaincache;
+
+/**
+ * 计算缓存键的64位指纹，作为CACHE表的整数主键。
+ * <p>
+ * 使用FNV-1a逐字符累积，再经过一次雪崩混合使高低位分布均匀。指纹可能冲突，读取时需要比对完整的键。
+ */
+public class Fingerprint {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private static final char SEPARATOR = '\uFFFF';
+
+    private Fingerprint() {
+    }
+
+    public static long of(String key, String parameter) {
+        long h = FNV_OFFSET_BASIS;
+        h = update(h, key);
+        h = update(h, SEPARATOR);
+        h = update(h, parameter);
+        return mix(h);
+    }
+
+    static long update(long h, String text) {
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            h = update(h, text.charAt(i));
+        }
+        return h;
+    }
+
+    static long update(long h, char c) {
+        h ^= c & 0xff;
+        h *= FNV_PRIME;
+        h ^= c >>> 8;
+        h *= FNV_PRIME;
+        return h;
+    }
+
+    static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
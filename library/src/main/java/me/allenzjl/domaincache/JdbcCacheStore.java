@@ -0,0 +1,434 @@
+package me.allenzjl.domaincache;
+
+import me.allenzjl.domaincache.CacheStorageHelper.CacheTableColumn;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 通过JDBC使用SQLite的{@link CacheStore}，不依赖Android，用于在JVM上运行单元测试和基准测试，例如配合sqlite-jdbc使用
+ * {@code jdbc:sqlite:/tmp/cache.db}。
+ * <p>
+ * 表结构与{@link SQLiteCacheStore}相同，但不做版本升级，版本不一致时重建所有表。所有操作共用一个连接，按调用顺序串行执行。
+ */
+public class JdbcCacheStore implements CacheStore {
+
+    protected final String mUrl;
+
+    protected final File mSegmentDirectory;
+
+    protected Connection mConnection;
+
+    /**
+     * @param url              JDBC连接地址
+     * @param segmentDirectory 保存段文件的目录
+     */
+    public JdbcCacheStore(String url, File segmentDirectory) {
+        mUrl = url;
+        mSegmentDirectory = segmentDirectory;
+    }
+
+    @Override
+    public synchronized void open() {
+        try {
+            connection();
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (mConnection != null) {
+            try {
+                mConnection.close();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+            mConnection = null;
+        }
+    }
+
+    @Override
+    public File getSegmentDirectory() {
+        return mSegmentDirectory;
+    }
+
+    @Override
+    public synchronized CacheRow get(long id, long now) {
+        try {
+            PreparedStatement statement = connection().prepareStatement(CacheSql.CACHE_QUERY_SQL);
+            try {
+                statement.setLong(1, id);
+                statement.setLong(2, now);
+                ResultSet resultSet = statement.executeQuery();
+                return resultSet.next() ? readRow(resultSet) : null;
+            } finally {
+                statement.close();
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public synchronized List<CacheRow> getAll(List<Long> ids, long now) {
+        List<CacheRow> rows = new ArrayList<>(ids.size());
+        try {
+            for (int from = 0; from < ids.size(); from += CacheSql.MAX_IN_SIZE) {
+                List<Long> chunk = ids.subList(from, Math.min(from + CacheSql.MAX_IN_SIZE, ids.size()));
+                PreparedStatement statement =
+                        connection().prepareStatement(CacheSql.inClause(CacheSql.CACHE_QUERY_IN_SQL_PREFIX, chunk.size()));
+                try {
+                    statement.setLong(1, now);
+                    for (int i = 0; i < chunk.size(); i++) {
+                        statement.setLong(i + 2, chunk.get(i));
+                    }
+                    ResultSet resultSet = statement.executeQuery();
+                    while (resultSet.next()) {
+                        rows.add(readRow(resultSet));
+                    }
+                } finally {
+                    statement.close();
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+        return rows;
+    }
+
+    @Override
+    public synchronized void store(List<CacheRow> rows) {
+        try {
+            Connection connection = begin();
+            try {
+                PreparedStatement cacheUpsert = connection.prepareStatement(CacheSql.CACHE_UPSERT_SQL);
+                PreparedStatement paramsDelete = connection.prepareStatement(CacheSql.PARAMS_DELETE_SQL);
+                PreparedStatement paramsInsert = connection.prepareStatement(CacheSql.PARAMS_INSERT_SQL);
+                try {
+                    for (CacheRow row : rows) {
+                        bindRow(cacheUpsert, row);
+                        cacheUpsert.executeUpdate();
+                        paramsDelete.setLong(1, row.getId());
+                        paramsDelete.executeUpdate();
+                        if (row.getAlias() != null && row.getParamNames() != null) {
+                            int count = Math.min(row.getParamNames().length, row.getParams().length);
+                            for (int i = 0; i < count; i++) {
+                                paramsInsert.setLong(1, row.getId());
+                                paramsInsert.setString(2, row.getAlias());
+                                paramsInsert.setString(3, row.getParamNames()[i]);
+                                paramsInsert.setString(4, String.valueOf(row.getParams()[i]));
+                                paramsInsert.executeUpdate();
+                            }
+                        }
+                    }
+                } finally {
+                    cacheUpsert.close();
+                    paramsDelete.close();
+                    paramsInsert.close();
+                }
+                connection.commit();
+            } finally {
+                end(connection);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public synchronized void remove(String alias) {
+        update(CacheSql.CACHE_REMOVE_SQL, alias);
+    }
+
+    @Override
+    public synchronized void remove(String alias, String paramName, String compare, Object value) {
+        update(CacheSql.CACHE_REMOVE_BY_PARAM_SQL_PREFIX + compare + " ?)", alias, paramName, value);
+    }
+
+    @Override
+    public synchronized int sweepExpired(long now, int batchSize) {
+        try {
+            Connection connection = begin();
+            try {
+                List<Long> ids = new ArrayList<>();
+                PreparedStatement statement = connection.prepareStatement(CacheSql.EXPIRED_QUERY_SQL);
+                try {
+                    statement.setLong(1, now);
+                    statement.setInt(2, batchSize);
+                    ResultSet resultSet = statement.executeQuery();
+                    while (resultSet.next()) {
+                        ids.add(resultSet.getLong(1));
+                    }
+                } finally {
+                    statement.close();
+                }
+                deleteCaches(connection, ids);
+                connection.commit();
+                return ids.size();
+            } finally {
+                end(connection);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public synchronized long evictLeastAccessed(int batchSize) {
+        try {
+            Connection connection = begin();
+            try {
+                List<Long> ids = new ArrayList<>();
+                long freed = 0;
+                PreparedStatement statement = connection.prepareStatement(CacheSql.LEAST_ACCESSED_QUERY_SQL);
+                try {
+                    statement.setInt(1, batchSize);
+                    ResultSet resultSet = statement.executeQuery();
+                    while (resultSet.next()) {
+                        ids.add(resultSet.getLong(1));
+                        freed += resultSet.getLong(2);
+                    }
+                } finally {
+                    statement.close();
+                }
+                if (!ids.isEmpty()) {
+                    deleteCaches(connection, ids);
+                    freed = Math.max(freed, 1);
+                }
+                connection.commit();
+                return freed;
+            } finally {
+                end(connection);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public synchronized long queryTotalSize() {
+        try {
+            Statement statement = connection().createStatement();
+            try {
+                ResultSet resultSet = statement.executeQuery(CacheSql.TOTAL_SIZE_QUERY_SQL);
+                return resultSet.next() ? resultSet.getLong(1) : 0;
+            } finally {
+                statement.close();
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public synchronized void updateAccessed(Map<Long, Long> accesses) {
+        try {
+            Connection connection = begin();
+            try {
+                PreparedStatement statement = connection.prepareStatement(CacheSql.ACCESSED_UPDATE_SQL);
+                try {
+                    for (Map.Entry<Long, Long> entry : accesses.entrySet()) {
+                        statement.setLong(1, entry.getValue());
+                        statement.setLong(2, entry.getKey());
+                        statement.executeUpdate();
+                    }
+                } finally {
+                    statement.close();
+                }
+                connection.commit();
+            } finally {
+                end(connection);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public synchronized Map<Integer, Long> scanSegments() {
+        Map<Integer, Long> segments = new HashMap<>();
+        try {
+            Statement statement = connection().createStatement();
+            try {
+                ResultSet resultSet = statement.executeQuery(CacheSql.SEGMENT_QUERY_SQL);
+                while (resultSet.next()) {
+                    segments.put(resultSet.getInt(1), resultSet.getLong(2));
+                }
+            } finally {
+                statement.close();
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+        return segments;
+    }
+
+    @Override
+    public synchronized List<CacheRow> getSegmentRows(int segment) {
+        List<CacheRow> rows = new ArrayList<>();
+        try {
+            PreparedStatement statement = connection().prepareStatement(CacheSql.SEGMENT_ROWS_QUERY_SQL);
+            try {
+                statement.setInt(1, segment);
+                ResultSet resultSet = statement.executeQuery();
+                while (resultSet.next()) {
+                    rows.add(readRow(resultSet));
+                }
+            } finally {
+                statement.close();
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+        return rows;
+    }
+
+    @Override
+    public synchronized boolean relocate(long id, SegmentStore.Pointer from, SegmentStore.Pointer to) {
+        try {
+            PreparedStatement statement = connection().prepareStatement(CacheSql.SEGMENT_RELOCATE_SQL);
+            try {
+                statement.setInt(1, to.getSegment());
+                statement.setLong(2, to.getOffset());
+                statement.setInt(3, to.getLength());
+                statement.setLong(4, id);
+                statement.setInt(5, from.getSegment());
+                statement.setLong(6, from.getOffset());
+                return statement.executeUpdate() > 0;
+            } finally {
+                statement.close();
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    protected Connection connection() throws SQLException {
+        if (mConnection == null || mConnection.isClosed()) {
+            Connection connection = DriverManager.getConnection(mUrl);
+            createSchema(connection);
+            mConnection = connection;
+        }
+        return mConnection;
+    }
+
+    /**
+     * 用PRAGMA user_version记录表结构的版本，与{@link CacheStorageHelper#DB_VERSION}不一致时重建所有表。
+     */
+    protected void createSchema(Connection connection) throws SQLException {
+        Statement statement = connection.createStatement();
+        try {
+            ResultSet resultSet = statement.executeQuery("PRAGMA user_version");
+            int version = resultSet.next() ? resultSet.getInt(1) : 0;
+            resultSet.close();
+            if (version == CacheStorageHelper.DB_VERSION) {
+                return;
+            }
+            statement.execute("DROP TABLE IF EXISTS " + CacheStorageHelper.TABLE_CACHE);
+            statement.execute("DROP TABLE IF EXISTS " + CacheStorageHelper.TABLE_PARAMS);
+            statement.execute(CacheSql.createCacheTable());
+            statement.execute(CacheSql.createParamsTable());
+            statement.execute(CacheSql.createCacheDeleteTrigger());
+            for (String sql : CacheSql.createIndexes()) {
+                statement.execute(sql);
+            }
+            statement.execute("PRAGMA user_version = " + CacheStorageHelper.DB_VERSION);
+        } finally {
+            statement.close();
+        }
+    }
+
+    protected Connection begin() throws SQLException {
+        Connection connection = connection();
+        connection.setAutoCommit(false);
+        return connection;
+    }
+
+    /**
+     * 结束{@link #begin()}开始的事务，没有提交时回滚。
+     */
+    protected void end(Connection connection) throws SQLException {
+        try {
+            connection.rollback();
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    protected void update(String sql, Object... args) {
+        try {
+            PreparedStatement statement = connection().prepareStatement(sql);
+            try {
+                for (int i = 0; i < args.length; i++) {
+                    statement.setObject(i + 1, args[i]);
+                }
+                statement.executeUpdate();
+            } finally {
+                statement.close();
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    protected void deleteCaches(Connection connection, List<Long> ids) throws SQLException {
+        if (ids.isEmpty()) {
+            return;
+        }
+        Statement statement = connection.createStatement();
+        try {
+            statement.executeUpdate(CacheSql.deleteIn(ids));
+        } finally {
+            statement.close();
+        }
+    }
+
+    protected static void bindRow(PreparedStatement statement, CacheRow row) throws SQLException {
+        statement.setLong(1, row.getId());
+        statement.setString(2, row.getKey());
+        statement.setString(3, row.getParameter());
+        statement.setBytes(4, row.getData());
+        statement.setString(5, row.getAlias());
+        statement.setLong(6, row.getExpired());
+        statement.setInt(7, row.getCodecId());
+        statement.setInt(8, row.getCompression());
+        SegmentStore.Pointer pointer = row.getPointer();
+        if (pointer == null) {
+            statement.setObject(9, null);
+            statement.setObject(10, null);
+            statement.setObject(11, null);
+        } else {
+            statement.setInt(9, pointer.getSegment());
+            statement.setLong(10, pointer.getOffset());
+            statement.setInt(11, pointer.getLength());
+        }
+        statement.setLong(12, row.getSize());
+        statement.setLong(13, row.getAccessed());
+        statement.setLong(14, row.getSoftExpired());
+    }
+
+    protected static CacheRow readRow(ResultSet resultSet) throws SQLException {
+        SegmentStore.Pointer pointer = null;
+        int segment = resultSet.getInt(CacheTableColumn.SEGMENT);
+        if (!resultSet.wasNull()) {
+            pointer = new SegmentStore.Pointer(segment, resultSet.getLong(CacheTableColumn.SEGMENT_OFFSET),
+                    resultSet.getInt(CacheTableColumn.SEGMENT_LENGTH));
+        }
+        return new CacheRow(resultSet.getLong(CacheTableColumn.ID), resultSet.getString(CacheTableColumn.KEY),
+                resultSet.getString(CacheTableColumn.PARAMETER), pointer == null ? resultSet.getBytes(CacheTableColumn.RESULT) : null,
+                pointer, resultSet.getInt(CacheTableColumn.CODEC), resultSet.getInt(CacheTableColumn.COMPRESSION),
+                resultSet.getString(CacheTableColumn.ALIAS), resultSet.getLong(CacheTableColumn.EXPIRED),
+                resultSet.getLong(CacheTableColumn.SOFT_EXPIRED));
+    }
+}
@@ -0,0 +1,52 @@
+package me.allenzjl.domaincache;
+
+import com.alibaba.fastjson.JSON;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * 使用fastjson的编解码器，以UTF-8编码的JSON文本保存，与旧版本的TEXT缓存兼容。
+ */
+public class JsonCodec implements Codec {
+
+    public static final int ID = 0;
+
+    public static final String NAME = "json";
+
+    public static final JsonCodec INSTANCE = new JsonCodec();
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Override
+    public int getId() {
+        return ID;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public byte[] encode(Object value) {
+        return JSON.toJSONBytes(value);
+    }
+
+    @Override
+    public Object decode(ByteBuffer data, Class resultClass, boolean isArray) {
+        String json;
+        if (data.hasArray()) {
+            json = new String(data.array(), data.arrayOffset() + data.position(), data.remaining(), UTF_8);
+        } else {
+            byte[] bytes = new byte[data.remaining()];
+            data.duplicate().get(bytes);
+            json = new String(bytes, UTF_8);
+        }
+        if (isArray) {
+            return JSON.parseArray(json, resultClass);
+        } else {
+            return JSON.parseObject(json, resultClass);
+        }
+    }
+}
@@ -0,0 +1,1147 @@
+package me.allenzjl.domaincache;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * 只追加写的日志文件{@link CacheStore}，适合写多的场景。
+ * <p>
+ * 每次写入都追加到当前的日志文件，不更新原有的数据，删除时追加删除记录。内存中用{@link LongHashMap}按主键记录每条缓存在日志文件中的位置，
+ * 读缓存时只需要一次定位读取。按alias删除借助alias到主键的二级索引。
+ * <p>
+ * 索引中除了位置，还保存过期时间、大小、访问时间、alias和索引参数，清理过期缓存、淘汰和按参数删除都不需要读日志文件，
+ * 代价是每条缓存在堆上占用一个{@link Entry}，大约一百字节加上参数的长度。
+ * <p>
+ * 日志文件写满{@link #DEFAULT_MAX_FILE_SIZE}后封存，同时写入提示文件，记录每条记录的位置和索引需要的信息，打开时读取提示文件重建索引，
+ * 不需要扫描日志文件。封存的日志文件中失效的记录超过{@link #COMPACT_DEAD_PERCENT}%时，后台线程把仍然有效的记录复制到当前的日志文件，
+ * 然后删除所有封存的日志文件。
+ * <p>
+ * 访问时间只保存在内存中，封存和合并时写入提示文件。
+ */
+public class LogCacheStore implements CacheStore {
+
+    public static final String DIR_NAME = "domain_cache_log";
+
+    public static final long DEFAULT_MAX_FILE_SIZE = 16 * 1024 * 1024;
+
+    public static final int COMPACT_DEAD_PERCENT = 50;
+
+    /**
+     * 合并时每次加锁复制的记录数。
+     */
+    public static final int COMPACT_BATCH_SIZE = 64;
+
+    protected static final String DATA_SUFFIX = ".log";
+
+    protected static final String HINT_SUFFIX = ".hint";
+
+    protected static final byte TYPE_PUT = 1;
+
+    protected static final byte TYPE_DELETE = 2;
+
+    /**
+     * 记录头：记录体的长度和CRC32。
+     */
+    protected static final int HEADER_SIZE = 8;
+
+    protected static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * 一条缓存在索引中的信息。
+     */
+    protected static class Entry {
+
+        long mId;
+
+        int mFile;
+
+        long mOffset;
+
+        int mLength;
+
+        long mExpired;
+
+        long mSize;
+
+        long mAccessed;
+
+        String mAlias;
+
+        String[] mParamNames;
+
+        String[] mParamValues;
+
+        int mSegment = -1;
+
+        boolean isExpired(long now) {
+            return mExpired > 0 && mExpired <= now;
+        }
+
+        String getParam(String name) {
+            if (mParamNames != null) {
+                for (int i = 0; i < mParamNames.length; i++) {
+                    if (mParamNames[i].equals(name)) {
+                        return mParamValues[i];
+                    }
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 一个日志文件。
+     */
+    protected static class LogFile {
+
+        final int mNumber;
+
+        final RandomAccessFile mFile;
+
+        final FileChannel mChannel;
+
+        long mLength;
+
+        long mDeadBytes;
+
+        LogFile(File file, int number) throws IOException {
+            mNumber = number;
+            mFile = new RandomAccessFile(file, "rw");
+            mChannel = mFile.getChannel();
+            mLength = mChannel.size();
+        }
+
+        void close() {
+            try {
+                mFile.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    protected final File mDirectory;
+
+    protected final long mMaxFileSize;
+
+    protected final ReentrantReadWriteLock mLock = new ReentrantReadWriteLock();
+
+    protected final LongHashMap<Entry> mIndex = new LongHashMap<>();
+
+    /**
+     * alias到它的缓存的二级索引。
+     */
+    protected final Map<String, LongHashMap<Entry>> mAliases = new HashMap<>();
+
+    protected final TreeMap<Integer, LogFile> mFiles = new TreeMap<>();
+
+    protected LogFile mActive;
+
+    /**
+     * 当前日志文件的提示记录，封存时写入提示文件。
+     */
+    protected ByteArrayOutputStream mHintBuffer;
+
+    protected long mTotalSize;
+
+    protected volatile boolean mOpened;
+
+    protected final AtomicBoolean mCompactScheduled = new AtomicBoolean();
+
+    protected final ExecutorService mCompactor;
+
+    public LogCacheStore(File directory) {
+        this(directory, DEFAULT_MAX_FILE_SIZE);
+    }
+
+    public LogCacheStore(File directory, long maxFileSize) {
+        if (maxFileSize <= 0) {
+            throw new IllegalArgumentException("maxFileSize <= 0");
+        }
+        mDirectory = directory;
+        mMaxFileSize = maxFileSize;
+        mCompactor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "DomainCache-Compactor");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+    }
+
+    @Override
+    public void open() {
+        if (mOpened) {
+            return;
+        }
+        mLock.writeLock().lock();
+        try {
+            if (mOpened) {
+                return;
+            }
+            if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+                throw new IOException("Cannot create directory " + mDirectory);
+            }
+            List<Integer> numbers = new ArrayList<>();
+            File[] files = mDirectory.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    int number = parseNumber(file.getName(), DATA_SUFFIX);
+                    if (number >= 0) {
+                        numbers.add(number);
+                    }
+                }
+            }
+            Collections.sort(numbers);
+            for (int number : numbers) {
+                load(number);
+            }
+            startFile(numbers.isEmpty() ? 0 : numbers.get(numbers.size() - 1) + 1);
+            mOpened = true;
+        } catch (IOException e) {
+            closeFiles();
+            throw new IllegalStateException(e);
+        } finally {
+            mLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 封存当前的日志文件并关闭所有文件，之后再读写会重新打开。
+     */
+    @Override
+    public void close() {
+        mLock.writeLock().lock();
+        try {
+            if (!mOpened) {
+                return;
+            }
+            try {
+                seal();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            closeFiles();
+            mOpened = false;
+        } finally {
+            mLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public File getSegmentDirectory() {
+        return new File(mDirectory, SegmentStore.DIR_NAME);
+    }
+
+    @Override
+    public CacheRow get(long id, long now) {
+        open();
+        mLock.readLock().lock();
+        try {
+            Entry entry = mIndex.get(id);
+            if (entry == null || entry.isExpired(now)) {
+                return null;
+            }
+            return readRow(entry);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            mLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<CacheRow> getAll(List<Long> ids, long now) {
+        open();
+        mLock.readLock().lock();
+        try {
+            List<Entry> entries = new ArrayList<>(ids.size());
+            for (long id : ids) {
+                Entry entry = mIndex.get(id);
+                if (entry != null && !entry.isExpired(now)) {
+                    entries.add(entry);
+                }
+            }
+            // 按文件中的位置读取
+            Collections.sort(entries, new Comparator<Entry>() {
+                @Override
+                public int compare(Entry lhs, Entry rhs) {
+                    if (lhs.mFile != rhs.mFile) {
+                        return lhs.mFile < rhs.mFile ? -1 : 1;
+                    }
+                    return lhs.mOffset < rhs.mOffset ? -1 : (lhs.mOffset == rhs.mOffset ? 0 : 1);
+                }
+            });
+            List<CacheRow> rows = new ArrayList<>(entries.size());
+            for (Entry entry : entries) {
+                rows.add(readRow(entry));
+            }
+            return rows;
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            mLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void store(List<CacheRow> rows) {
+        open();
+        mLock.writeLock().lock();
+        try {
+            List<byte[]> records = new ArrayList<>(rows.size());
+            List<Entry> entries = new ArrayList<>(rows.size());
+            for (CacheRow row : rows) {
+                Entry entry = toEntry(row);
+                records.add(encodeRecord(row, entry));
+                entries.add(entry);
+            }
+            append(records, entries);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            mLock.writeLock().unlock();
+        }
+        scheduleCompaction();
+    }
+
+    @Override
+    public void remove(String alias) {
+        open();
+        mLock.writeLock().lock();
+        try {
+            LongHashMap<Entry> entries = mAliases.get(alias);
+            if (entries != null) {
+                List<Long> ids = new ArrayList<>(entries.size());
+                for (int i = 0; i < entries.capacity(); i++) {
+                    if (entries.valueAt(i) != null) {
+                        ids.add(entries.keyAt(i));
+                    }
+                }
+                delete(ids);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            mLock.writeLock().unlock();
+        }
+        scheduleCompaction();
+    }
+
+    /**
+     * 与数据库中一样按字符串比较，没有这个参数的缓存不满足任何比较，value为null时不删除。
+     */
+    @Override
+    public void remove(String alias, String paramName, String compare, Object value) {
+        // 先检查运算符
+        matches(0, compare);
+        if (value == null) {
+            return;
+        }
+        String target = String.valueOf(value);
+        open();
+        mLock.writeLock().lock();
+        try {
+            LongHashMap<Entry> entries = mAliases.get(alias);
+            if (entries != null) {
+                List<Long> ids = new ArrayList<>();
+                for (int i = 0; i < entries.capacity(); i++) {
+                    Entry entry = entries.valueAt(i);
+                    if (entry == null) {
+                        continue;
+                    }
+                    String param = entry.getParam(paramName);
+                    if (param != null && matches(compareCodePoints(param, target), compare)) {
+                        ids.add(entry.mId);
+                    }
+                }
+                delete(ids);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            mLock.writeLock().unlock();
+        }
+        scheduleCompaction();
+    }
+
+    /**
+     * @param order   参数与value比较的结果
+     * @param compare {@link CacheStore#remove(String, String, String, Object)}支持的运算符
+     */
+    protected static boolean matches(int order, String compare) {
+        if ("=".equals(compare) || "==".equals(compare)) {
+            return order == 0;
+        } else if ("!=".equals(compare) || "<>".equals(compare)) {
+            return order != 0;
+        } else if ("<".equals(compare)) {
+            return order < 0;
+        } else if ("<=".equals(compare)) {
+            return order <= 0;
+        } else if (">".equals(compare)) {
+            return order > 0;
+        } else if (">=".equals(compare)) {
+            return order >= 0;
+        }
+        throw new IllegalArgumentException("Unsupported compare: " + compare);
+    }
+
+    /**
+     * 按码点比较，与SQLite默认的BINARY排序按UTF-8字节比较的结果相同。
+     */
+    protected static int compareCodePoints(String lhs, String rhs) {
+        int i = 0;
+        int j = 0;
+        while (i < lhs.length() && j < rhs.length()) {
+            int lhsCodePoint = lhs.codePointAt(i);
+            int rhsCodePoint = rhs.codePointAt(j);
+            if (lhsCodePoint != rhsCodePoint) {
+                return lhsCodePoint < rhsCodePoint ? -1 : 1;
+            }
+            i += Character.charCount(lhsCodePoint);
+            j += Character.charCount(rhsCodePoint);
+        }
+        return i < lhs.length() ? 1 : (j < rhs.length() ? -1 : 0);
+    }
+
+    /**
+     * 遍历索引找出过期的缓存，每批都需要遍历整个索引。
+     */
+    @Override
+    public int sweepExpired(long now, int batchSize) {
+        open();
+        mLock.writeLock().lock();
+        try {
+            List<Long> ids = new ArrayList<>();
+            for (int i = 0; i < mIndex.capacity() && ids.size() < batchSize; i++) {
+                Entry entry = mIndex.valueAt(i);
+                if (entry != null && entry.isExpired(now)) {
+                    ids.add(entry.mId);
+                }
+            }
+            delete(ids);
+            return ids.size();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            mLock.writeLock().unlock();
+            scheduleCompaction();
+        }
+    }
+
+    @Override
+    public long evictLeastAccessed(int batchSize) {
+        open();
+        mLock.writeLock().lock();
+        try {
+            // 保留访问时间最早的batchSize条，堆顶是其中最晚的
+            PriorityQueue<Entry> oldest = new PriorityQueue<>(batchSize, new Comparator<Entry>() {
+                @Override
+                public int compare(Entry lhs, Entry rhs) {
+                    return lhs.mAccessed > rhs.mAccessed ? -1 : (lhs.mAccessed == rhs.mAccessed ? 0 : 1);
+                }
+            });
+            for (int i = 0; i < mIndex.capacity(); i++) {
+                Entry entry = mIndex.valueAt(i);
+                if (entry == null) {
+                    continue;
+                }
+                if (oldest.size() < batchSize) {
+                    oldest.add(entry);
+                } else if (entry.mAccessed < oldest.peek().mAccessed) {
+                    oldest.poll();
+                    oldest.add(entry);
+                }
+            }
+            List<Long> ids = new ArrayList<>(oldest.size());
+            long freed = 0;
+            for (Entry entry : oldest) {
+                ids.add(entry.mId);
+                freed += entry.mSize;
+            }
+            if (!ids.isEmpty()) {
+                delete(ids);
+                // 空缓存的大小也可能为0，按删除了1个字节计算，使淘汰继续下去
+                freed = Math.max(freed, 1);
+            }
+            return freed;
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            mLock.writeLock().unlock();
+            scheduleCompaction();
+        }
+    }
+
+    @Override
+    public long queryTotalSize() {
+        open();
+        mLock.readLock().lock();
+        try {
+            return mTotalSize;
+        } finally {
+            mLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void updateAccessed(Map<Long, Long> accesses) {
+        open();
+        mLock.writeLock().lock();
+        try {
+            for (Map.Entry<Long, Long> access : accesses.entrySet()) {
+                Entry entry = mIndex.get(access.getKey());
+                if (entry != null) {
+                    entry.mAccessed = Math.max(entry.mAccessed, access.getValue());
+                }
+            }
+        } finally {
+            mLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 索引中没有记录结果的长度，段文件中被引用的字节数按缓存的大小估计，略微偏大。
+     */
+    @Override
+    public Map<Integer, Long> scanSegments() {
+        open();
+        Map<Integer, Long> segments = new HashMap<>();
+        mLock.readLock().lock();
+        try {
+            for (int i = 0; i < mIndex.capacity(); i++) {
+                Entry entry = mIndex.valueAt(i);
+                if (entry != null && entry.mSegment >= 0) {
+                    Long used = segments.get(entry.mSegment);
+                    segments.put(entry.mSegment, (used != null ? used : 0) + entry.mSize);
+                }
+            }
+        } finally {
+            mLock.readLock().unlock();
+        }
+        return segments;
+    }
+
+    @Override
+    public List<CacheRow> getSegmentRows(int segment) {
+        open();
+        mLock.readLock().lock();
+        try {
+            List<CacheRow> rows = new ArrayList<>();
+            for (int i = 0; i < mIndex.capacity(); i++) {
+                Entry entry = mIndex.valueAt(i);
+                if (entry != null && entry.mSegment == segment) {
+                    rows.add(readRow(entry));
+                }
+            }
+            return rows;
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            mLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 追加一条只有位置不同的记录。
+     */
+    @Override
+    public boolean relocate(long id, SegmentStore.Pointer from, SegmentStore.Pointer to) {
+        open();
+        mLock.writeLock().lock();
+        try {
+            Entry entry = mIndex.get(id);
+            if (entry == null || entry.mSegment != from.getSegment()) {
+                return false;
+            }
+            CacheRow row = readRow(entry);
+            if (row.getPointer() == null || row.getPointer().getOffset() != from.getOffset()) {
+                return false;
+            }
+            Entry moved = new Entry();
+            moved.mId = entry.mId;
+            moved.mExpired = entry.mExpired;
+            moved.mSize = entry.mSize;
+            moved.mAccessed = entry.mAccessed;
+            moved.mAlias = entry.mAlias;
+            moved.mParamNames = entry.mParamNames;
+            moved.mParamValues = entry.mParamValues;
+            moved.mSegment = to.getSegment();
+            CacheRow relocated = new CacheRow(row.getId(), row.getKey(), row.getParameter(), null, to, row.getCodecId(),
+                    row.getCompression(), row.getAlias(), row.getExpired(), row.getSoftExpired());
+            append(Collections.singletonList(encodeRecord(relocated, moved)), Collections.singletonList(moved));
+            return true;
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            mLock.writeLock().unlock();
+            scheduleCompaction();
+        }
+    }
+
+    /**
+     * 读取日志文件，有提示文件时只读取提示文件。没有提示文件时扫描日志文件，截掉末尾不完整的记录，并补写提示文件。
+     */
+    protected void load(int number) throws IOException {
+        LogFile file = new LogFile(dataFile(number), number);
+        mFiles.put(number, file);
+        File hintFile = hintFile(number);
+        if (hintFile.isFile()) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(hintFile)));
+            try {
+                while (true) {
+                    byte type;
+                    try {
+                        type = in.readByte();
+                    } catch (EOFException e) {
+                        break;
+                    }
+                    long id = in.readLong();
+                    long offset = in.readLong();
+                    int length = in.readInt();
+                    if (type == TYPE_PUT) {
+                        Entry entry = readMeta(in, id);
+                        entry.mFile = number;
+                        entry.mOffset = offset;
+                        entry.mLength = length;
+                        putEntry(entry);
+                    } else {
+                        removeEntry(id);
+                        file.mDeadBytes += length;
+                    }
+                }
+            } finally {
+                in.close();
+            }
+            return;
+        }
+        ByteArrayOutputStream hintBuffer = new ByteArrayOutputStream();
+        DataOutputStream hint = new DataOutputStream(hintBuffer);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(dataFile(number))));
+        long offset = 0;
+        try {
+            while (true) {
+                byte[] body = readRecord(in, file.mLength - offset);
+                if (body == null) {
+                    break;
+                }
+                int length = HEADER_SIZE + body.length;
+                DataInputStream record = new DataInputStream(new ByteArrayInputStream(body));
+                byte type = record.readByte();
+                long id = record.readLong();
+                if (type == TYPE_PUT) {
+                    Entry entry = readMeta(record, id);
+                    entry.mFile = number;
+                    entry.mOffset = offset;
+                    entry.mLength = length;
+                    putEntry(entry);
+                    writeHint(hint, TYPE_PUT, id, offset, length, entry);
+                } else {
+                    removeEntry(id);
+                    file.mDeadBytes += length;
+                    writeHint(hint, TYPE_DELETE, id, offset, length, null);
+                }
+                offset += length;
+            }
+        } finally {
+            in.close();
+        }
+        if (offset < file.mLength) {
+            file.mChannel.truncate(offset);
+            file.mLength = offset;
+        }
+        file.mChannel.force(true);
+        writeHintFile(number, hintBuffer);
+    }
+
+    /**
+     * 读取一条记录的记录体。
+     *
+     * @return 到达末尾或者记录不完整时返回null
+     */
+    protected static byte[] readRecord(DataInputStream in, long remaining) throws IOException {
+        if (remaining < HEADER_SIZE) {
+            return null;
+        }
+        int length = in.readInt();
+        int crc = in.readInt();
+        if (length <= 0 || length > remaining - HEADER_SIZE) {
+            return null;
+        }
+        byte[] body = new byte[length];
+        in.readFully(body);
+        CRC32 crc32 = new CRC32();
+        crc32.update(body, 0, body.length);
+        return (int) crc32.getValue() == crc ? body : null;
+    }
+
+    protected void startFile(int number) throws IOException {
+        mActive = new LogFile(dataFile(number), number);
+        mFiles.put(number, mActive);
+        mHintBuffer = new ByteArrayOutputStream();
+    }
+
+    /**
+     * 封存当前的日志文件，写入提示文件。
+     */
+    protected void seal() throws IOException {
+        mActive.mChannel.force(true);
+        writeHintFile(mActive.mNumber, mHintBuffer);
+    }
+
+    protected void writeHintFile(int number, ByteArrayOutputStream hintBuffer) throws IOException {
+        File tempFile = new File(mDirectory, number + HINT_SUFFIX + ".tmp");
+        FileOutputStream out = new FileOutputStream(tempFile);
+        try {
+            hintBuffer.writeTo(out);
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+        if (!tempFile.renameTo(hintFile(number))) {
+            throw new IOException("Cannot rename " + tempFile);
+        }
+    }
+
+    /**
+     * 把一批记录一次追加到当前的日志文件并更新索引，entries中为null的是删除记录。
+     */
+    protected void append(List<byte[]> records, List<Entry> entries) throws IOException {
+        if (records.isEmpty()) {
+            return;
+        }
+        if (mActive.mLength >= mMaxFileSize) {
+            seal();
+            startFile(mActive.mNumber + 1);
+        }
+        int total = 0;
+        for (byte[] record : records) {
+            total += record.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(total);
+        for (byte[] record : records) {
+            buffer.put(record);
+        }
+        buffer.flip();
+        long position = mActive.mLength;
+        while (buffer.hasRemaining()) {
+            position += mActive.mChannel.write(buffer, position);
+        }
+        mActive.mChannel.force(false);
+        DataOutputStream hint = new DataOutputStream(mHintBuffer);
+        long offset = mActive.mLength;
+        for (int i = 0; i < records.size(); i++) {
+            int length = records.get(i).length;
+            Entry entry = entries.get(i);
+            if (entry != null) {
+                // 先按原来的位置移出索引，合并时复制的是同一个对象
+                removeEntry(entry.mId);
+                entry.mFile = mActive.mNumber;
+                entry.mOffset = offset;
+                entry.mLength = length;
+                putEntry(entry);
+                writeHint(hint, TYPE_PUT, entry.mId, offset, length, entry);
+            } else {
+                long id = ByteBuffer.wrap(records.get(i), HEADER_SIZE + 1, 8).getLong();
+                removeEntry(id);
+                mActive.mDeadBytes += length;
+                writeHint(hint, TYPE_DELETE, id, offset, length, null);
+            }
+            offset += length;
+        }
+        mActive.mLength = offset;
+    }
+
+    /**
+     * 为索引中存在的缓存追加删除记录。
+     */
+    protected void delete(List<Long> ids) throws IOException {
+        List<byte[]> records = new ArrayList<>(ids.size());
+        List<Entry> entries = new ArrayList<>(ids.size());
+        for (long id : ids) {
+            if (mIndex.get(id) != null) {
+                records.add(encodeDelete(id));
+                entries.add(null);
+            }
+        }
+        append(records, entries);
+    }
+
+    protected void putEntry(Entry entry) {
+        removeEntry(entry.mId);
+        mIndex.put(entry.mId, entry);
+        if (entry.mAlias != null) {
+            LongHashMap<Entry> entries = mAliases.get(entry.mAlias);
+            if (entries == null) {
+                entries = new LongHashMap<>();
+                mAliases.put(entry.mAlias, entries);
+            }
+            entries.put(entry.mId, entry);
+        }
+        mTotalSize += entry.mSize;
+    }
+
+    protected void removeEntry(long id) {
+        Entry old = mIndex.remove(id);
+        if (old == null) {
+            return;
+        }
+        LogFile file = mFiles.get(old.mFile);
+        if (file != null) {
+            file.mDeadBytes += old.mLength;
+        }
+        if (old.mAlias != null) {
+            LongHashMap<Entry> entries = mAliases.get(old.mAlias);
+            if (entries != null) {
+                entries.remove(id);
+                if (entries.isEmpty()) {
+                    mAliases.remove(old.mAlias);
+                }
+            }
+        }
+        mTotalSize -= old.mSize;
+    }
+
+    protected CacheRow readRow(Entry entry) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(entry.mLength);
+        FileChannel channel = mFiles.get(entry.mFile).mChannel;
+        long position = entry.mOffset;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new EOFException("Record of " + entry.mId + " is truncated");
+            }
+        }
+        DataInputStream in =
+                new DataInputStream(new ByteArrayInputStream(buffer.array(), HEADER_SIZE, entry.mLength - HEADER_SIZE));
+        in.readByte();
+        long id = in.readLong();
+        Entry meta = readMeta(in, id);
+        long softExpired = in.readLong();
+        int codecId = in.readInt();
+        int compression = in.readInt();
+        String key = readString(in);
+        String parameter = readString(in);
+        SegmentStore.Pointer pointer = null;
+        if (meta.mSegment >= 0) {
+            pointer = new SegmentStore.Pointer(meta.mSegment, in.readLong(), in.readInt());
+        }
+        byte[] data = null;
+        int dataLength = in.readInt();
+        if (dataLength >= 0) {
+            data = new byte[dataLength];
+            in.readFully(data);
+        }
+        return new CacheRow(id, key, parameter, data, pointer, codecId, compression, meta.mAlias, meta.mExpired, softExpired);
+    }
+
+    protected static Entry toEntry(CacheRow row) {
+        Entry entry = new Entry();
+        entry.mId = row.getId();
+        entry.mExpired = row.getExpired();
+        entry.mSize = row.getSize();
+        entry.mAccessed = row.getAccessed();
+        entry.mAlias = row.getAlias();
+        if (row.getAlias() != null && row.getParamNames() != null) {
+            int count = Math.min(row.getParamNames().length, row.getParams().length);
+            entry.mParamNames = new String[count];
+            entry.mParamValues = new String[count];
+            for (int i = 0; i < count; i++) {
+                entry.mParamNames[i] = row.getParamNames()[i];
+                entry.mParamValues[i] = String.valueOf(row.getParams()[i]);
+            }
+        }
+        if (row.getPointer() != null) {
+            entry.mSegment = row.getPointer().getSegment();
+        }
+        return entry;
+    }
+
+    /**
+     * 写入记录和提示记录共有的、重建索引需要的信息。
+     */
+    protected static void writeMeta(DataOutputStream out, Entry entry) throws IOException {
+        out.writeLong(entry.mExpired);
+        out.writeLong(entry.mSize);
+        out.writeLong(entry.mAccessed);
+        out.writeInt(entry.mSegment);
+        writeString(out, entry.mAlias);
+        int count = entry.mParamNames != null ? entry.mParamNames.length : 0;
+        out.writeInt(count);
+        for (int i = 0; i < count; i++) {
+            writeString(out, entry.mParamNames[i]);
+            writeString(out, entry.mParamValues[i]);
+        }
+    }
+
+    protected static Entry readMeta(DataInputStream in, long id) throws IOException {
+        Entry entry = new Entry();
+        entry.mId = id;
+        entry.mExpired = in.readLong();
+        entry.mSize = in.readLong();
+        entry.mAccessed = in.readLong();
+        entry.mSegment = in.readInt();
+        entry.mAlias = readString(in);
+        int count = in.readInt();
+        if (count > 0) {
+            entry.mParamNames = new String[count];
+            entry.mParamValues = new String[count];
+            for (int i = 0; i < count; i++) {
+                entry.mParamNames[i] = readString(in);
+                entry.mParamValues[i] = readString(in);
+            }
+        }
+        return entry;
+    }
+
+    protected static void writeHint(DataOutputStream out, byte type, long id, long offset, int length, Entry entry)
+            throws IOException {
+        out.writeByte(type);
+        out.writeLong(id);
+        out.writeLong(offset);
+        out.writeInt(length);
+        if (entry != null) {
+            writeMeta(out, entry);
+        }
+    }
+
+    /**
+     * 记录格式：记录体长度、CRC32、类型、主键、{@link #writeMeta(DataOutputStream, Entry)}写入的信息、变旧时间、编解码器、压缩方式、键、参数、
+     * 段文件中的位置、结果。
+     */
+    protected static byte[] encodeRecord(CacheRow row, Entry entry) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(64 + (row.getData() != null ? row.getData().length : 0));
+        DataOutputStream out = new DataOutputStream(body);
+        out.writeByte(TYPE_PUT);
+        out.writeLong(row.getId());
+        writeMeta(out, entry);
+        out.writeLong(row.getSoftExpired());
+        out.writeInt(row.getCodecId());
+        out.writeInt(row.getCompression());
+        writeString(out, row.getKey());
+        writeString(out, row.getParameter());
+        if (row.getPointer() != null) {
+            out.writeLong(row.getPointer().getOffset());
+            out.writeInt(row.getPointer().getLength());
+        }
+        if (row.getData() != null) {
+            out.writeInt(row.getData().length);
+            out.write(row.getData());
+        } else {
+            out.writeInt(-1);
+        }
+        return frame(body.toByteArray());
+    }
+
+    protected static byte[] encodeDelete(long id) {
+        return frame(ByteBuffer.allocate(9).put(TYPE_DELETE).putLong(id).array());
+    }
+
+    protected static byte[] frame(byte[] body) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(body, 0, body.length);
+        return ByteBuffer.allocate(HEADER_SIZE + body.length).putInt(body.length).putInt((int) crc32.getValue()).put(body)
+                .array();
+    }
+
+    protected static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = value.getBytes(UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    protected static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    protected void scheduleCompaction() {
+        if (!needsCompaction()) {
+            return;
+        }
+        if (mCompactScheduled.compareAndSet(false, true)) {
+            mCompactor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    mCompactScheduled.set(false);
+                    try {
+                        compact();
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    }
+                }
+            });
+        }
+    }
+
+    protected boolean needsCompaction() {
+        mLock.readLock().lock();
+        try {
+            if (!mOpened) {
+                return false;
+            }
+            long length = 0;
+            long dead = 0;
+            for (LogFile file : mFiles.values()) {
+                if (file != mActive) {
+                    length += file.mLength;
+                    dead += file.mDeadBytes;
+                }
+            }
+            return length > 0 && dead * 100 >= length * COMPACT_DEAD_PERCENT;
+        } finally {
+            mLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 把封存的日志文件中仍然有效的记录分批复制到当前的日志文件，然后删除这些日志文件。
+     * 它们之前没有其他日志文件，其中的删除记录可以一起丢弃。
+     */
+    protected void compact() throws IOException {
+        Set<Integer> sealed = new HashSet<>();
+        List<Long> ids = new ArrayList<>();
+        mLock.readLock().lock();
+        try {
+            if (!mOpened) {
+                return;
+            }
+            for (LogFile file : mFiles.values()) {
+                if (file != mActive) {
+                    sealed.add(file.mNumber);
+                }
+            }
+            for (int i = 0; i < mIndex.capacity(); i++) {
+                Entry entry = mIndex.valueAt(i);
+                if (entry != null && sealed.contains(entry.mFile)) {
+                    ids.add(entry.mId);
+                }
+            }
+        } finally {
+            mLock.readLock().unlock();
+        }
+        if (sealed.isEmpty()) {
+            return;
+        }
+        for (int from = 0; from < ids.size(); from += COMPACT_BATCH_SIZE) {
+            List<Long> batch = ids.subList(from, Math.min(from + COMPACT_BATCH_SIZE, ids.size()));
+            mLock.writeLock().lock();
+            try {
+                if (!mOpened) {
+                    return;
+                }
+                List<byte[]> records = new ArrayList<>(batch.size());
+                List<Entry> entries = new ArrayList<>(batch.size());
+                for (long id : batch) {
+                    Entry entry = mIndex.get(id);
+                    // 期间被覆盖或者删除的不再复制
+                    if (entry == null || !sealed.contains(entry.mFile)) {
+                        continue;
+                    }
+                    ByteBuffer record = ByteBuffer.allocate(entry.mLength);
+                    FileChannel channel = mFiles.get(entry.mFile).mChannel;
+                    while (record.hasRemaining()) {
+                        if (channel.read(record, entry.mOffset + record.position()) < 0) {
+                            throw new EOFException("Record of " + id + " is truncated");
+                        }
+                    }
+                    records.add(record.array());
+                    entries.add(entry);
+                }
+                append(records, entries);
+            } finally {
+                mLock.writeLock().unlock();
+            }
+            Thread.yield();
+        }
+        mLock.writeLock().lock();
+        try {
+            if (!mOpened) {
+                return;
+            }
+            // 从旧到新删除，中途退出时剩下的删除记录不会使更早的缓存重新出现
+            for (int number : new TreeMap<>(mFiles).keySet()) {
+                if (!sealed.contains(number)) {
+                    continue;
+                }
+                mFiles.remove(number).close();
+                File hintFile = hintFile(number);
+                if ((hintFile.exists() && !hintFile.delete()) || !dataFile(number).delete()) {
+                    throw new IOException("Cannot delete log file " + number);
+                }
+            }
+        } finally {
+            mLock.writeLock().unlock();
+        }
+    }
+
+    protected void closeFiles() {
+        for (LogFile file : mFiles.values()) {
+            file.close();
+        }
+        mFiles.clear();
+        mIndex.clear();
+        mAliases.clear();
+        mTotalSize = 0;
+        mActive = null;
+        mHintBuffer = null;
+    }
+
+    protected File dataFile(int number) {
+        return new File(mDirectory, number + DATA_SUFFIX);
+    }
+
+    protected File hintFile(int number) {
+        return new File(mDirectory, number + HINT_SUFFIX);
+    }
+
+    protected static int parseNumber(String name, String suffix) {
+        if (!name.endsWith(suffix)) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(name.substring(0, name.length() - suffix.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
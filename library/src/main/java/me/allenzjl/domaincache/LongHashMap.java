@@ -0,0 +1,157 @@
+package me.allenzjl.domaincache;
+
+import java.util.Arrays;
+
+/**
+ * 以long为键的开放寻址哈希表，键不装箱，冲突时线性探测，删除时后移补位，不使用墓碑。
+ * <p>
+ * 可以按槽位遍历：槽位从0到{@link #capacity()} - 1，{@link #valueAt(int)}为null的槽位是空的。遍历期间不能修改。
+ * 不是线程安全的。
+ */
+public class LongHashMap<V> {
+
+    public static final int DEFAULT_CAPACITY = 16;
+
+    protected long[] mKeys;
+
+    protected Object[] mValues;
+
+    protected int mSize;
+
+    public LongHashMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public LongHashMap(int expectedSize) {
+        int capacity = DEFAULT_CAPACITY;
+        // 装载因子不超过1/2
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        mKeys = new long[capacity];
+        mValues = new Object[capacity];
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    public int capacity() {
+        return mValues.length;
+    }
+
+    public long keyAt(int slot) {
+        return mKeys[slot];
+    }
+
+    @SuppressWarnings("unchecked")
+    public V valueAt(int slot) {
+        return (V) mValues[slot];
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        int mask = mValues.length - 1;
+        for (int slot = hash(key) & mask; mValues[slot] != null; slot = (slot + 1) & mask) {
+            if (mKeys[slot] == key) {
+                return (V) mValues[slot];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return 原来的值，没有时返回null
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        if (value == null) {
+            throw new NullPointerException("value == null");
+        }
+        int mask = mValues.length - 1;
+        int slot = hash(key) & mask;
+        for (; mValues[slot] != null; slot = (slot + 1) & mask) {
+            if (mKeys[slot] == key) {
+                V old = (V) mValues[slot];
+                mValues[slot] = value;
+                return old;
+            }
+        }
+        mKeys[slot] = key;
+        mValues[slot] = value;
+        if (++mSize * 2 > mValues.length) {
+            resize(mValues.length * 2);
+        }
+        return null;
+    }
+
+    /**
+     * @return 删除的值，没有时返回null
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        int mask = mValues.length - 1;
+        int slot = hash(key) & mask;
+        for (; mValues[slot] != null; slot = (slot + 1) & mask) {
+            if (mKeys[slot] == key) {
+                V old = (V) mValues[slot];
+                shiftBack(slot);
+                mSize--;
+                return old;
+            }
+        }
+        return null;
+    }
+
+    public void clear() {
+        Arrays.fill(mValues, null);
+        mSize = 0;
+    }
+
+    /**
+     * 把空出的槽位之后同一探测序列中的键前移，保证查找不会提前遇到空槽位。
+     */
+    protected void shiftBack(int slot) {
+        int mask = mValues.length - 1;
+        int empty = slot;
+        for (int next = (slot + 1) & mask; mValues[next] != null; next = (next + 1) & mask) {
+            int home = hash(mKeys[next]) & mask;
+            // home不在(empty, next]之间时可以前移到empty
+            if (empty <= next ? (home <= empty || home > next) : (home <= empty && home > next)) {
+                mKeys[empty] = mKeys[next];
+                mValues[empty] = mValues[next];
+                empty = next;
+            }
+        }
+        mValues[empty] = null;
+    }
+
+    protected void resize(int capacity) {
+        long[] keys = mKeys;
+        Object[] values = mValues;
+        mKeys = new long[capacity];
+        mValues = new Object[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                int slot = hash(keys[i]) & mask;
+                while (mValues[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                mKeys[slot] = keys[i];
+                mValues[slot] = values[i];
+            }
+        }
+    }
+
+    protected static int hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+}
@@ -0,0 +1,131 @@
+package me.allenzjl.domaincache;
+
+import java.util.Arrays;
+
+/**
+ * 键为long、值为非负int的开放寻址哈希表，键和值都不装箱，实现与{@link LongHashMap}相同。不是线程安全的。
+ */
+public class LongIntHashMap {
+
+    public static final int DEFAULT_CAPACITY = 16;
+
+    /**
+     * 空槽位的值，查找不到时也返回它。
+     */
+    public static final int EMPTY = -1;
+
+    protected long[] mKeys;
+
+    protected int[] mValues;
+
+    protected int mSize;
+
+    public LongIntHashMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public LongIntHashMap(int expectedSize) {
+        int capacity = DEFAULT_CAPACITY;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        mKeys = new long[capacity];
+        mValues = new int[capacity];
+        Arrays.fill(mValues, EMPTY);
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * @return 没有时返回{@link #EMPTY}
+     */
+    public int get(long key) {
+        int mask = mValues.length - 1;
+        for (int slot = LongHashMap.hash(key) & mask; mValues[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (mKeys[slot] == key) {
+                return mValues[slot];
+            }
+        }
+        return EMPTY;
+    }
+
+    /**
+     * @return 原来的值，没有时返回{@link #EMPTY}
+     */
+    public int put(long key, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("value < 0");
+        }
+        int mask = mValues.length - 1;
+        int slot = LongHashMap.hash(key) & mask;
+        for (; mValues[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (mKeys[slot] == key) {
+                int old = mValues[slot];
+                mValues[slot] = value;
+                return old;
+            }
+        }
+        mKeys[slot] = key;
+        mValues[slot] = value;
+        if (++mSize * 2 > mValues.length) {
+            resize(mValues.length * 2);
+        }
+        return EMPTY;
+    }
+
+    /**
+     * @return 删除的值，没有时返回{@link #EMPTY}
+     */
+    public int remove(long key) {
+        int mask = mValues.length - 1;
+        for (int slot = LongHashMap.hash(key) & mask; mValues[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (mKeys[slot] == key) {
+                int old = mValues[slot];
+                shiftBack(slot);
+                mSize--;
+                return old;
+            }
+        }
+        return EMPTY;
+    }
+
+    public void clear() {
+        Arrays.fill(mValues, EMPTY);
+        mSize = 0;
+    }
+
+    protected void shiftBack(int slot) {
+        int mask = mValues.length - 1;
+        int empty = slot;
+        for (int next = (slot + 1) & mask; mValues[next] != EMPTY; next = (next + 1) & mask) {
+            int home = LongHashMap.hash(mKeys[next]) & mask;
+            if (empty <= next ? (home <= empty || home > next) : (home <= empty && home > next)) {
+                mKeys[empty] = mKeys[next];
+                mValues[empty] = mValues[next];
+                empty = next;
+            }
+        }
+        mValues[empty] = EMPTY;
+    }
+
+    protected void resize(int capacity) {
+        long[] keys = mKeys;
+        int[] values = mValues;
+        mKeys = new long[capacity];
+        mValues = new int[capacity];
+        Arrays.fill(mValues, EMPTY);
+        int mask = capacity - 1;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != EMPTY) {
+                int slot = LongHashMap.hash(keys[i]) & mask;
+                while (mValues[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                mKeys[slot] = keys[i];
+                mValues[slot] = values[i];
+            }
+        }
+    }
+}
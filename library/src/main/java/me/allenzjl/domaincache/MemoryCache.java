@@ -0,0 +1,180 @@
+package me.allenzjl.domaincache;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 进程内的一级缓存，位于SQLite之前，按最近最少使用的顺序淘汰。
+ */
+public class MemoryCache {
+
+    /**
+     * 读取时直接返回已解码的同一个实例，调用方不能修改返回的结果。
+     */
+    public static final int MODE_SHARED = 0;
+
+    /**
+     * 读取时从保存的编码数据重新解码出一份拷贝，调用方可以任意修改返回的结果。
+     */
+    public static final int MODE_COPY_ON_READ = 1;
+
+    protected final int mMaxSize;
+
+    protected final int mMode;
+
+    protected final LinkedHashMap<String, Entry> mEntries;
+
+    public MemoryCache(int maxSize, int mode) {
+        if (mode != MODE_SHARED && mode != MODE_COPY_ON_READ) {
+            throw new IllegalArgumentException("Unknown mode: " + mode);
+        }
+        mMaxSize = maxSize;
+        mMode = mode;
+        mEntries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > mMaxSize;
+            }
+        };
+    }
+
+    public static String buildKey(String key, String parameterJson) {
+        return key + '\n' + parameterJson;
+    }
+
+    public boolean isEnabled() {
+        return mMaxSize > 0;
+    }
+
+    public int getMode() {
+        return mMode;
+    }
+
+    /**
+     * 查找缓存。
+     *
+     * @param codec 优先使用的编解码器，可以为null
+     * @return 命中时返回解码后的结果，未命中或已过期时返回null
+     */
+    public Object get(String memoryKey, Class resultClass, boolean isArray, Codec codec) {
+        if (!isEnabled()) {
+            return null;
+        }
+        Entry entry;
+        synchronized (mEntries) {
+            entry = mEntries.get(memoryKey);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.isExpired(System.currentTimeMillis())) {
+                mEntries.remove(memoryKey);
+                return null;
+            }
+        }
+        return entry.getResult(resultClass, isArray, codec, mMode);
+    }
+
+    /**
+     * 保存缓存。
+     *
+     * @param data 编码后的结果，读取时不会改变它的位置，可以是段文件的映射区域
+     */
+    public void put(String memoryKey, ByteBuffer data, Codec codec, long expired, String alias, Object decoded, Class resultClass,
+                    boolean isArray) {
+        if (!isEnabled()) {
+            return;
+        }
+        Entry entry = new Entry(data, codec, expired, alias);
+        if (decoded != null && mMode == MODE_SHARED) {
+            entry.setDecoded(decoded, resultClass, isArray);
+        }
+        synchronized (mEntries) {
+            mEntries.put(memoryKey, entry);
+        }
+    }
+
+    public void remove(String memoryKey) {
+        synchronized (mEntries) {
+            mEntries.remove(memoryKey);
+        }
+    }
+
+    public void removeAlias(String alias) {
+        if (alias == null) {
+            return;
+        }
+        synchronized (mEntries) {
+            Iterator<Entry> iterator = mEntries.values().iterator();
+            while (iterator.hasNext()) {
+                if (alias.equals(iterator.next().mAlias)) {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    public void clear() {
+        synchronized (mEntries) {
+            mEntries.clear();
+        }
+    }
+
+    protected static class Entry {
+
+        protected final ByteBuffer mData;
+
+        protected final Codec mCodec;
+
+        protected final long mExpired;
+
+        protected final String mAlias;
+
+        protected volatile Decoded mDecoded;
+
+        protected Entry(ByteBuffer data, Codec codec, long expired, String alias) {
+            mData = data;
+            mCodec = codec;
+            mExpired = expired;
+            mAlias = alias;
+        }
+
+        protected boolean isExpired(long now) {
+            return mExpired != 0 && now > mExpired;
+        }
+
+        protected void setDecoded(Object result, Class resultClass, boolean isArray) {
+            mDecoded = new Decoded(result, resultClass, isArray);
+        }
+
+        protected Object getResult(Class resultClass, boolean isArray, Codec codec, int mode) {
+            if (mode == MODE_SHARED) {
+                Decoded decoded = mDecoded;
+                if (decoded != null && decoded.mResultClass == resultClass && decoded.mArray == isArray) {
+                    return decoded.mResult;
+                }
+                Object result = CacheStorage.selectCodec(mCodec, codec).decode(mData.duplicate(), resultClass, isArray);
+                setDecoded(result, resultClass, isArray);
+                return result;
+            } else {
+                return CacheStorage.selectCodec(mCodec, codec).decode(mData.duplicate(), resultClass, isArray);
+            }
+        }
+    }
+
+    protected static class Decoded {
+
+        protected final Object mResult;
+
+        protected final Class mResultClass;
+
+        protected final boolean mArray;
+
+        protected Decoded(Object result, Class resultClass, boolean isArray) {
+            mResult = result;
+            mResultClass = resultClass;
+            mArray = isArray;
+        }
+    }
+}
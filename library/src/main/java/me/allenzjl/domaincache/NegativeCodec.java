@@ -0,0 +1,48 @@
+package me.allenzjl.domaincache;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 源方法返回null时写入的否定缓存的编解码器，只保存一个字节，解码得到{@link #ABSENT}，与未命中区分。
+ * <p>
+ * 通过{@link CacheStorage#getObjectResult(CacheKey, Class, Codec)}等方法读到时{@link CacheResult#isNegative()}为true，
+ * {@link CacheStorage#getObject(CacheKey, Class, Codec)}等方法仍然返回null。
+ */
+public class NegativeCodec implements Codec {
+
+    public static final int ID = -1;
+
+    public static final String NAME = "negative";
+
+    public static final NegativeCodec INSTANCE = new NegativeCodec();
+
+    /**
+     * 否定缓存解码后的结果。
+     */
+    public static final Object ABSENT = new Object();
+
+    private static final byte[] DATA = new byte[]{0};
+
+    @Override
+    public int getId() {
+        return ID;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public byte[] encode(Object value) {
+        if (value != null) {
+            throw new IllegalArgumentException("value != null");
+        }
+        return DATA.clone();
+    }
+
+    @Override
+    public Object decode(ByteBuffer data, Class resultClass, boolean isArray) {
+        return ABSENT;
+    }
+}
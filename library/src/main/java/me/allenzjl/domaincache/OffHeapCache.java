@@ -0,0 +1,428 @@
+package me.allenzjl.domaincache;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 二级内存缓存，位于{@link MemoryCache}和{@link CacheStore}之间，把编码后的结果保存在堆外的直接内存中，不增加GC的负担。
+ * <p>
+ * 直接内存按{@link #SLAB_SIZE}分成若干块，总量不超过设置的容量，用到时才分配。每块属于一个大小级别，切分成相同大小的槽位，
+ * 结果保存在能放下它的最小级别的槽位中，超过一块大小的结果不保存。级别中没有空闲槽位且不能再分配新块时，按CLOCK算法淘汰这个级别中的槽位；
+ * 级别中还没有块时，清空块最多的级别中的一块转给它。
+ * 索引是以指纹为键的{@link LongIntHashMap}。
+ * <p>
+ * 容量足够时按指纹分成最多{@link #MAX_STRIPES}个分段，每个分段有自己的块、级别和索引，各自加锁，
+ * 内存缓存未命中时的读取和写入不会都排在一把锁上。每个分段至少有{@link #MIN_SLABS_PER_STRIPE}块，容量平均分给各个分段。
+ * <p>
+ * 读取时把结果复制到堆上再解码，不会在解码期间被覆盖。
+ */
+public class OffHeapCache {
+
+    public static final int SLAB_SIZE = 256 * 1024;
+
+    public static final int MIN_SLOT_SIZE = 128;
+
+    public static final long DEFAULT_CAPACITY = 8 * 1024 * 1024;
+
+    public static final int MAX_STRIPES = 8;
+
+    public static final int MIN_SLABS_PER_STRIPE = 8;
+
+    protected static final int SLOT_BITS = 11;
+
+    /**
+     * 命中的缓存，用来放入{@link MemoryCache}。
+     */
+    public static class Value {
+
+        protected final ByteBuffer mData;
+
+        protected final Codec mCodec;
+
+        protected final long mExpired;
+
+        protected final String mAlias;
+
+        protected Value(ByteBuffer data, Codec codec, long expired, String alias) {
+            mData = data;
+            mCodec = codec;
+            mExpired = expired;
+            mAlias = alias;
+        }
+
+        public ByteBuffer getData() {
+            return mData;
+        }
+
+        public Codec getCodec() {
+            return mCodec;
+        }
+
+        public long getExpired() {
+            return mExpired;
+        }
+
+        public String getAlias() {
+            return mAlias;
+        }
+
+        public Object decode(Class resultClass, boolean isArray, Codec codec) {
+            return CacheStorage.selectCodec(mCodec, codec).decode(mData.duplicate(), resultClass, isArray);
+        }
+    }
+
+    /**
+     * 一块直接内存和它的槽位信息，槽位的键为null时是空闲的。
+     */
+    protected static class Slab {
+
+        final ByteBuffer mBuffer;
+
+        final int mSlotSize;
+
+        final long[] mFingerprints;
+
+        final String[] mKeys;
+
+        final String[] mAliases;
+
+        final Codec[] mCodecs;
+
+        final long[] mExpired;
+
+        final int[] mLengths;
+
+        final boolean[] mReferenced;
+
+        Slab(ByteBuffer buffer, int slotSize) {
+            int count = SLAB_SIZE / slotSize;
+            mBuffer = buffer;
+            mSlotSize = slotSize;
+            mFingerprints = new long[count];
+            mKeys = new String[count];
+            mAliases = new String[count];
+            mCodecs = new Codec[count];
+            mExpired = new long[count];
+            mLengths = new int[count];
+            mReferenced = new boolean[count];
+        }
+
+        int slotCount() {
+            return mKeys.length;
+        }
+    }
+
+    /**
+     * 一个大小级别的块、空闲槽位和CLOCK指针。
+     */
+    protected static class SizeClass {
+
+        final int mSlotSize;
+
+        final List<Integer> mSlabs = new ArrayList<>();
+
+        int[] mFree = new int[0];
+
+        int mFreeCount;
+
+        int mHand;
+
+        SizeClass(int slotSize) {
+            mSlotSize = slotSize;
+        }
+
+        void pushFree(int handle) {
+            if (mFreeCount == mFree.length) {
+                int[] free = new int[Math.max(16, mFree.length * 2)];
+                System.arraycopy(mFree, 0, free, 0, mFreeCount);
+                mFree = free;
+            }
+            mFree[mFreeCount++] = handle;
+        }
+    }
+
+    /**
+     * 一个分段，所有方法都在它自己的锁内执行。
+     */
+    protected static class Stripe {
+
+        final int mMaxSlabs;
+
+        final List<Slab> mSlabs = new ArrayList<>();
+
+        final SizeClass[] mClasses;
+
+        final LongIntHashMap mIndex = new LongIntHashMap();
+
+        Stripe(int maxSlabs) {
+            mMaxSlabs = maxSlabs;
+            List<SizeClass> classes = new ArrayList<>();
+            for (int slotSize = MIN_SLOT_SIZE; slotSize <= SLAB_SIZE; slotSize <<= 1) {
+                classes.add(new SizeClass(slotSize));
+            }
+            mClasses = classes.toArray(new SizeClass[classes.size()]);
+        }
+
+        synchronized Value get(long fingerprint, String memoryKey, long now) {
+            int handle = mIndex.get(fingerprint);
+            if (handle == LongIntHashMap.EMPTY) {
+                return null;
+            }
+            Slab slab = mSlabs.get(handle >>> SLOT_BITS);
+            int slot = handle & ((1 << SLOT_BITS) - 1);
+            if (!memoryKey.equals(slab.mKeys[slot])) {
+                return null;
+            }
+            long expired = slab.mExpired[slot];
+            if (expired != 0 && now > expired) {
+                mIndex.remove(fingerprint);
+                free(handle);
+                return null;
+            }
+            slab.mReferenced[slot] = true;
+            byte[] data = new byte[slab.mLengths[slot]];
+            ByteBuffer buffer = slab.mBuffer.duplicate();
+            buffer.position(slot * slab.mSlotSize);
+            buffer.get(data);
+            return new Value(ByteBuffer.wrap(data), slab.mCodecs[slot], expired, slab.mAliases[slot]);
+        }
+
+        synchronized void put(long fingerprint, String memoryKey, ByteBuffer data, Codec codec, long expired, String alias) {
+            int old = mIndex.remove(fingerprint);
+            if (old != LongIntHashMap.EMPTY) {
+                free(old);
+            }
+            int length = data.remaining();
+            if (length > SLAB_SIZE) {
+                return;
+            }
+            int handle = allocate(classFor(length));
+            if (handle == LongIntHashMap.EMPTY) {
+                return;
+            }
+            Slab slab = mSlabs.get(handle >>> SLOT_BITS);
+            int slot = handle & ((1 << SLOT_BITS) - 1);
+            ByteBuffer buffer = slab.mBuffer.duplicate();
+            buffer.position(slot * slab.mSlotSize);
+            buffer.put(data.duplicate());
+            slab.mFingerprints[slot] = fingerprint;
+            slab.mKeys[slot] = memoryKey;
+            slab.mAliases[slot] = alias;
+            slab.mCodecs[slot] = codec;
+            slab.mExpired[slot] = expired;
+            slab.mLengths[slot] = length;
+            slab.mReferenced[slot] = false;
+            mIndex.put(fingerprint, handle);
+        }
+
+        synchronized void remove(long fingerprint) {
+            int handle = mIndex.remove(fingerprint);
+            if (handle != LongIntHashMap.EMPTY) {
+                free(handle);
+            }
+        }
+
+        synchronized void removeAlias(String alias) {
+            for (int i = 0; i < mSlabs.size(); i++) {
+                Slab slab = mSlabs.get(i);
+                for (int slot = 0; slot < slab.slotCount(); slot++) {
+                    if (slab.mKeys[slot] != null && alias.equals(slab.mAliases[slot])) {
+                        mIndex.remove(slab.mFingerprints[slot]);
+                        free(i << SLOT_BITS | slot);
+                    }
+                }
+            }
+        }
+
+        synchronized void clear() {
+            for (int i = 0; i < mSlabs.size(); i++) {
+                Slab slab = mSlabs.get(i);
+                for (int slot = 0; slot < slab.slotCount(); slot++) {
+                    if (slab.mKeys[slot] != null) {
+                        free(i << SLOT_BITS | slot);
+                    }
+                }
+            }
+            mIndex.clear();
+        }
+
+        SizeClass classFor(int length) {
+            int index = 0;
+            while (mClasses[index].mSlotSize < length) {
+                index++;
+            }
+            return mClasses[index];
+        }
+
+        /**
+         * 依次尝试空闲槽位、新分配的块和CLOCK淘汰。
+         *
+         * @return 槽位，这个级别没有块且不能再分配时返回{@link LongIntHashMap#EMPTY}
+         */
+        int allocate(SizeClass sizeClass) {
+            if (sizeClass.mFreeCount == 0 && mSlabs.size() < mMaxSlabs) {
+                int slabIndex = mSlabs.size();
+                mSlabs.add(new Slab(ByteBuffer.allocateDirect(SLAB_SIZE), sizeClass.mSlotSize));
+                assign(sizeClass, slabIndex);
+            } else if (sizeClass.mSlabs.isEmpty()) {
+                reassign(sizeClass);
+            }
+            if (sizeClass.mFreeCount > 0) {
+                return sizeClass.mFree[--sizeClass.mFreeCount];
+            }
+            if (sizeClass.mSlabs.isEmpty()) {
+                return LongIntHashMap.EMPTY;
+            }
+            int slotCount = SLAB_SIZE / sizeClass.mSlotSize;
+            int total = sizeClass.mSlabs.size() * slotCount;
+            // 最多转两圈，第一圈清除所有引用位
+            for (int i = 0; i < total * 2; i++) {
+                int position = sizeClass.mHand;
+                sizeClass.mHand = (position + 1) % total;
+                int slabIndex = sizeClass.mSlabs.get(position / slotCount);
+                int slot = position % slotCount;
+                Slab slab = mSlabs.get(slabIndex);
+                if (slab.mReferenced[slot]) {
+                    slab.mReferenced[slot] = false;
+                    continue;
+                }
+                mIndex.remove(slab.mFingerprints[slot]);
+                clearSlot(slab, slot);
+                return slabIndex << SLOT_BITS | slot;
+            }
+            return LongIntHashMap.EMPTY;
+        }
+
+        void assign(SizeClass sizeClass, int slabIndex) {
+            sizeClass.mSlabs.add(slabIndex);
+            for (int slot = SLAB_SIZE / sizeClass.mSlotSize - 1; slot >= 0; slot--) {
+                sizeClass.pushFree(slabIndex << SLOT_BITS | slot);
+            }
+        }
+
+        /**
+         * 清空块最多的级别的最后一块，转给sizeClass。
+         */
+        void reassign(SizeClass sizeClass) {
+            SizeClass donor = null;
+            for (SizeClass candidate : mClasses) {
+                if (candidate != sizeClass && (donor == null || candidate.mSlabs.size() > donor.mSlabs.size())) {
+                    donor = candidate;
+                }
+            }
+            if (donor == null || donor.mSlabs.isEmpty()) {
+                return;
+            }
+            int slabIndex = donor.mSlabs.remove(donor.mSlabs.size() - 1);
+            Slab slab = mSlabs.get(slabIndex);
+            for (int slot = 0; slot < slab.slotCount(); slot++) {
+                if (slab.mKeys[slot] != null) {
+                    mIndex.remove(slab.mFingerprints[slot]);
+                }
+            }
+            int count = 0;
+            for (int i = 0; i < donor.mFreeCount; i++) {
+                if (donor.mFree[i] >>> SLOT_BITS != slabIndex) {
+                    donor.mFree[count++] = donor.mFree[i];
+                }
+            }
+            donor.mFreeCount = count;
+            donor.mHand = 0;
+            mSlabs.set(slabIndex, new Slab(slab.mBuffer, sizeClass.mSlotSize));
+            assign(sizeClass, slabIndex);
+        }
+
+        void free(int handle) {
+            Slab slab = mSlabs.get(handle >>> SLOT_BITS);
+            int slot = handle & ((1 << SLOT_BITS) - 1);
+            clearSlot(slab, slot);
+            classFor(slab.mSlotSize).pushFree(handle);
+        }
+
+        static void clearSlot(Slab slab, int slot) {
+            slab.mKeys[slot] = null;
+            slab.mAliases[slot] = null;
+            slab.mCodecs[slot] = null;
+            slab.mReferenced[slot] = false;
+        }
+    }
+
+    protected final Stripe[] mStripes;
+
+    protected final int mStripeShift;
+
+    public OffHeapCache(long capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity < 0");
+        }
+        int maxSlabs = (int) Math.min(capacity / SLAB_SIZE, Integer.MAX_VALUE >> SLOT_BITS);
+        int stripes = 1;
+        while (stripes < MAX_STRIPES && maxSlabs / (stripes * 2) >= MIN_SLABS_PER_STRIPE) {
+            stripes <<= 1;
+        }
+        mStripes = new Stripe[stripes];
+        mStripeShift = 32 - Integer.numberOfTrailingZeros(stripes);
+        for (int i = 0; i < stripes; i++) {
+            // 余下的块分给前面的分段
+            mStripes[i] = new Stripe(maxSlabs / stripes + (i < maxSlabs % stripes ? 1 : 0));
+        }
+    }
+
+    public boolean isEnabled() {
+        return mStripes[0].mMaxSlabs > 0;
+    }
+
+    /**
+     * 查找缓存。
+     *
+     * @return 命中时返回复制到堆上的结果，未命中、键冲突或已过期时返回null
+     */
+    public Value get(long fingerprint, String memoryKey, long now) {
+        if (!isEnabled()) {
+            return null;
+        }
+        return stripeFor(fingerprint).get(fingerprint, memoryKey, now);
+    }
+
+    /**
+     * 保存缓存，替换同一个指纹原有的缓存。超过{@link #SLAB_SIZE}的结果不保存。
+     *
+     * @param data 编码后的结果，不会改变它的位置
+     */
+    public void put(long fingerprint, String memoryKey, ByteBuffer data, Codec codec, long expired, String alias) {
+        if (!isEnabled()) {
+            return;
+        }
+        stripeFor(fingerprint).put(fingerprint, memoryKey, data, codec, expired, alias);
+    }
+
+    public void remove(long fingerprint) {
+        stripeFor(fingerprint).remove(fingerprint);
+    }
+
+    public void removeAlias(String alias) {
+        if (alias == null) {
+            return;
+        }
+        for (Stripe stripe : mStripes) {
+            stripe.removeAlias(alias);
+        }
+    }
+
+    public void clear() {
+        for (Stripe stripe : mStripes) {
+            stripe.clear();
+        }
+    }
+
+    /**
+     * 用混合后的高位选择分段，索引使用低位。
+     */
+    protected Stripe stripeFor(long fingerprint) {
+        if (mStripes.length == 1) {
+            return mStripes[0];
+        }
+        return mStripes[LongHashMap.hash(fingerprint) >>> mStripeShift];
+    }
+}
@@ -0,0 +1,79 @@
+package me.allenzjl.domaincache;
+
+/**
+ * 一条等待写入数据库的缓存。
+ */
+public class PendingWrite {
+
+    protected final CacheKey mCacheKey;
+
+    protected final byte[] mData;
+
+    protected final Codec mCodec;
+
+    protected final long mExpired;
+
+    protected final long mSoftExpired;
+
+    protected final String mAlias;
+
+    protected final String mParamNames;
+
+    protected final Object[] mParams;
+
+    public PendingWrite(CacheKey cacheKey, byte[] data, Codec codec, long expired, long softExpired, String alias,
+                        String paramNames, Object[] params) {
+        mCacheKey = cacheKey;
+        mData = data;
+        mCodec = codec;
+        mExpired = expired;
+        mSoftExpired = softExpired;
+        mAlias = alias;
+        mParamNames = paramNames;
+        mParams = params;
+    }
+
+    public CacheKey getCacheKey() {
+        return mCacheKey;
+    }
+
+    public String getMemoryKey() {
+        return mCacheKey.getMemoryKey();
+    }
+
+    public byte[] getData() {
+        return mData;
+    }
+
+    public Codec getCodec() {
+        return mCodec;
+    }
+
+    public long getExpired() {
+        return mExpired;
+    }
+
+    public boolean isExpired(long now) {
+        return mExpired != 0 && now > mExpired;
+    }
+
+    public long getSoftExpired() {
+        return mSoftExpired;
+    }
+
+    public boolean isStale(long now) {
+        return mSoftExpired != 0 && now > mSoftExpired;
+    }
+
+    public String getAlias() {
+        return mAlias;
+    }
+
+    public String getParamNames() {
+        return mParamNames;
+    }
+
+    public Object[] getParams() {
+        return mParams;
+    }
+}
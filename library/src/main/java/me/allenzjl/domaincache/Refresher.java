@@ -0,0 +1,92 @@
+package me.allenzjl.domaincache;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 在后台刷新已经变旧的缓存，用于{@code CacheStrategy.STALE_WHILE_REVALIDATE}和{@code Cacheable.refreshAhead()}。
+ * <p>
+ * 线程数和等待队列都有上限，同一个缓存键同时只有一个刷新任务，队列已满时丢弃新的刷新，之后读到旧结果时再次提交，
+ * 刷新对源的并发调用不会超过线程数。
+ */
+public class Refresher {
+
+    public static final int DEFAULT_THREADS = 2;
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 64;
+
+    protected final ThreadPoolExecutor mExecutor;
+
+    protected final ConcurrentHashMap<Object, Boolean> mRefreshing = new ConcurrentHashMap<>();
+
+    protected final AtomicLong mDropped = new AtomicLong();
+
+    public Refresher(int threads, int queueCapacity) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("threads <= 0");
+        }
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("queueCapacity <= 0");
+        }
+        mExecutor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(queueCapacity), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "DomainCache-Refresher");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 提交key的刷新任务，key上已经有刷新任务在等待或执行时什么也不做。
+     *
+     * @return 提交成功时返回true
+     */
+    public boolean refresh(final Object key, final Runnable task) {
+        if (mRefreshing.putIfAbsent(key, Boolean.TRUE) != null) {
+            return false;
+        }
+        try {
+            mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        task.run();
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    } finally {
+                        mRefreshing.remove(key);
+                    }
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            mRefreshing.remove(key);
+            mDropped.incrementAndGet();
+            return false;
+        }
+    }
+
+    /**
+     * @return 因为队列已满而丢弃的刷新次数
+     */
+    public long getDroppedCount() {
+        return mDropped.get();
+    }
+
+    /**
+     * @return 正在等待或执行的刷新任务数
+     */
+    public int getPendingCount() {
+        return mRefreshing.size();
+    }
+}
@@ -0,0 +1,252 @@
+package me.allenzjl.domaincache;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 使用Android SQLite的{@link CacheStore}，数据库由{@link CacheStorageHelper}创建和升级。
+ */
+public class SQLiteCacheStore implements CacheStore {
+
+    protected final Context mContext;
+
+    protected final CacheStorageHelper mStorageHelper;
+
+    public SQLiteCacheStore(Context context) {
+        mContext = context;
+        mStorageHelper = new CacheStorageHelper(context);
+    }
+
+    @Override
+    public void open() {
+        mStorageHelper.open();
+    }
+
+    @Override
+    public void close() {
+        mStorageHelper.shutdown();
+    }
+
+    @Override
+    public File getSegmentDirectory() {
+        return new File(mContext.getFilesDir(), SegmentStore.DIR_NAME);
+    }
+
+    @Override
+    public CacheRow get(long id, long now) {
+        Cursor cursor = mStorageHelper.open().rawQuery(CacheSql.CACHE_QUERY_SQL,
+                new String[]{String.valueOf(id), String.valueOf(now)});
+        try {
+            return cursor.moveToFirst() ? readRow(cursor) : null;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Override
+    public List<CacheRow> getAll(List<Long> ids, long now) {
+        List<CacheRow> rows = new ArrayList<>(ids.size());
+        SQLiteDatabase db = mStorageHelper.open();
+        for (int from = 0; from < ids.size(); from += CacheSql.MAX_IN_SIZE) {
+            List<Long> chunk = ids.subList(from, Math.min(from + CacheSql.MAX_IN_SIZE, ids.size()));
+            String[] args = new String[chunk.size() + 1];
+            args[0] = String.valueOf(now);
+            for (int i = 0; i < chunk.size(); i++) {
+                args[i + 1] = String.valueOf(chunk.get(i));
+            }
+            Cursor cursor = db.rawQuery(CacheSql.inClause(CacheSql.CACHE_QUERY_IN_SQL_PREFIX, chunk.size()), args);
+            try {
+                while (cursor.moveToNext()) {
+                    rows.add(readRow(cursor));
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        return rows;
+    }
+
+    @Override
+    public void store(List<CacheRow> rows) {
+        SQLiteDatabase db = mStorageHelper.open();
+        db.beginTransaction();
+        try {
+            CacheStatements statements = mStorageHelper.getStatements();
+            for (CacheRow row : rows) {
+                statements.upsertCache(row);
+                statements.replaceParams(row.getId(), row.getAlias(), row.getParamNames(), row.getParams());
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    @Override
+    public void remove(String alias) {
+        mStorageHelper.open().delete(CacheStorageHelper.TABLE_CACHE, CacheSql.CACHE_REMOVE_WHERE_CLAUSE, new String[]{alias});
+    }
+
+    @Override
+    public void remove(String alias, String paramName, String compare, Object value) {
+        mStorageHelper.open()
+                .execSQL(CacheSql.CACHE_REMOVE_BY_PARAM_SQL_PREFIX + compare + " ?)", new Object[]{alias, paramName, value});
+    }
+
+    @Override
+    public int sweepExpired(long now, int batchSize) {
+        SQLiteDatabase db = mStorageHelper.open();
+        db.beginTransaction();
+        try {
+            List<Long> ids = new ArrayList<>();
+            Cursor cursor = db.rawQuery(CacheSql.EXPIRED_QUERY_SQL, new String[]{String.valueOf(now), String.valueOf(batchSize)});
+            try {
+                while (cursor.moveToNext()) {
+                    ids.add(cursor.getLong(0));
+                }
+            } finally {
+                cursor.close();
+            }
+            deleteCaches(db, ids);
+            db.setTransactionSuccessful();
+            return ids.size();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    @Override
+    public long evictLeastAccessed(int batchSize) {
+        SQLiteDatabase db = mStorageHelper.open();
+        db.beginTransaction();
+        try {
+            List<Long> ids = new ArrayList<>();
+            long freed = 0;
+            Cursor cursor = db.rawQuery(CacheSql.LEAST_ACCESSED_QUERY_SQL, new String[]{String.valueOf(batchSize)});
+            try {
+                while (cursor.moveToNext()) {
+                    ids.add(cursor.getLong(0));
+                    freed += cursor.getLong(1);
+                }
+            } finally {
+                cursor.close();
+            }
+            if (!ids.isEmpty()) {
+                deleteCaches(db, ids);
+                // 空缓存的大小也可能为0，按删除了1个字节计算，使淘汰继续下去
+                freed = Math.max(freed, 1);
+            }
+            db.setTransactionSuccessful();
+            return freed;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * 删除缓存，索引参数由触发器删除。
+     */
+    protected void deleteCaches(SQLiteDatabase db, List<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        db.execSQL(CacheSql.deleteIn(ids));
+    }
+
+    @Override
+    public long queryTotalSize() {
+        Cursor cursor = mStorageHelper.open().rawQuery(CacheSql.TOTAL_SIZE_QUERY_SQL, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Override
+    public void updateAccessed(Map<Long, Long> accesses) {
+        SQLiteDatabase db = mStorageHelper.open();
+        db.beginTransaction();
+        try {
+            CacheStatements statements = mStorageHelper.getStatements();
+            for (Map.Entry<Long, Long> entry : accesses.entrySet()) {
+                statements.updateAccessed(entry.getKey(), entry.getValue());
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    @Override
+    public Map<Integer, Long> scanSegments() {
+        Map<Integer, Long> segments = new HashMap<>();
+        Cursor cursor = mStorageHelper.open().rawQuery(CacheSql.SEGMENT_QUERY_SQL, null);
+        try {
+            while (cursor.moveToNext()) {
+                segments.put(cursor.getInt(0), cursor.getLong(1));
+            }
+        } finally {
+            cursor.close();
+        }
+        return segments;
+    }
+
+    @Override
+    public List<CacheRow> getSegmentRows(int segment) {
+        List<CacheRow> rows = new ArrayList<>();
+        Cursor cursor = mStorageHelper.open().rawQuery(CacheSql.SEGMENT_ROWS_QUERY_SQL, new String[]{String.valueOf(segment)});
+        try {
+            while (cursor.moveToNext()) {
+                rows.add(readRow(cursor));
+            }
+        } finally {
+            cursor.close();
+        }
+        return rows;
+    }
+
+    @Override
+    public boolean relocate(long id, SegmentStore.Pointer from, SegmentStore.Pointer to) {
+        SQLiteStatement statement = mStorageHelper.open().compileStatement(CacheSql.SEGMENT_RELOCATE_SQL);
+        try {
+            statement.bindLong(1, to.getSegment());
+            statement.bindLong(2, to.getOffset());
+            statement.bindLong(3, to.getLength());
+            statement.bindLong(4, id);
+            statement.bindLong(5, from.getSegment());
+            statement.bindLong(6, from.getOffset());
+            return statement.executeUpdateDelete() > 0;
+        } finally {
+            statement.close();
+        }
+    }
+
+    protected static CacheRow readRow(Cursor cursor) {
+        SegmentStore.Pointer pointer = null;
+        int segmentIndex = cursor.getColumnIndex(CacheStorageHelper.CacheTableColumn.SEGMENT);
+        if (!cursor.isNull(segmentIndex)) {
+            pointer = new SegmentStore.Pointer(cursor.getInt(segmentIndex),
+                    cursor.getLong(cursor.getColumnIndex(CacheStorageHelper.CacheTableColumn.SEGMENT_OFFSET)),
+                    cursor.getInt(cursor.getColumnIndex(CacheStorageHelper.CacheTableColumn.SEGMENT_LENGTH)));
+        }
+        // 保存在段文件中的结果不经过CursorWindow
+        byte[] data = pointer == null ? cursor.getBlob(cursor.getColumnIndex(CacheStorageHelper.CacheTableColumn.RESULT)) : null;
+        return new CacheRow(cursor.getLong(cursor.getColumnIndex(CacheStorageHelper.CacheTableColumn.ID)),
+                cursor.getString(cursor.getColumnIndex(CacheStorageHelper.CacheTableColumn.KEY)),
+                cursor.getString(cursor.getColumnIndex(CacheStorageHelper.CacheTableColumn.PARAMETER)), data, pointer,
+                cursor.getInt(cursor.getColumnIndex(CacheStorageHelper.CacheTableColumn.CODEC)),
+                cursor.getInt(cursor.getColumnIndex(CacheStorageHelper.CacheTableColumn.COMPRESSION)),
+                cursor.getString(cursor.getColumnIndex(CacheStorageHelper.CacheTableColumn.ALIAS)),
+                cursor.getLong(cursor.getColumnIndex(CacheStorageHelper.CacheTableColumn.EXPIRED)),
+                cursor.getLong(cursor.getColumnIndex(CacheStorageHelper.CacheTableColumn.SOFT_EXPIRED)));
+    }
+}
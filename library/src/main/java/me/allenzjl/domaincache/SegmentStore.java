@@ -0,0 +1,338 @@
+package me.allenzjl.domaincache;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 保存大缓存结果的段文件。结果追加写入当前的段文件，CACHE表中只保存它的位置（段号、偏移、长度）；
+ * 读取时把段文件映射到内存，直接返回映射区域的切片，不经过CursorWindow，也不复制数据。
+ * <p>
+ * 段文件只追加不修改，被覆盖或删除的结果留在原来的段文件中，段文件中的结果都不再被引用后由{@link #collect(CacheStore)}删除。
+ * 仍被引用的字节不到{@link #COMPACT_LIVE_PERCENT}%的段文件由{@link #compact(CacheStore)}把其中的结果复制到当前段文件后删除。
+ * 追加的位置在引用它的事务提交之前是被占用的，需要在提交之后调用{@link #release(Pointer)}，被占用的段文件不会被回收，
+ * 因此多个线程可以同时追加、提交和回收。读取可以在任意线程中调用。
+ */
+public class SegmentStore {
+
+    public static final String DIR_NAME = "domain_cache_segments";
+
+    public static final long DEFAULT_MAX_SEGMENT_SIZE = 32 * 1024 * 1024;
+
+    public static final int COMPACT_LIVE_PERCENT = 50;
+
+    protected static final String SEGMENT_SUFFIX = ".seg";
+
+    protected final File mDirectory;
+
+    protected final long mMaxSegmentSize;
+
+    protected final Map<Integer, MappedByteBuffer> mMappings = new HashMap<>();
+
+    /**
+     * 段号到追加后还没有释放的位置数。
+     */
+    protected final Map<Integer, Integer> mPinned = new HashMap<>();
+
+    protected int mActiveSegment = -1;
+
+    protected RandomAccessFile mActiveFile;
+
+    protected long mActiveSize;
+
+    protected boolean mDirty;
+
+    /**
+     * 启动时可能留有已经不被引用的段文件，第一次写入后回收一次。
+     */
+    protected boolean mCollectPending = true;
+
+    protected final AtomicBoolean mCompacting = new AtomicBoolean();
+
+    public SegmentStore(File directory, long maxSegmentSize) {
+        mDirectory = directory;
+        mMaxSegmentSize = maxSegmentSize;
+    }
+
+    /**
+     * 把数据追加到当前的段文件，当前段文件写满时换到新的段文件。超过段文件大小的数据单独占用一个段文件。
+     * 返回的位置在{@link #release(Pointer)}之前不会被回收。
+     */
+    public synchronized Pointer append(byte[] data) throws IOException {
+        if (mActiveFile == null) {
+            openActive(lastSegment());
+        } else if (mActiveSize > 0 && mActiveSize + data.length > mMaxSegmentSize) {
+            closeActive();
+            openActive(mActiveSegment + 1);
+            mCollectPending = true;
+        }
+        long offset = mActiveSize;
+        mActiveFile.seek(offset);
+        mActiveFile.write(data);
+        mActiveSize += data.length;
+        mDirty = true;
+        Integer pinned = mPinned.get(mActiveSegment);
+        mPinned.put(mActiveSegment, pinned != null ? pinned + 1 : 1);
+        return new Pointer(mActiveSegment, offset, data.length);
+    }
+
+    /**
+     * 释放追加的位置，需要在引用它的事务提交或者放弃之后调用。
+     */
+    public synchronized void release(Pointer pointer) {
+        Integer pinned = mPinned.get(pointer.getSegment());
+        if (pinned == null) {
+            return;
+        }
+        if (pinned > 1) {
+            mPinned.put(pointer.getSegment(), pinned - 1);
+        } else {
+            mPinned.remove(pointer.getSegment());
+        }
+    }
+
+    /**
+     * 把追加的数据写入存储设备，需要在引用它们的事务提交之前调用。
+     */
+    public synchronized void sync() throws IOException {
+        if (mDirty && mActiveFile != null) {
+            mActiveFile.getChannel().force(false);
+            mDirty = false;
+        }
+    }
+
+    /**
+     * 读取保存的结果。
+     *
+     * @return 段文件映射区域的只读切片
+     * @throws IOException 段文件不存在或者位置超出了段文件
+     */
+    public ByteBuffer read(int segment, long offset, int length) throws IOException {
+        MappedByteBuffer mapping;
+        synchronized (this) {
+            mapping = mMappings.get(segment);
+            if (mapping == null || offset + length > mapping.capacity()) {
+                mapping = map(segment, offset + length);
+                mMappings.put(segment, mapping);
+            }
+        }
+        ByteBuffer buffer = mapping.duplicate();
+        buffer.position((int) offset);
+        buffer.limit((int) offset + length);
+        return buffer.slice();
+    }
+
+    public synchronized boolean isCollectPending() {
+        return mCollectPending;
+    }
+
+    /**
+     * 删除缓存之后调用，下次写入后回收一次。
+     */
+    public synchronized void requestCollect() {
+        mCollectPending = true;
+    }
+
+    /**
+     * 删除当前段文件和被占用的段文件以外所有不再被store引用的段文件。扫描引用时不能追加，
+     * 扫描之后才提交的位置在扫描时一定还被占用。
+     */
+    public synchronized void collect(CacheStore store) {
+        collect(store.scanSegments().keySet());
+    }
+
+    /**
+     * 回收不再被引用的段文件，并把仍被引用的字节不到{@link #COMPACT_LIVE_PERCENT}%的段文件中的结果复制到当前段文件，
+     * 复制之后这些段文件不再被引用，随之删除。复制期间被覆盖或删除的缓存不会被改回来。在后台线程中调用，同时只有一个线程合并。
+     */
+    public void compact(CacheStore store) throws IOException {
+        if (!mCompacting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            List<Integer> sparse = new ArrayList<>();
+            synchronized (this) {
+                Map<Integer, Long> liveSegments = store.scanSegments();
+                collect(liveSegments.keySet());
+                for (Map.Entry<Integer, Long> entry : liveSegments.entrySet()) {
+                    int segment = entry.getKey();
+                    if (segment == mActiveSegment || mPinned.containsKey(segment)) {
+                        continue;
+                    }
+                    long length = segmentFile(segment).length();
+                    if (entry.getValue() * 100 < length * COMPACT_LIVE_PERCENT) {
+                        sparse.add(segment);
+                    }
+                }
+            }
+            if (sparse.isEmpty()) {
+                return;
+            }
+            for (int segment : sparse) {
+                move(store, segment);
+            }
+            collect(store);
+        } finally {
+            mCompacting.set(false);
+        }
+    }
+
+    /**
+     * 把段文件中仍被引用的结果复制到当前段文件，写入存储设备后再修改store中的位置。
+     */
+    protected void move(CacheStore store, int segment) throws IOException {
+        List<CacheRow> rows = store.getSegmentRows(segment);
+        List<Pointer> moved = new ArrayList<>(rows.size());
+        try {
+            for (CacheRow row : rows) {
+                Pointer from = row.getPointer();
+                ByteBuffer buffer = read(from.getSegment(), from.getOffset(), from.getLength());
+                byte[] data = new byte[buffer.remaining()];
+                buffer.get(data);
+                moved.add(append(data));
+            }
+            sync();
+            for (int i = 0; i < rows.size(); i++) {
+                store.relocate(rows.get(i).getId(), rows.get(i).getPointer(), moved.get(i));
+            }
+        } finally {
+            for (Pointer pointer : moved) {
+                release(pointer);
+            }
+        }
+    }
+
+    /**
+     * 删除当前段文件和被占用的段文件以外所有不在liveSegments中的段文件。
+     *
+     * @param liveSegments CACHE表中仍然引用的段号
+     */
+    protected synchronized void collect(Set<Integer> liveSegments) {
+        mCollectPending = false;
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            int segment = parseSegment(file);
+            if (segment < 0 || segment == mActiveSegment || mPinned.containsKey(segment) || liveSegments.contains(segment)) {
+                continue;
+            }
+            mMappings.remove(segment);
+            if (!file.delete()) {
+                // 删除失败时留到下次回收
+                mCollectPending = true;
+            }
+        }
+    }
+
+    public synchronized void close() {
+        try {
+            closeActive();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        mMappings.clear();
+    }
+
+    protected MappedByteBuffer map(int segment, long minSize) throws IOException {
+        File file = segmentFile(segment);
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            long size = randomAccessFile.length();
+            if (size < minSize) {
+                throw new IOException("Segment " + file + " is shorter than " + minSize);
+            }
+            // 映射建立后与文件句柄无关，可以立即关闭文件
+            return randomAccessFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, size);
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    protected void openActive(int segment) throws IOException {
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+            throw new IOException("Failed to create " + mDirectory);
+        }
+        mActiveFile = new RandomAccessFile(segmentFile(segment), "rw");
+        mActiveSize = mActiveFile.length();
+        mActiveSegment = segment;
+    }
+
+    protected void closeActive() throws IOException {
+        if (mActiveFile != null) {
+            sync();
+            mActiveFile.close();
+            mActiveFile = null;
+        }
+    }
+
+    /**
+     * 返回编号最大的段文件，没有段文件时返回0。
+     */
+    protected int lastSegment() {
+        int last = 0;
+        File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                last = Math.max(last, parseSegment(file));
+            }
+        }
+        return last;
+    }
+
+    protected File segmentFile(int segment) {
+        return new File(mDirectory, segment + SEGMENT_SUFFIX);
+    }
+
+    protected static int parseSegment(File file) {
+        String name = file.getName();
+        if (!name.endsWith(SEGMENT_SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 结果在段文件中的位置。
+     */
+    public static class Pointer {
+
+        protected final int mSegment;
+
+        protected final long mOffset;
+
+        protected final int mLength;
+
+        protected Pointer(int segment, long offset, int length) {
+            mSegment = segment;
+            mOffset = offset;
+            mLength = length;
+        }
+
+        public int getSegment() {
+            return mSegment;
+        }
+
+        public long getOffset() {
+            return mOffset;
+        }
+
+        public int getLength() {
+            return mLength;
+        }
+    }
+}
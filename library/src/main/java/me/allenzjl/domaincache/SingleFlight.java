@@ -0,0 +1,120 @@
+package me.allenzjl.domaincache;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 合并同一个缓存键上同时进行的源调用。
+ * <p>
+ * 缓存未命中时先调用{@link #join(Object)}，第一个调用方成为领头者，调用源方法并写缓存；之后的调用方等待领头者结束后重新读缓存，
+ * 读到时不再调用源方法，计入{@link #getSuppressedCount()}。领头者失败或者结果没有写入缓存时，等待的调用方各自调用源方法，
+ * 不共享异常。
+ * <pre>
+ * Flight flight = singleFlight.join(key);
+ * try {
+ *     if (flight.await()) {
+ *         result = 重新读缓存;
+ *     }
+ *     if (result == null) {
+ *         result = 调用源方法并写缓存;
+ *     } else {
+ *         flight.shared();
+ *     }
+ * } finally {
+ *     flight.leave();
+ * }
+ * </pre>
+ */
+public class SingleFlight {
+
+    /**
+     * 一个调用方在一次合并中的身份。
+     */
+    public static class Flight {
+
+        protected final SingleFlight mOwner;
+
+        protected final Object mKey;
+
+        protected final CountDownLatch mDone;
+
+        protected final boolean mLeader;
+
+        protected Flight(SingleFlight owner, Object key, CountDownLatch done, boolean leader) {
+            mOwner = owner;
+            mKey = key;
+            mDone = done;
+            mLeader = leader;
+        }
+
+        public boolean isLeader() {
+            return mLeader;
+        }
+
+        /**
+         * 等待领头者结束，领头者自己直接返回。
+         *
+         * @return 等到领头者结束时返回true，调用方应当重新读缓存；领头者或者等待被中断时返回false
+         */
+        public boolean await() {
+            if (mLeader) {
+                return false;
+            }
+            try {
+                mDone.await();
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        /**
+         * 记录一次因为共享领头者的结果而省去的源调用。
+         */
+        public void shared() {
+            mOwner.mSuppressed.incrementAndGet();
+        }
+
+        /**
+         * 领头者结束合并并唤醒等待的调用方，需要在finally中调用。其他调用方调用时什么也不做。
+         */
+        public void leave() {
+            if (mLeader) {
+                mOwner.mFlights.remove(mKey, mDone);
+                mDone.countDown();
+            }
+        }
+    }
+
+    protected final ConcurrentHashMap<Object, CountDownLatch> mFlights = new ConcurrentHashMap<>();
+
+    protected final AtomicLong mSuppressed = new AtomicLong();
+
+    /**
+     * 加入key上正在进行的源调用，没有时成为领头者。
+     */
+    public Flight join(Object key) {
+        CountDownLatch done = new CountDownLatch(1);
+        CountDownLatch existing = mFlights.putIfAbsent(key, done);
+        if (existing != null) {
+            return new Flight(this, key, existing, false);
+        }
+        return new Flight(this, key, done, true);
+    }
+
+    /**
+     * @return 共享领头者的结果而省去的源调用次数
+     */
+    public long getSuppressedCount() {
+        return mSuppressed.get();
+    }
+
+    /**
+     * @return 正在进行的源调用数
+     */
+    public int getInFlightCount() {
+        return mFlights.size();
+    }
+}
@@ -0,0 +1,213 @@
+package me.allenzjl.domaincache;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 按缓存键分段的读写锁。
+ * <p>
+ * 同一分段内允许多个读者并发，写者互斥；单条缓存的读写只持有全局锁的共享模式，按alias批量删除时持有全局锁的独占模式。
+ * 每次加锁时先尝试立即获取，失败则计一次竞争再阻塞等待，可以通过统计数据观察锁竞争的情况。
+ */
+public class StripedLock {
+
+    public static final int DEFAULT_STRIPES = 16;
+
+    protected final ReentrantReadWriteLock[] mStripes;
+
+    protected final ReentrantReadWriteLock mAliasLock;
+
+    protected final AtomicLong mReadAcquisitions = new AtomicLong();
+
+    protected final AtomicLong mReadContentions = new AtomicLong();
+
+    protected final AtomicLong mWriteAcquisitions = new AtomicLong();
+
+    protected final AtomicLong mWriteContentions = new AtomicLong();
+
+    protected final AtomicLong mAliasAcquisitions = new AtomicLong();
+
+    protected final AtomicLong mAliasContentions = new AtomicLong();
+
+    public StripedLock(int stripes) {
+        if (stripes <= 0) {
+            throw new IllegalArgumentException("stripes <= 0");
+        }
+        int size = 1;
+        while (size < stripes) {
+            size <<= 1;
+        }
+        mStripes = new ReentrantReadWriteLock[size];
+        for (int i = 0; i < size; i++) {
+            mStripes[i] = new ReentrantReadWriteLock();
+        }
+        mAliasLock = new ReentrantReadWriteLock();
+    }
+
+    public int stripeFor(String key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return h & (mStripes.length - 1);
+    }
+
+    /**
+     * 返回一组键所在的分段，按升序排列并去掉重复，按这个顺序加锁不会死锁。
+     */
+    public int[] stripesFor(Collection<String> keys) {
+        boolean[] used = new boolean[mStripes.length];
+        int count = 0;
+        for (String key : keys) {
+            int stripe = stripeFor(key);
+            if (!used[stripe]) {
+                used[stripe] = true;
+                count++;
+            }
+        }
+        int[] stripes = new int[count];
+        for (int i = 0, j = 0; i < used.length; i++) {
+            if (used[i]) {
+                stripes[j++] = i;
+            }
+        }
+        return stripes;
+    }
+
+    public void lockRead(int stripe) {
+        acquire(mAliasLock.readLock(), null);
+        try {
+            acquire(mStripes[stripe].readLock(), mReadContentions);
+        } catch (RuntimeException e) {
+            mAliasLock.readLock().unlock();
+            throw e;
+        }
+        mReadAcquisitions.incrementAndGet();
+    }
+
+    public void unlockRead(int stripe) {
+        mStripes[stripe].readLock().unlock();
+        mAliasLock.readLock().unlock();
+    }
+
+    public void lockWrite(int stripe) {
+        acquire(mAliasLock.readLock(), null);
+        try {
+            acquire(mStripes[stripe].writeLock(), mWriteContentions);
+        } catch (RuntimeException e) {
+            mAliasLock.readLock().unlock();
+            throw e;
+        }
+        mWriteAcquisitions.incrementAndGet();
+    }
+
+    public void unlockWrite(int stripe) {
+        mStripes[stripe].writeLock().unlock();
+        mAliasLock.readLock().unlock();
+    }
+
+    /**
+     * 按{@link #stripesFor(Collection)}返回的顺序获取多个分段的读锁。
+     */
+    public void lockRead(int[] stripes) {
+        acquire(mAliasLock.readLock(), null);
+        for (int stripe : stripes) {
+            acquire(mStripes[stripe].readLock(), mReadContentions);
+        }
+        mReadAcquisitions.incrementAndGet();
+    }
+
+    public void unlockRead(int[] stripes) {
+        for (int i = stripes.length - 1; i >= 0; i--) {
+            mStripes[stripes[i]].readLock().unlock();
+        }
+        mAliasLock.readLock().unlock();
+    }
+
+    /**
+     * 按{@link #stripesFor(Collection)}返回的顺序获取多个分段的写锁。
+     */
+    public void lockWrite(int[] stripes) {
+        acquire(mAliasLock.readLock(), null);
+        for (int stripe : stripes) {
+            acquire(mStripes[stripe].writeLock(), mWriteContentions);
+        }
+        mWriteAcquisitions.incrementAndGet();
+    }
+
+    public void unlockWrite(int[] stripes) {
+        for (int i = stripes.length - 1; i >= 0; i--) {
+            mStripes[stripes[i]].writeLock().unlock();
+        }
+        mAliasLock.readLock().unlock();
+    }
+
+    /**
+     * 获取全局独占锁，用于按alias批量删除等跨分段的操作。
+     */
+    public void lockAll() {
+        acquire(mAliasLock.writeLock(), mAliasContentions);
+        mAliasAcquisitions.incrementAndGet();
+    }
+
+    public void unlockAll() {
+        mAliasLock.writeLock().unlock();
+    }
+
+    protected void acquire(Lock lock, AtomicLong contentions) {
+        if (!lock.tryLock()) {
+            if (contentions != null) {
+                contentions.incrementAndGet();
+            }
+            lock.lock();
+        }
+    }
+
+    public long getReadAcquisitions() {
+        return mReadAcquisitions.get();
+    }
+
+    /**
+     * 读锁因为分段被占用而需要等待的次数。
+     */
+    public long getReadContentions() {
+        return mReadContentions.get();
+    }
+
+    public long getWriteAcquisitions() {
+        return mWriteAcquisitions.get();
+    }
+
+    /**
+     * 写锁因为分段被占用而需要等待的次数。
+     */
+    public long getWriteContentions() {
+        return mWriteContentions.get();
+    }
+
+    public long getAliasAcquisitions() {
+        return mAliasAcquisitions.get();
+    }
+
+    /**
+     * 全局独占锁需要等待的次数。
+     */
+    public long getAliasContentions() {
+        return mAliasContentions.get();
+    }
+
+    public void resetStatistics() {
+        mReadAcquisitions.set(0);
+        mReadContentions.set(0);
+        mWriteAcquisitions.set(0);
+        mWriteContentions.set(0);
+        mAliasAcquisitions.set(0);
+        mAliasContentions.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return "StripedLock{stripes=" + mStripes.length + ", read=" + mReadContentions + "/" + mReadAcquisitions + ", write=" +
+                mWriteContentions + "/" + mWriteAcquisitions + ", alias=" + mAliasContentions + "/" + mAliasAcquisitions + "}";
+    }
+}
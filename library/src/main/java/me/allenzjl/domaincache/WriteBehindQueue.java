@@ -0,0 +1,280 @@
+package me.allenzjl.domaincache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 异步写缓存的队列。
+ * <p>
+ * 待写入的缓存按键合并，同一个键只保留最新的值；后台线程每次取出一批写入数据库，在写入完成之前仍然可以从队列中读到这些值。
+ * {@link #enqueue(PendingWrite)}不会阻塞，调用方需要在加锁之前调用{@link #awaitCapacity(int)}等待队列腾出空间，
+ * 因此队列最多超出容量同时写入的线程数。
+ * <p>
+ * 写入失败的缓存等待{@link #RETRY_DELAY}毫秒后重新加入队列一次，期间有新值的键或者队列已满时不再重试。再次失败时放弃，
+ * 并通过{@link Writer#onFailed(List)}通知调用方。写入时抛出的{@link Error}也按失败处理；后台线程意外退出时，
+ * 下次调用时重新启动，未完成的缓存重新加入队列。
+ */
+public class WriteBehindQueue {
+
+    public static final int DEFAULT_CAPACITY = 256;
+
+    public static final int DEFAULT_BATCH_SIZE = 64;
+
+    public static final long RETRY_DELAY = 500;
+
+    /**
+     * {@link #flush()}检查后台线程是否仍在运行的间隔毫秒数。
+     */
+    protected static final long DRAIN_CHECK_INTERVAL = 1000;
+
+    /**
+     * 在后台线程中把一批缓存写入数据库。
+     */
+    public interface Writer {
+        void write(List<PendingWrite> batch);
+
+        /**
+         * 重试之后仍然没有写入的缓存，已经从队列中移除。
+         */
+        void onFailed(List<PendingWrite> failed);
+    }
+
+    protected final Writer mWriter;
+
+    protected final int mCapacity;
+
+    protected final int mBatchSize;
+
+    protected final LinkedHashMap<String, PendingWrite> mQueued;
+
+    protected final Map<String, PendingWrite> mInFlight;
+
+    /**
+     * 已经重试过一次的缓存。
+     */
+    protected final Set<PendingWrite> mRetried;
+
+    protected final ReentrantLock mLock;
+
+    protected final Condition mNotEmpty;
+
+    protected final Condition mNotFull;
+
+    protected final Condition mDrained;
+
+    protected Thread mWriterThread;
+
+    public WriteBehindQueue(Writer writer, int capacity, int batchSize) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity <= 0");
+        }
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize <= 0");
+        }
+        mWriter = writer;
+        mCapacity = capacity;
+        mBatchSize = batchSize;
+        mQueued = new LinkedHashMap<>();
+        mInFlight = new LinkedHashMap<>();
+        mRetried = Collections.newSetFromMap(new IdentityHashMap<PendingWrite, Boolean>());
+        mLock = new ReentrantLock();
+        mNotEmpty = mLock.newCondition();
+        mNotFull = mLock.newCondition();
+        mDrained = mLock.newCondition();
+    }
+
+    /**
+     * 阻塞直到队列可以再加入count个缓存，count超过容量时等到队列为空。不能在持有{@link StripedLock}时调用。
+     */
+    public void awaitCapacity(int count) {
+        mLock.lock();
+        try {
+            ensureWriterThread();
+            while (!mQueued.isEmpty() && mQueued.size() + count > mCapacity) {
+                mNotFull.awaitUninterruptibly();
+            }
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    /**
+     * 加入一个待写入的缓存，同一个键尚未写入的旧值会被替换。不会阻塞，需要先调用{@link #awaitCapacity(int)}。
+     */
+    public void enqueue(PendingWrite write) {
+        mLock.lock();
+        try {
+            ensureWriterThread();
+            PendingWrite replaced = mQueued.put(write.getMemoryKey(), write);
+            if (replaced != null) {
+                mRetried.remove(replaced);
+            }
+            mNotEmpty.signal();
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    /**
+     * 查找尚未写入数据库的最新值。
+     *
+     * @return 待写入的缓存，没有时返回null
+     */
+    public PendingWrite get(String memoryKey) {
+        mLock.lock();
+        try {
+            PendingWrite write = mQueued.get(memoryKey);
+            if (write == null) {
+                write = mInFlight.get(memoryKey);
+            }
+            return write;
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    /**
+     * 阻塞直到所有已加入的缓存都写入数据库。
+     */
+    public void flush() {
+        mLock.lock();
+        try {
+            while (!mQueued.isEmpty() || !mInFlight.isEmpty()) {
+                ensureWriterThread();
+                try {
+                    mDrained.await(DRAIN_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    public int size() {
+        mLock.lock();
+        try {
+            return mQueued.size() + mInFlight.size();
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    /**
+     * 需要持有mLock调用。后台线程意外退出时把它未完成的缓存重新加入队列，再启动新的线程。
+     */
+    protected void ensureWriterThread() {
+        if (mWriterThread != null && !mWriterThread.isAlive()) {
+            for (PendingWrite write : mInFlight.values()) {
+                if (!mQueued.containsKey(write.getMemoryKey())) {
+                    mQueued.put(write.getMemoryKey(), write);
+                }
+            }
+            mInFlight.clear();
+            mWriterThread = null;
+        }
+        if (mWriterThread == null) {
+            mWriterThread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    drainLoop();
+                }
+            }, "DomainCache-Writer");
+            mWriterThread.setDaemon(true);
+            mWriterThread.start();
+        }
+    }
+
+    protected void drainLoop() {
+        List<PendingWrite> batch = new ArrayList<>(mBatchSize);
+        while (true) {
+            mLock.lock();
+            try {
+                while (mQueued.isEmpty()) {
+                    mNotEmpty.awaitUninterruptibly();
+                }
+                Iterator<PendingWrite> iterator = mQueued.values().iterator();
+                while (iterator.hasNext() && batch.size() < mBatchSize) {
+                    PendingWrite write = iterator.next();
+                    iterator.remove();
+                    mInFlight.put(write.getMemoryKey(), write);
+                    batch.add(write);
+                }
+                mNotFull.signalAll();
+            } finally {
+                mLock.unlock();
+            }
+            boolean written = false;
+            try {
+                mWriter.write(batch);
+                written = true;
+            } catch (Throwable e) {
+                // Error也不能让后台线程退出，否则这一批会一直留在mInFlight中
+                e.printStackTrace();
+            }
+            List<PendingWrite> failed = new ArrayList<>();
+            mLock.lock();
+            try {
+                for (PendingWrite write : batch) {
+                    boolean retried = mRetried.remove(write);
+                    if (written || mQueued.containsKey(write.getMemoryKey())) {
+                        // 队列中的新值会覆盖它
+                        mInFlight.remove(write.getMemoryKey());
+                    } else if (retried || mQueued.size() >= mCapacity) {
+                        // 通知调用方之后才移出mInFlight，flush()返回时失败的缓存已经处理完
+                        failed.add(write);
+                    } else {
+                        mInFlight.remove(write.getMemoryKey());
+                        mRetried.add(write);
+                        mQueued.put(write.getMemoryKey(), write);
+                    }
+                }
+                signalIfDrained();
+            } finally {
+                mLock.unlock();
+            }
+            batch.clear();
+            if (!failed.isEmpty()) {
+                try {
+                    mWriter.onFailed(failed);
+                } catch (Throwable e) {
+                    e.printStackTrace();
+                }
+                mLock.lock();
+                try {
+                    for (PendingWrite write : failed) {
+                        mInFlight.remove(write.getMemoryKey());
+                    }
+                    signalIfDrained();
+                } finally {
+                    mLock.unlock();
+                }
+            }
+            if (!written) {
+                // 失败通常是存储不可用，立即重试多半也会失败
+                try {
+                    Thread.sleep(RETRY_DELAY);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    protected void signalIfDrained() {
+        if (mQueued.isEmpty() && mInFlight.isEmpty()) {
+            mDrained.signalAll();
+        }
+    }
+}
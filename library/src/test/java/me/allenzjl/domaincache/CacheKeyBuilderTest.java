@@ -0,0 +1,51 @@
+package me.allenzjl.domaincache;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class CacheKeyBuilderTest {
+
+    /**
+     * fastjson序列化时调用getter，getter中再构造另一个缓存键，相当于在构造缓存键时调用了另一个生成的方法。
+     */
+    public static class Nested {
+
+        protected CacheKey mInner;
+
+        public int getId() {
+            mInner = CacheKeyBuilder.obtain("inner").put("a", 1).put("b", "x").build();
+            return 7;
+        }
+    }
+
+    @Test
+    public void buildsKeyInParameterOrder() {
+        CacheKey cacheKey = CacheKeyBuilder.obtain("key").put("a", 1).put("b", "x\n").put("c", (Object) null).put("d", true)
+                .build();
+        assertEquals("key", cacheKey.getKey());
+        assertEquals("{\"a\":1,\"b\":\"x\\n\",\"d\":true}", cacheKey.getParameter());
+    }
+
+    @Test
+    public void nestedKeyDoesNotCorruptOuterKey() {
+        Nested nested = new Nested();
+        CacheKey outer = CacheKeyBuilder.obtain("outer").put("first", 1).put("nested", nested).put("last", "z").build();
+        assertEquals("outer", outer.getKey());
+        assertEquals("{\"first\":1,\"nested\":{\"id\":7},\"last\":\"z\"}", outer.getParameter());
+        assertEquals("inner", nested.mInner.getKey());
+        assertEquals("{\"a\":1,\"b\":\"x\"}", nested.mInner.getParameter());
+    }
+
+    @Test
+    public void nestedKeyInsideParameterMethod() {
+        CacheKeyBuilder builder = CacheKeyBuilder.obtain("outer").put("first", 1);
+        // 与生成的代码一样，在构造外层缓存键时求值的参数调用了另一个生成的方法
+        CacheKey inner = CacheKeyBuilder.obtain("inner").put("a", 2).build();
+        CacheKey outer = builder.put("second", 2).build();
+        assertEquals("{\"first\":1,\"second\":2}", outer.getParameter());
+        assertEquals("{\"a\":2}", inner.getParameter());
+        // 之后仍然复用线程内的构建器
+        assertEquals("{\"a\":3}", CacheKeyBuilder.obtain("next").put("a", 3).build().getParameter());
+    }
+}
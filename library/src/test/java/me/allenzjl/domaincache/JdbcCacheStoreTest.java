@@ -0,0 +1,172 @@
+package me.allenzjl.domaincache;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 在JVM上通过sqlite-jdbc运行{@link JdbcCacheStore}。
+ */
+public class JdbcCacheStoreTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    protected String mUrl;
+
+    protected File mSegmentDirectory;
+
+    protected JdbcCacheStore mStore;
+
+    @Before
+    public void setUp() throws Exception {
+        mUrl = "jdbc:sqlite:" + new File(mFolder.getRoot(), "cache.db").getAbsolutePath();
+        mSegmentDirectory = mFolder.newFolder(SegmentStore.DIR_NAME);
+        mStore = new JdbcCacheStore(mUrl, mSegmentDirectory);
+    }
+
+    @After
+    public void tearDown() {
+        mStore.close();
+    }
+
+    @Test
+    public void storeAndGet() {
+        mStore.store(Collections.singletonList(row(1, "user", new byte[]{1, 2, 3}, 0)));
+        CacheRow row = mStore.get(1, System.currentTimeMillis());
+        assertNotNull(row);
+        assertEquals("key1", row.getKey());
+        assertEquals("parameter1", row.getParameter());
+        assertArrayEquals(new byte[]{1, 2, 3}, row.getData());
+        assertNull(row.getPointer());
+        assertEquals(JsonCodec.ID, row.getCodecId());
+        assertEquals("user", row.getAlias());
+        assertNull(mStore.get(2, System.currentTimeMillis()));
+    }
+
+    @Test
+    public void storeReplacesRow() {
+        mStore.store(Collections.singletonList(row(1, "user", new byte[]{1}, 0)));
+        mStore.store(Collections.singletonList(row(1, "user", new byte[]{2}, 0)));
+        assertArrayEquals(new byte[]{2}, mStore.get(1, System.currentTimeMillis()).getData());
+        assertEquals(rowSize(new byte[]{2}, 1), mStore.queryTotalSize());
+    }
+
+    @Test
+    public void getAllSkipsMissingAndExpired() {
+        long now = System.currentTimeMillis();
+        mStore.store(Arrays.asList(row(1, "user", new byte[]{1}, 0), row(2, "user", new byte[]{2}, now - 1000),
+                row(3, "user", new byte[]{3}, now + 60000)));
+        List<CacheRow> rows = mStore.getAll(Arrays.asList(1L, 2L, 3L, 4L), now);
+        assertEquals(2, rows.size());
+        assertNull(mStore.get(2, now));
+    }
+
+    @Test
+    public void removeByAlias() {
+        mStore.store(Arrays.asList(row(1, "user", new byte[]{1}, 0), row(2, "order", new byte[]{2}, 0)));
+        mStore.remove("user");
+        assertNull(mStore.get(1, System.currentTimeMillis()));
+        assertNotNull(mStore.get(2, System.currentTimeMillis()));
+    }
+
+    @Test
+    public void removeByParam() {
+        mStore.store(Arrays.asList(row(1, "user", new byte[]{1}, 0).setParams(new String[]{"id"}, new Object[]{7}),
+                row(2, "user", new byte[]{2}, 0).setParams(new String[]{"id"}, new Object[]{8})));
+        mStore.remove("user", "id", "=", 7);
+        assertNull(mStore.get(1, System.currentTimeMillis()));
+        assertNotNull(mStore.get(2, System.currentTimeMillis()));
+        mStore.remove("user", "id", "!=", 7);
+        assertNull(mStore.get(2, System.currentTimeMillis()));
+    }
+
+    @Test
+    public void sweepExpired() {
+        long now = System.currentTimeMillis();
+        mStore.store(Arrays.asList(row(1, "user", new byte[]{1}, now - 2000), row(2, "user", new byte[]{2}, now - 1000),
+                row(3, "user", new byte[]{3}, now + 60000), row(4, "user", new byte[]{4}, 0)));
+        assertEquals(1, mStore.sweepExpired(now, 1));
+        assertEquals(1, mStore.sweepExpired(now, 10));
+        assertEquals(0, mStore.sweepExpired(now, 10));
+        assertEquals(2, mStore.getAll(Arrays.asList(1L, 2L, 3L, 4L), 0).size());
+    }
+
+    @Test
+    public void evictLeastAccessed() {
+        mStore.store(Arrays.asList(row(1, "user", new byte[]{1}, 0).setUsage(10, 300),
+                row(2, "user", new byte[]{2}, 0).setUsage(20, 100), row(3, "user", new byte[]{3}, 0).setUsage(30, 200)));
+        mStore.updateAccessed(Collections.singletonMap(2L, 400L));
+        assertEquals(30, mStore.evictLeastAccessed(1));
+        assertNull(mStore.get(3, System.currentTimeMillis()));
+        assertEquals(30, mStore.queryTotalSize());
+    }
+
+    @Test
+    public void reopen() {
+        mStore.store(Collections.singletonList(row(1, "user", new byte[]{1, 2, 3}, 0)));
+        mStore.close();
+        mStore = new JdbcCacheStore(mUrl, mSegmentDirectory);
+        CacheRow row = mStore.get(1, System.currentTimeMillis());
+        assertNotNull(row);
+        assertArrayEquals(new byte[]{1, 2, 3}, row.getData());
+        mStore.remove("user");
+        mStore.close();
+        mStore = new JdbcCacheStore(mUrl, mSegmentDirectory);
+        assertNull(mStore.get(1, System.currentTimeMillis()));
+    }
+
+    @Test
+    public void segmentRows() {
+        SegmentStore.Pointer from = new SegmentStore.Pointer(0, 0, 100);
+        SegmentStore.Pointer to = new SegmentStore.Pointer(1, 0, 100);
+        mStore.store(Collections.singletonList(
+                new CacheRow(1, "key1", "parameter1", null, from, JsonCodec.ID, Compression.NONE, "user", 0, 0)));
+        Map<Integer, Long> segments = mStore.scanSegments();
+        assertEquals(Collections.singletonMap(0, 100L), segments);
+        assertEquals(1, mStore.getSegmentRows(0).size());
+        assertTrue(mStore.relocate(1, from, to));
+        assertFalse(mStore.relocate(1, from, to));
+        CacheRow row = mStore.get(1, System.currentTimeMillis());
+        assertEquals(1, row.getPointer().getSegment());
+        assertEquals(100, row.getPointer().getLength());
+        assertNull(row.getData());
+    }
+
+    @Test
+    public void cacheStorageRoundTrip() {
+        CacheStorage storage = new CacheStorage(new CacheConfig().setStore(mStore).setMemoryCacheSize(0).setSweepInterval(0));
+        try {
+            storage.put("key", "parameter", Arrays.asList("a", "b"), 0, "user", (String) null);
+            assertEquals(Arrays.asList("a", "b"), storage.getList("key", "parameter", String.class));
+            storage.remove("user");
+            assertNull(storage.getList("key", "parameter", String.class));
+        } finally {
+            storage.shutdown();
+        }
+    }
+
+    protected static CacheRow row(long id, String alias, byte[] data, long expired) {
+        return new CacheRow(id, "key" + id, "parameter" + id, data, null, JsonCodec.ID, Compression.NONE, alias, expired, 0)
+                .setUsage(rowSize(data, id), System.currentTimeMillis());
+    }
+
+    protected static long rowSize(byte[] data, long id) {
+        return data.length + ("key" + id).length() + ("parameter" + id).length();
+    }
+}
@@ -0,0 +1,230 @@
+package me.allenzjl.domaincache;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class LogCacheStoreTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    protected File mDirectory;
+
+    protected LogCacheStore mStore;
+
+    @Before
+    public void setUp() throws Exception {
+        mDirectory = new File(mFolder.getRoot(), LogCacheStore.DIR_NAME);
+        mStore = new LogCacheStore(mDirectory);
+    }
+
+    @After
+    public void tearDown() {
+        mStore.close();
+    }
+
+    @Test
+    public void reopenAfterClose() {
+        mStore.store(Arrays.asList(row(1, "user", new byte[]{1}), param(row(2, "user", new byte[]{2}), 7)));
+        mStore.store(Collections.singletonList(row(1, "user", new byte[]{3})));
+        mStore.store(Collections.singletonList(row(3, "user", new byte[]{4})));
+        mStore.remove("user", "id", "=", 99);
+        mStore.store(Collections.singletonList(row(4, null, new byte[]{5})));
+        mStore.remove("other");
+        mStore.close();
+        assertTrue(new File(mDirectory, "0.hint").isFile());
+
+        mStore = new LogCacheStore(mDirectory);
+        long now = System.currentTimeMillis();
+        assertArrayEquals(new byte[]{3}, mStore.get(1, now).getData());
+        assertArrayEquals(new byte[]{2}, mStore.get(2, now).getData());
+        assertArrayEquals(new byte[]{5}, mStore.get(4, now).getData());
+        assertEquals(rowSize(new byte[]{3}, 1) + rowSize(new byte[]{2}, 2) + rowSize(new byte[]{4}, 3) +
+                rowSize(new byte[]{5}, 4), mStore.queryTotalSize());
+        // 索引参数从提示文件中恢复
+        mStore.remove("user", "id", "=", 7);
+        assertNull(mStore.get(2, now));
+        assertNotNull(mStore.get(1, now));
+    }
+
+    @Test
+    public void reopenWithoutClose() {
+        mStore.store(Arrays.asList(row(1, "user", new byte[]{1}), param(row(2, "user", new byte[]{2}), 7)));
+        mStore.remove("user", "id", "=", 7);
+        // 进程被杀死时当前的日志文件没有提示文件
+        assertFalse(new File(mDirectory, "0.hint").exists());
+
+        mStore = new LogCacheStore(mDirectory);
+        long now = System.currentTimeMillis();
+        assertArrayEquals(new byte[]{1}, mStore.get(1, now).getData());
+        assertNull(mStore.get(2, now));
+        assertEquals(rowSize(new byte[]{1}, 1), mStore.queryTotalSize());
+        // 扫描时补写了提示文件
+        assertTrue(new File(mDirectory, "0.hint").isFile());
+    }
+
+    @Test
+    public void truncatesTornRecord() throws Exception {
+        mStore.store(Collections.singletonList(row(1, "user", new byte[]{1})));
+        File dataFile = new File(mDirectory, "0.log");
+        long validLength = dataFile.length();
+        mStore.store(Collections.singletonList(row(2, "user", new byte[]{2, 2, 2, 2})));
+        // 第二条记录只写入了一部分
+        RandomAccessFile file = new RandomAccessFile(dataFile, "rw");
+        try {
+            file.setLength(dataFile.length() - 3);
+        } finally {
+            file.close();
+        }
+
+        mStore = new LogCacheStore(mDirectory);
+        long now = System.currentTimeMillis();
+        assertArrayEquals(new byte[]{1}, mStore.get(1, now).getData());
+        assertNull(mStore.get(2, now));
+        assertEquals(validLength, dataFile.length());
+        mStore.store(Collections.singletonList(row(3, "user", new byte[]{3})));
+        mStore.close();
+
+        mStore = new LogCacheStore(mDirectory);
+        assertArrayEquals(new byte[]{1}, mStore.get(1, now).getData());
+        assertNull(mStore.get(2, now));
+        assertArrayEquals(new byte[]{3}, mStore.get(3, now).getData());
+    }
+
+    @Test
+    public void truncatesCorruptRecord() throws Exception {
+        mStore.store(Collections.singletonList(row(1, "user", new byte[]{1})));
+        File dataFile = new File(mDirectory, "0.log");
+        long validLength = dataFile.length();
+        mStore.store(Collections.singletonList(row(2, "user", new byte[]{2, 2, 2, 2})));
+        // 长度完整但内容损坏，CRC32不一致
+        RandomAccessFile file = new RandomAccessFile(dataFile, "rw");
+        try {
+            file.seek(dataFile.length() - 1);
+            file.write(9);
+        } finally {
+            file.close();
+        }
+
+        mStore = new LogCacheStore(mDirectory);
+        assertNotNull(mStore.get(1, System.currentTimeMillis()));
+        assertNull(mStore.get(2, System.currentTimeMillis()));
+        assertEquals(validLength, dataFile.length());
+    }
+
+    @Test(timeout = 10000)
+    public void compactionDropsDeadRecordsAndKeepsLiveOnes() throws Exception {
+        mStore = new LogCacheStore(mDirectory, 256);
+        for (int i = 1; i <= 20; i++) {
+            mStore.store(Collections.singletonList(param(row(i, "user", new byte[]{(byte) i}), i)));
+        }
+        for (int i = 1; i <= 15; i++) {
+            mStore.store(Collections.singletonList(param(row(i, "user", new byte[]{(byte) -i}), i)));
+        }
+        for (int i : new int[]{1, 16, 17, 18}) {
+            mStore.remove("user", "id", "=", i);
+        }
+        awaitCompactor();
+        assertFalse(mStore.needsCompaction());
+        mStore.compact();
+        assertFalse(new File(mDirectory, "0.log").exists());
+        assertFalse(new File(mDirectory, "0.hint").exists());
+        assertLive();
+
+        mStore.close();
+        mStore = new LogCacheStore(mDirectory, 256);
+        assertLive();
+    }
+
+    @Test
+    public void removeAliasAndParams() {
+        mStore.store(Arrays.asList(param(row(1, "user", new byte[]{1}), 7), param(row(2, "user", new byte[]{2}), 8),
+                param(row(3, "user", new byte[]{3}), 10), param(row(4, "other", new byte[]{4}), 7)));
+        long now = System.currentTimeMillis();
+        mStore.remove("user", "id", "=", 7);
+        assertNull(mStore.get(1, now));
+        assertNotNull(mStore.get(4, now));
+        // 与数据库中一样按字符串比较，"10"小于"8"
+        mStore.remove("user", "id", ">=", 8);
+        assertNull(mStore.get(2, now));
+        assertNotNull(mStore.get(3, now));
+        mStore.remove("user", "page", "!=", 1);
+        assertNotNull(mStore.get(3, now));
+        mStore.remove("user", "id", "<", 9);
+        assertNull(mStore.get(3, now));
+        try {
+            mStore.remove("user", "id", "LIKE", "1%");
+            fail();
+        } catch (IllegalArgumentException e) {
+            // 不支持的运算符
+        }
+
+        mStore.store(Collections.singletonList(row(5, "user", new byte[]{5})));
+        mStore.remove("user");
+        assertNull(mStore.get(5, now));
+        assertNotNull(mStore.get(4, now));
+        assertEquals(rowSize(new byte[]{4}, 4), mStore.queryTotalSize());
+        mStore.close();
+
+        mStore = new LogCacheStore(mDirectory);
+        for (long id = 1; id <= 5; id++) {
+            assertEquals(id == 4, mStore.get(id, now) != null);
+        }
+    }
+
+    protected void assertLive() {
+        long now = System.currentTimeMillis();
+        long total = 0;
+        for (int i = 1; i <= 20; i++) {
+            CacheRow row = mStore.get(i, now);
+            if (i == 1 || (i >= 16 && i <= 18)) {
+                assertNull(row);
+            } else {
+                byte[] data = new byte[]{(byte) (i <= 15 ? -i : i)};
+                assertArrayEquals(data, row.getData());
+                total += rowSize(data, i);
+            }
+        }
+        assertEquals(total, mStore.queryTotalSize());
+    }
+
+    /**
+     * 等待已经安排的合并完成。
+     */
+    protected void awaitCompactor() throws Exception {
+        mStore.mCompactor.submit(new Runnable() {
+            @Override
+            public void run() {
+            }
+        }).get();
+    }
+
+    protected static CacheRow param(CacheRow row, int id) {
+        return row.setParams(new String[]{"id"}, new Object[]{id});
+    }
+
+    protected static CacheRow row(long id, String alias, byte[] data) {
+        return new CacheRow(id, "key" + id, "parameter" + id, data, null, JsonCodec.ID, Compression.NONE, alias, 0, 0)
+                .setUsage(rowSize(data, id), System.currentTimeMillis());
+    }
+
+    protected static long rowSize(byte[] data, long id) {
+        return data.length + ("key" + id).length() + ("parameter" + id).length();
+    }
+}
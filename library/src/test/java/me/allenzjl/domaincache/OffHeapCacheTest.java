@@ -0,0 +1,112 @@
+package me.allenzjl.domaincache;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class OffHeapCacheTest {
+
+    @Test
+    public void disabledBelowOneSlab() {
+        OffHeapCache cache = new OffHeapCache(OffHeapCache.SLAB_SIZE - 1);
+        assertFalse(cache.isEnabled());
+        cache.put(1, "a", data(10, 1), JsonCodec.INSTANCE, 0, null);
+        assertNull(cache.get(1, "a", 0));
+    }
+
+    @Test
+    public void fingerprintCollisionChecksKey() {
+        OffHeapCache cache = new OffHeapCache(OffHeapCache.SLAB_SIZE);
+        cache.put(1, "a", data(10, 1), JsonCodec.INSTANCE, 0, "user");
+        // 指纹相同但键不同时视为未命中
+        assertNull(cache.get(1, "b", 0));
+        OffHeapCache.Value value = cache.get(1, "a", 0);
+        assertNotNull(value);
+        assertEquals(10, value.getData().remaining());
+        assertEquals(1, value.getData().get(0));
+        assertEquals("user", value.getAlias());
+        // 后写入的键替换同一个指纹原有的缓存
+        cache.put(1, "b", data(10, 2), JsonCodec.INSTANCE, 0, null);
+        assertNull(cache.get(1, "a", 0));
+        assertEquals(2, cache.get(1, "b", 0).getData().get(0));
+    }
+
+    @Test
+    public void expiredValueIsDropped() {
+        OffHeapCache cache = new OffHeapCache(OffHeapCache.SLAB_SIZE);
+        cache.put(1, "a", data(10, 1), JsonCodec.INSTANCE, 100, null);
+        assertNotNull(cache.get(1, "a", 100));
+        assertNull(cache.get(1, "a", 101));
+        assertNull(cache.get(1, "a", 0));
+    }
+
+    @Test
+    public void clockEvictionSparesReferencedSlot() {
+        OffHeapCache cache = new OffHeapCache(OffHeapCache.SLAB_SIZE);
+        // 200字节放在256字节的槽位中，一块正好放满
+        int slots = OffHeapCache.SLAB_SIZE / 256;
+        for (int i = 0; i < slots; i++) {
+            cache.put(i, "k" + i, data(200, i), JsonCodec.INSTANCE, 0, null);
+        }
+        assertNotNull(cache.get(0, "k0", 0));
+        cache.put(slots, "k" + slots, data(200, slots), JsonCodec.INSTANCE, 0, null);
+        // 指针先经过被访问过的k0，清除引用位后淘汰下一个k1
+        assertNotNull(cache.get(0, "k0", 0));
+        assertNull(cache.get(1, "k1", 0));
+        assertNotNull(cache.get(slots, "k" + slots, 0));
+        assertNotNull(cache.get(2, "k2", 0));
+    }
+
+    @Test
+    public void reassignsSlabToEmptySizeClass() {
+        OffHeapCache cache = new OffHeapCache(OffHeapCache.SLAB_SIZE);
+        cache.put(1, "small", data(100, 1), JsonCodec.INSTANCE, 0, null);
+        // 唯一的一块属于128字节的级别，1024字节的级别没有块，清空它转给新的级别
+        cache.put(2, "large", data(1000, 2), JsonCodec.INSTANCE, 0, null);
+        assertNull(cache.get(1, "small", 0));
+        assertEquals(1000, cache.get(2, "large", 0).getData().remaining());
+        cache.put(3, "small", data(100, 3), JsonCodec.INSTANCE, 0, null);
+        assertNull(cache.get(2, "large", 0));
+        assertEquals(3, cache.get(3, "small", 0).getData().get(0));
+    }
+
+    @Test
+    public void removeAliasAndClearCoverAllStripes() {
+        OffHeapCache cache = new OffHeapCache(OffHeapCache.SLAB_SIZE * OffHeapCache.MIN_SLABS_PER_STRIPE * 4);
+        assertEquals(4, cache.mStripes.length);
+        for (int i = 0; i < 1000; i++) {
+            cache.put(fingerprint(i), "k" + i, data(100, i), JsonCodec.INSTANCE, 0, i % 2 == 0 ? "even" : "odd");
+        }
+        for (OffHeapCache.Stripe stripe : cache.mStripes) {
+            assertTrue(stripe.mIndex.size() > 0);
+        }
+        cache.removeAlias("even");
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i % 2 == 1, cache.get(fingerprint(i), "k" + i, 0) != null);
+        }
+        cache.remove(fingerprint(1));
+        assertNull(cache.get(fingerprint(1), "k1", 0));
+        cache.clear();
+        for (int i = 0; i < 1000; i++) {
+            assertNull(cache.get(fingerprint(i), "k" + i, 0));
+        }
+    }
+
+    protected static long fingerprint(int i) {
+        return Fingerprint.of("k" + i, "");
+    }
+
+    protected static ByteBuffer data(int length, int fill) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) fill;
+        }
+        return ByteBuffer.wrap(data);
+    }
+}
@@ -0,0 +1,104 @@
+package me.allenzjl.domaincache;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class WriteBehindQueueTest {
+
+    /**
+     * 前failures次写入抛出error，之后记录写入的键。
+     */
+    protected static class FailingWriter implements WriteBehindQueue.Writer {
+
+        protected final AtomicInteger mFailures;
+
+        protected final Throwable mError;
+
+        protected final List<String> mWritten = Collections.synchronizedList(new ArrayList<String>());
+
+        protected final List<String> mFailed = Collections.synchronizedList(new ArrayList<String>());
+
+        protected FailingWriter(int failures, Throwable error) {
+            mFailures = new AtomicInteger(failures);
+            mError = error;
+        }
+
+        @Override
+        public void write(List<PendingWrite> batch) {
+            if (mFailures.getAndDecrement() > 0) {
+                if (mError instanceof Error) {
+                    throw (Error) mError;
+                }
+                throw (RuntimeException) mError;
+            }
+            for (PendingWrite write : batch) {
+                mWritten.add(write.getMemoryKey());
+            }
+        }
+
+        @Override
+        public void onFailed(List<PendingWrite> failed) {
+            for (PendingWrite write : failed) {
+                mFailed.add(write.getMemoryKey());
+            }
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void retriesFailedWriteOnce() {
+        FailingWriter writer = new FailingWriter(1, new IllegalStateException("disk"));
+        WriteBehindQueue queue = new WriteBehindQueue(writer, 16, 4);
+        queue.enqueue(write("a"));
+        queue.flush();
+        assertEquals(Collections.singletonList(write("a").getMemoryKey()), writer.mWritten);
+        assertTrue(writer.mFailed.isEmpty());
+    }
+
+    @Test(timeout = 10000)
+    public void reportsWriteFailingTwice() {
+        FailingWriter writer = new FailingWriter(2, new IllegalStateException("disk"));
+        WriteBehindQueue queue = new WriteBehindQueue(writer, 16, 4);
+        queue.enqueue(write("a"));
+        queue.flush();
+        assertTrue(writer.mWritten.isEmpty());
+        assertEquals(Collections.singletonList(write("a").getMemoryKey()), writer.mFailed);
+        assertEquals(0, queue.size());
+        assertNull(queue.get(write("a").getMemoryKey()));
+    }
+
+    @Test(timeout = 10000)
+    public void errorDoesNotStopWriter() {
+        FailingWriter writer = new FailingWriter(1, new StackOverflowError());
+        WriteBehindQueue queue = new WriteBehindQueue(writer, 16, 4);
+        queue.enqueue(write("a"));
+        queue.flush();
+        queue.enqueue(write("b"));
+        queue.flush();
+        assertEquals(2, writer.mWritten.size());
+    }
+
+    @Test(timeout = 10000)
+    public void awaitCapacityReturnsWhenDrained() {
+        FailingWriter writer = new FailingWriter(0, null);
+        WriteBehindQueue queue = new WriteBehindQueue(writer, 2, 1);
+        for (int i = 0; i < 10; i++) {
+            queue.awaitCapacity(1);
+            queue.enqueue(write("k" + i));
+        }
+        queue.awaitCapacity(5);
+        queue.flush();
+        assertEquals(10, writer.mWritten.size());
+    }
+
+    protected static PendingWrite write(String key) {
+        return new PendingWrite(CacheKey.of(key, "p"), new byte[]{1}, JsonCodec.INSTANCE, 0, 0, null, null, null);
+    }
+}